@@ -0,0 +1,106 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares getting a connection from {@link CratePoolingDataSource} with {@link DriverManager#getConnection(String)}.
+ * <p>
+ * Requires a running Crate server, see the <code>url</code> parameter.
+ * One connection is kept open for the whole run, so the raw connects reuse the client
+ * and only the work done per connect is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConnectBenchmark {
+
+    private static final String STMT = "select name from sys.cluster";
+
+    @Param("crate://localhost:4300")
+    public String url;
+
+    private Connection keepAlive;
+    private CratePoolingDataSource dataSource;
+
+    @Setup
+    public void setUp() throws Exception {
+        Class.forName("io.crate.client.jdbc.CrateDriver");
+        keepAlive = DriverManager.getConnection(url);
+        dataSource = new CratePoolingDataSource();
+        dataSource.setUrl(url);
+        dataSource.setMinIdle(1);
+        dataSource.setMaxStatements(10);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        dataSource.close();
+        keepAlive.close();
+    }
+
+    @Benchmark
+    public boolean driverManagerConnect() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            return conn.isClosed();
+        }
+    }
+
+    @Benchmark
+    public boolean pooledConnect() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return conn.isClosed();
+        }
+    }
+
+    @Benchmark
+    public boolean driverManagerConnectAndQuery() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url)) {
+            return query(conn);
+        }
+    }
+
+    @Benchmark
+    public boolean pooledConnectAndQuery() throws SQLException {
+        try (Connection conn = dataSource.getConnection()) {
+            return query(conn);
+        }
+    }
+
+    private static boolean query(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(STMT);
+             ResultSet resultSet = stmt.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+}
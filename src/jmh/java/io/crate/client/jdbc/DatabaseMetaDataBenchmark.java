@@ -0,0 +1,81 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLResponse;
+import io.crate.types.DataType;
+import io.crate.types.IntegerType;
+import io.crate.types.StringType;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures shaping the rows of <code>information_schema.columns</code> into the result of
+ * {@link CrateDatabaseMetaData#getColumns(String, String, String, String)}, for <code>rows</code> columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DatabaseMetaDataBenchmark {
+
+    private static final String[] TYPES = {"string", "long", "integer", "double", "boolean", "timestamp", "object",
+            "string_array", "geo_point", "ip"};
+
+    @Param("1000")
+    public int rows;
+
+    private CrateConnection connection;
+    private DatabaseMetaData metaData;
+
+    @Setup
+    public void setUp() throws Exception {
+        Object[][] data = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            data[i] = new Object[]{"doc", "table_" + (i / 20), "column_" + (i % 20), TYPES[i % TYPES.length], i % 20 + 1};
+        }
+        SQLResponse response = new SQLResponse(
+                new String[]{"schema_name", "table_name", "column_name", "data_type", "ordinal_position"},
+                data,
+                new DataType[]{StringType.INSTANCE, StringType.INSTANCE, StringType.INSTANCE, StringType.INSTANCE,
+                        IntegerType.INSTANCE},
+                rows, System.currentTimeMillis(), true);
+        connection = StubbedConnection.connect(response);
+        metaData = connection.getMetaData();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public ResultSet getColumns() throws SQLException {
+        return metaData.getColumns(null, "doc", null, null);
+    }
+}
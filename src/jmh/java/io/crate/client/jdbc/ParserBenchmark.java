@@ -0,0 +1,100 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ParsedStatement} on long statements, parsed on every call and looked up in the parse cache,
+ * and {@link CratePreparedStatement.CratePreparedStatementParser#getParameters(String)}.
+ * <p>
+ * Lives in the driver package as the parser is package private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParserBenchmark {
+
+    /**
+     * <ul>
+     * <li>insert: a multi row insert with 50 rows of 20 parameters</li>
+     * <li>select: a reporting query with literals, quoted identifiers, comments and numeric parameters</li>
+     * </ul>
+     */
+    @Param({"insert", "select"})
+    public String shape;
+
+    private String sql;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder();
+        if ("insert".equals(shape)) {
+            sb.append("insert into doc.events (");
+            for (int c = 0; c < 20; c++) {
+                sb.append(c == 0 ? "" : ", ").append("\"col_").append(c).append('"');
+            }
+            sb.append(") values ");
+            for (int r = 0; r < 50; r++) {
+                sb.append(r == 0 ? "(" : ", (");
+                for (int c = 0; c < 20; c++) {
+                    sb.append(c == 0 ? "?" : ", ?");
+                }
+                sb.append(')');
+            }
+        } else {
+            sb.append("/* daily report */\nselect ");
+            for (int c = 0; c < 40; c++) {
+                sb.append(c == 0 ? "" : ", ").append("\"Metric_").append(c).append("\" as m").append(c);
+            }
+            sb.append("\nfrom doc.metrics -- partitioned by day\nwhere ");
+            for (int c = 0; c < 40; c++) {
+                sb.append(c == 0 ? "" : " and ")
+                        .append("(tag_").append(c).append(" = 'it''s a ? literal' or m").append(c)
+                        .append(" > $").append(c + 1).append(')');
+            }
+        }
+        sql = sb.toString();
+        ParsedStatement.of(sql);
+    }
+
+    @Benchmark
+    public ParsedStatement parse() {
+        return ParsedStatement.parse(sql);
+    }
+
+    @Benchmark
+    public ParsedStatement cached() {
+        return ParsedStatement.of(sql);
+    }
+
+    @Benchmark
+    public BitSet getParameters() {
+        return CratePreparedStatement.CratePreparedStatementParser.getParameters(sql);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLResponse;
+import io.crate.types.DataType;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures binding the parameters of a {@link CratePreparedStatement}, adding rows to its batch
+ * and executing a batch of {@link #BATCH_SIZE} rows against the stubbed client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PreparedStatementBenchmark {
+
+    static final int BATCH_SIZE = 100;
+
+    private static final String STMT = "insert into doc.events (id, name, price, active, created) values (?, ?, ?, ?, ?)";
+
+    private CrateConnection connection;
+    private PreparedStatement statement;
+    private Timestamp created;
+    private int id;
+
+    @Setup
+    public void setUp() throws Exception {
+        SQLBulkResponse.Result[] results = new SQLBulkResponse.Result[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            results[i] = new SQLBulkResponse.Result(null, 1);
+        }
+        SQLBulkResponse bulkResponse = new SQLBulkResponse(new String[0], results, System.currentTimeMillis(),
+                new DataType[0], true);
+        SQLResponse response = new SQLResponse(new String[0], new Object[0][], new DataType[0], 1L,
+                System.currentTimeMillis(), true);
+        connection = StubbedConnection.connect(response, bulkResponse, new Properties());
+        statement = connection.prepareStatement(STMT);
+        created = new Timestamp(System.currentTimeMillis());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    private void bindRow() throws SQLException {
+        int i = id++;
+        statement.setLong(1, i);
+        statement.setString(2, "event");
+        statement.setDouble(3, i * 0.25d);
+        statement.setBoolean(4, (i & 1) == 0);
+        statement.setTimestamp(5, created);
+    }
+
+    @Benchmark
+    public PreparedStatement bind() throws SQLException {
+        bindRow();
+        return statement;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public PreparedStatement addBatch() throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bindRow();
+            statement.addBatch();
+        }
+        statement.clearBatch();
+        return statement;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int[] executeBatch() throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bindRow();
+            statement.addBatch();
+        }
+        return statement.executeBatch();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLResponse;
+import io.crate.types.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a result of <code>rows</code> rows with the typed getters of {@link CrateResultSet},
+ * by column index and by column label, and looking up a column with {@link CrateResultSet#findColumn(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ResultSetBenchmark {
+
+    static final String[] COLUMNS = {"id", "name", "price", "active", "created", "quantity"};
+
+    @Param("1000")
+    public int rows;
+
+    private CrateConnection connection;
+    private Statement statement;
+    private SQLResponse response;
+    private ResultSet resultSet;
+
+    @Setup
+    public void setUp() throws Exception {
+        Object[][] data = new Object[rows][];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < rows; i++) {
+            data[i] = new Object[]{(long) i, "product " + i, i * 0.25d, i % 2 == 0, now - i * 1000L, i % 100};
+        }
+        response = new SQLResponse(COLUMNS, data, new DataType[]{
+                LongType.INSTANCE,
+                StringType.INSTANCE,
+                DoubleType.INSTANCE,
+                BooleanType.INSTANCE,
+                TimestampType.INSTANCE,
+                IntegerType.INSTANCE
+        }, rows, now, true);
+        connection = StubbedConnection.connect(response);
+        statement = connection.createStatement();
+        resultSet = new CrateResultSet(statement, response);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public void iterateByIndex(Blackhole blackhole) throws SQLException {
+        ResultSet rs = new CrateResultSet(statement, response);
+        while (rs.next()) {
+            blackhole.consume(rs.getLong(1));
+            blackhole.consume(rs.getString(2));
+            blackhole.consume(rs.getDouble(3));
+            blackhole.consume(rs.getBoolean(4));
+            blackhole.consume(rs.getTimestamp(5));
+            blackhole.consume(rs.getInt(6));
+        }
+    }
+
+    @Benchmark
+    public void iterateByLabel(Blackhole blackhole) throws SQLException {
+        ResultSet rs = new CrateResultSet(statement, response);
+        while (rs.next()) {
+            blackhole.consume(rs.getLong("id"));
+            blackhole.consume(rs.getString("name"));
+            blackhole.consume(rs.getDouble("price"));
+            blackhole.consume(rs.getBoolean("active"));
+            blackhole.consume(rs.getTimestamp("created"));
+            blackhole.consume(rs.getInt("quantity"));
+        }
+    }
+
+    /**
+     * the last column, the worst case of the lookup
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int findColumn() throws SQLException {
+        return resultSet.findColumn("quantity");
+    }
+}
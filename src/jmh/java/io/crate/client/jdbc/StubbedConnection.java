@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.ActionFuture;
+import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+
+import java.sql.SQLException;
+import java.util.Properties;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Connections on a mocked {@link CrateClient}, like the one of <code>AbstractCrateJDBCTest</code>,
+ * so the benchmarks measure the driver without a server.
+ * <p>
+ * Every request is answered with the same completed future, so the client only adds the
+ * constant overhead of the mock, which does not record the invocations.
+ */
+final class StubbedConnection {
+
+    static final String SERVER_VERSION = "0.55.0";
+
+    private StubbedConnection() {
+    }
+
+    static CrateConnection connect(SQLResponse response) throws SQLException {
+        return connect(response, null, new Properties());
+    }
+
+    /**
+     * @param bulkResponse the response of every bulk request, null if the benchmark sends none
+     */
+    static CrateConnection connect(SQLResponse response, SQLBulkResponse bulkResponse, Properties properties)
+            throws SQLException {
+        CrateClient client = mock(CrateClient.class, withSettings().stubOnly());
+        ActionFuture<SQLResponse> future = completed(response);
+        when(client.sql(any(SQLRequest.class))).thenReturn(future);
+        when(client.sql(anyString())).thenReturn(future);
+        if (bulkResponse != null) {
+            when(client.bulkSql(any(SQLBulkRequest.class))).thenReturn(completed(bulkResponse));
+        }
+
+        ClientHandleRegistry.ClientHandle handle = mock(ClientHandleRegistry.ClientHandle.class,
+                withSettings().stubOnly());
+        when(handle.metrics()).thenReturn(new CrateMetrics(null));
+        when(handle.client()).thenReturn(client);
+        when(handle.url()).thenReturn("localhost:4300");
+        when(handle.serverVersion()).thenReturn(CrateServerVersion.parse(SERVER_VERSION));
+
+        CrateConnection connection = new CrateConnection(handle, properties);
+        connection.connect();
+        return connection;
+    }
+
+    private static <T> ActionFuture<T> completed(T response) {
+        PlainActionFuture<T> future = PlainActionFuture.newFuture();
+        future.onResponse(response);
+        return future;
+    }
+}
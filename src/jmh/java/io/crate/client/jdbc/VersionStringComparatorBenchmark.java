@@ -0,0 +1,76 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link VersionStringComparator} on the version strings it compares in the driver:
+ * releases, snapshots and versions of a different length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class VersionStringComparatorBenchmark {
+
+    private static final String[] VERSIONS = {
+            "0.55.4", "0.55.10", "0.54.9", "1.0.1-SNAPSHOT", "1.0", "0.45.0", "0.45.0", "1.0.1"
+    };
+
+    private int[][] components;
+
+    @Setup
+    public void setUp() {
+        components = new int[VERSIONS.length][];
+        for (int i = 0; i < VERSIONS.length; i++) {
+            components[i] = VersionStringComparator.components(VERSIONS[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int compareStrings() {
+        int result = 0;
+        for (int i = 0; i < VERSIONS.length; i++) {
+            result += VersionStringComparator.compareVersions(VERSIONS[i], VERSIONS[(i + 1) % VERSIONS.length]);
+        }
+        return result;
+    }
+
+    /**
+     * compares versions already split into their components, as the server version does
+     */
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public int compareComponents() {
+        int result = 0;
+        for (int i = 0; i < components.length; i++) {
+            result += VersionStringComparator.compareVersions(components[i], components[(i + 1) % components.length]);
+        }
+        return result;
+    }
+}
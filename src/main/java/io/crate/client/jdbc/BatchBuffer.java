@@ -0,0 +1,394 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Column oriented buffer for the parameters of a {@link CratePreparedStatement} batch.
+ * <p>
+ * Every parameter slot is a column backed by a growable primitive array, chosen by the type
+ * of the first value set, and a bitmap marking null values. A column falls back to an
+ * <code>Object[]</code> once values of different types are mixed in it.
+ * The rows are only boxed when they are sent, see {@link #rows(int, int)}.
+ * <p>
+ * Values are always set on the current row, which is the row after the last added one.
+ */
+class BatchBuffer {
+
+    private static final byte UNSET = 0;
+    private static final byte BYTE = 1;
+    private static final byte SHORT = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte OBJECT = 8;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int numColumns;
+    private final byte[] kinds;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final boolean[][] booleans;
+    private final Object[][] objects;
+    private final long[][] nulls;
+
+    private int capacity = INITIAL_CAPACITY;
+    private int size = 0;
+
+    BatchBuffer(int numColumns) {
+        this.numColumns = numColumns;
+        kinds = new byte[numColumns];
+        longs = new long[numColumns][];
+        doubles = new double[numColumns][];
+        booleans = new boolean[numColumns][];
+        objects = new Object[numColumns][];
+        nulls = new long[numColumns][];
+        for (int i = 0; i < numColumns; i++) {
+            nulls[i] = new long[bitmapLength(capacity)];
+        }
+        clearCurrentRow();
+    }
+
+    /**
+     * @return the number of added rows
+     */
+    int size() {
+        return size;
+    }
+
+    int numColumns() {
+        return numColumns;
+    }
+
+    void setNull(int column) {
+        if (kinds[column] == OBJECT) {
+            objects[column][size] = null;
+        }
+        nulls[column][size >>> 6] |= 1L << size;
+    }
+
+    void setBoolean(int column, boolean value) {
+        if (kind(column, BOOLEAN)) {
+            booleans[column][size] = value;
+            notNull(column);
+        } else {
+            setBoxed(column, value);
+        }
+    }
+
+    void setByte(int column, byte value) {
+        setIntegral(column, BYTE, value);
+    }
+
+    void setShort(int column, short value) {
+        setIntegral(column, SHORT, value);
+    }
+
+    void setInt(int column, int value) {
+        setIntegral(column, INT, value);
+    }
+
+    void setLong(int column, long value) {
+        setIntegral(column, LONG, value);
+    }
+
+    void setFloat(int column, float value) {
+        setFloatingPoint(column, FLOAT, value);
+    }
+
+    void setDouble(int column, double value) {
+        setFloatingPoint(column, DOUBLE, value);
+    }
+
+    /**
+     * sets any value, boxed primitives are stored unboxed if the column allows it
+     */
+    void setObject(int column, @Nullable Object value) {
+        if (value == null) {
+            setNull(column);
+        } else if (value instanceof Integer) {
+            setInt(column, (Integer) value);
+        } else if (value instanceof Long) {
+            setLong(column, (Long) value);
+        } else if (value instanceof Double) {
+            setDouble(column, (Double) value);
+        } else if (value instanceof Float) {
+            setFloat(column, (Float) value);
+        } else if (value instanceof Boolean) {
+            setBoolean(column, (Boolean) value);
+        } else if (value instanceof Short) {
+            setShort(column, (Short) value);
+        } else if (value instanceof Byte) {
+            setByte(column, (Byte) value);
+        } else {
+            setBoxed(column, value);
+        }
+    }
+
+    private void setIntegral(int column, byte kind, long value) {
+        if (kind(column, kind)) {
+            longs[column][size] = value;
+            notNull(column);
+        } else {
+            setBoxed(column, box(kind, value));
+        }
+    }
+
+    private void setFloatingPoint(int column, byte kind, double value) {
+        if (kind(column, kind)) {
+            doubles[column][size] = value;
+            notNull(column);
+        } else {
+            setBoxed(column, kind == FLOAT ? (Object) (float) value : (Object) value);
+        }
+    }
+
+    private void setBoxed(int column, Object value) {
+        if (kinds[column] != OBJECT) {
+            toObjectColumn(column);
+        }
+        objects[column][size] = value;
+        notNull(column);
+    }
+
+    private void notNull(int column) {
+        nulls[column][size >>> 6] &= ~(1L << size);
+    }
+
+    private boolean isNull(int column, int row) {
+        return (nulls[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return true if the column stores values of the given kind, allocating it if it is still unset
+     */
+    private boolean kind(int column, byte kind) {
+        byte current = kinds[column];
+        if (current == kind) {
+            return true;
+        } else if (current != UNSET) {
+            return false;
+        }
+        switch (kind) {
+            case BOOLEAN:
+                booleans[column] = new boolean[capacity];
+                break;
+            case FLOAT:
+            case DOUBLE:
+                doubles[column] = new double[capacity];
+                break;
+            default:
+                longs[column] = new long[capacity];
+                break;
+        }
+        kinds[column] = kind;
+        return true;
+    }
+
+    /**
+     * boxes all values of a column, including the current row
+     */
+    private void toObjectColumn(int column) {
+        Object[] values = new Object[capacity];
+        for (int row = 0; row <= size; row++) {
+            values[row] = isNull(column, row) ? null : value(column, row);
+        }
+        objects[column] = values;
+        longs[column] = null;
+        doubles[column] = null;
+        booleans[column] = null;
+        kinds[column] = OBJECT;
+    }
+
+    @Nullable
+    private Object value(int column, int row) {
+        switch (kinds[column]) {
+            case BOOLEAN:
+                return booleans[column][row];
+            case FLOAT:
+            case DOUBLE:
+                double d = doubles[column][row];
+                return kinds[column] == FLOAT ? (Object) (float) d : (Object) d;
+            case OBJECT:
+                return objects[column][row];
+            case UNSET:
+                return null;
+            default:
+                return box(kinds[column], longs[column][row]);
+        }
+    }
+
+    private static Object box(byte kind, long value) {
+        switch (kind) {
+            case BYTE:
+                return (byte) value;
+            case SHORT:
+                return (short) value;
+            case INT:
+                return (int) value;
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * @return the values of the current row
+     */
+    Object[] currentRow() {
+        return row(size);
+    }
+
+    Object[] row(int row) {
+        Object[] values = new Object[numColumns];
+        for (int column = 0; column < numColumns; column++) {
+            values[column] = isNull(column, row) ? null : value(column, row);
+        }
+        return values;
+    }
+
+    /**
+     * boxes the added rows from <code>from</code> (inclusive) to <code>to</code> (exclusive)
+     */
+    Object[][] rows(int from, int to) {
+        Object[][] rows = new Object[to - from][];
+        for (int row = from; row < to; row++) {
+            rows[row - from] = row(row);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the estimated serialized size of a row, see {@link BulkDispatcher#estimateSize(Object)}
+     */
+    long estimateSize(int row) {
+        long bytes = 5;
+        for (int column = 0; column < numColumns; column++) {
+            if (isNull(column, row)) {
+                bytes += 1;
+                continue;
+            }
+            switch (kinds[column]) {
+                case BOOLEAN:
+                case BYTE:
+                    bytes += 1;
+                    break;
+                case OBJECT:
+                    bytes += BulkDispatcher.estimateSize(objects[column][row]);
+                    break;
+                default:
+                    bytes += 9;
+                    break;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * sets all values of the current row to null
+     */
+    void clearCurrentRow() {
+        for (int column = 0; column < numColumns; column++) {
+            setNull(column);
+        }
+    }
+
+    /**
+     * adds the current row to the batch, the new current row is empty
+     */
+    void addRow() {
+        size++;
+        if (size == capacity) {
+            grow();
+        }
+        clearCurrentRow();
+    }
+
+    /**
+     * removes all added rows, the current row is kept
+     */
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        for (int column = 0; column < numColumns; column++) {
+            boolean isNull = isNull(column, size);
+            switch (kinds[column]) {
+                case BOOLEAN:
+                    booleans[column][0] = booleans[column][size];
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    doubles[column][0] = doubles[column][size];
+                    break;
+                case OBJECT:
+                    objects[column][0] = objects[column][size];
+                    // release the references to the sent values
+                    Arrays.fill(objects[column], 1, size + 1, null);
+                    break;
+                case UNSET:
+                    break;
+                default:
+                    longs[column][0] = longs[column][size];
+                    break;
+            }
+            Arrays.fill(nulls[column], 0);
+            if (isNull) {
+                nulls[column][0] = 1L;
+            }
+        }
+        size = 0;
+    }
+
+    private void grow() {
+        capacity = capacity + (capacity >> 1);
+        for (int column = 0; column < numColumns; column++) {
+            nulls[column] = Arrays.copyOf(nulls[column], bitmapLength(capacity));
+            switch (kinds[column]) {
+                case BOOLEAN:
+                    booleans[column] = Arrays.copyOf(booleans[column], capacity);
+                    break;
+                case FLOAT:
+                case DOUBLE:
+                    doubles[column] = Arrays.copyOf(doubles[column], capacity);
+                    break;
+                case OBJECT:
+                    objects[column] = Arrays.copyOf(objects[column], capacity);
+                    break;
+                case UNSET:
+                    break;
+                default:
+                    longs[column] = Arrays.copyOf(longs[column], capacity);
+                    break;
+            }
+        }
+    }
+
+    private static int bitmapLength(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.ActionFuture;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Sends the rows of a batch as multiple {@link SQLBulkRequest}s.
+ * <p>
+ * At most <code>maxInFlight</code> requests are pending at any time, sending another one
+ * first waits for the oldest. Requests are completed in the order they were sent, so the
+ * update counts are returned in the order the rows were added.
+ * A failing request marks all of its rows as {@link Statement#EXECUTE_FAILED},
+ * the remaining requests are still executed.
+ */
+class BulkDispatcher {
+
+    private final CrateStatementBase statement;
+    private final CrateClient client;
+    private final String stmt;
+    private final String schema;
+    private final int maxInFlight;
+
+    private final ArrayDeque<Chunk> inFlight = new ArrayDeque<>();
+    private int[] results = new int[16];
+    private int numResults = 0;
+    private SQLException failure;
+
+    private static class Chunk {
+        private final int numRows;
+        private SQLBulkRequest request;
+        private long startedNanos;
+        private ActionFuture<SQLBulkResponse> future;
+        private SQLException failure;
+
+        private Chunk(int numRows) {
+            this.numRows = numRows;
+        }
+    }
+
+    BulkDispatcher(CrateStatementBase statement, CrateClient client, String stmt, String schema, int maxInFlight) {
+        this.statement = statement;
+        this.client = client;
+        this.stmt = stmt;
+        this.schema = schema;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * sends the given rows, blocks if <code>maxInFlight</code> requests are still pending
+     */
+    void send(Object[][] bulkArgs) {
+        if (inFlight.size() >= maxInFlight) {
+            complete(inFlight.poll());
+        }
+        SQLBulkRequest bulkRequest = new SQLBulkRequest(stmt, bulkArgs);
+        bulkRequest.setDefaultSchema(schema);
+        bulkRequest.includeTypesOnResponse(true);
+        Chunk chunk = new Chunk(bulkArgs.length);
+        inFlight.add(chunk);
+        try {
+            bulkRequest = statement.intercept(bulkRequest);
+        } catch (SQLException e) {
+            // rejected by an interceptor
+            chunk.failure = e;
+            return;
+        }
+        chunk.request = bulkRequest;
+        chunk.startedNanos = statement.started();
+        try {
+            chunk.future = client.bulkSql(bulkRequest);
+            statement.track(chunk.future, bulkRequest.stmt());
+        } catch (RuntimeException e) {
+            chunk.failure = new SQLException(e.getMessage(), e);
+            statement.completed(bulkRequest, chunk.startedNanos, null, e);
+        }
+    }
+
+    /**
+     * waits for all pending requests
+     *
+     * @return the update counts of all rows sent
+     * @throws BatchUpdateException if any of the requests failed
+     */
+    int[] finish() throws BatchUpdateException {
+        while (!inFlight.isEmpty()) {
+            complete(inFlight.poll());
+        }
+        int[] updateCounts = Arrays.copyOf(results, numResults);
+        if (failure != null) {
+            throw new BatchUpdateException(failure.getMessage(), updateCounts, failure);
+        }
+        return updateCounts;
+    }
+
+    private void complete(Chunk chunk) {
+        if (chunk.failure == null) {
+            try {
+                SQLBulkResponse response = statement.await(chunk.future, chunk.request.stmt());
+                statement.completed(chunk.request, chunk.startedNanos, response, null);
+                add(CratePreparedStatement.updateCounts(response));
+                return;
+            } catch (SQLException e) {
+                chunk.failure = e;
+                statement.completed(chunk.request, chunk.startedNanos, null, e);
+            } catch (RuntimeException e) {
+                // e.g. a lost node, fail this chunk only so the remaining ones are still awaited and untracked
+                chunk.failure = new SQLException(e.getMessage(), e);
+                statement.completed(chunk.request, chunk.startedNanos, null, e);
+            }
+        }
+        if (failure == null) {
+            failure = chunk.failure;
+        }
+        int[] failed = new int[chunk.numRows];
+        Arrays.fill(failed, Statement.EXECUTE_FAILED);
+        add(failed);
+    }
+
+    private void add(int[] updateCounts) {
+        if (numResults + updateCounts.length > results.length) {
+            results = Arrays.copyOf(results, Math.max(results.length * 2, numResults + updateCounts.length));
+        }
+        System.arraycopy(updateCounts, 0, results, numResults, updateCounts.length);
+        numResults += updateCounts.length;
+    }
+
+    /**
+     * Estimates the number of bytes a value takes up when serialized for the transport.
+     * Used to cut batches into requests of a bounded size, so it needs to be cheap rather than exact.
+     */
+    static long estimateSize(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Byte) {
+            return 1;
+        } else if (value instanceof Number) {
+            return 9;
+        } else if (value instanceof String) {
+            return 5 + ((String) value).length();
+        } else if (value instanceof Map) {
+            long size = 5;
+            for (Object o : ((Map<?, ?>) value).entrySet()) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+                size += estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        } else if (value instanceof Collection) {
+            long size = 5;
+            for (Object o : (Collection<?>) value) {
+                size += estimateSize(o);
+            }
+            return size;
+        } else if (value instanceof Object[]) {
+            return estimateSize(Arrays.asList((Object[]) value));
+        }
+        return 16;
+    }
+
+    static long estimateSize(Object[] row) {
+        long size = 5;
+        for (Object value : row) {
+            size += estimateSize(value);
+        }
+        return size;
+    }
+}
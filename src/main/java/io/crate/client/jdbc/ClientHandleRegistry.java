@@ -21,74 +21,506 @@
 
 package io.crate.client.jdbc;
 
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
 import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
+import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+import io.crate.shade.org.elasticsearch.common.Nullable;
 
+import javax.management.ObjectName;
 import java.util.Collection;
+import java.util.Locale;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Shares one {@link CrateClient} between all connections to the same hosts.
+ * <p>
+ * Handles are keyed by the normalized set of hosts, see {@link #hostsKey(String)},
+ * so the order of the hosts and the schema of the URL do not matter.
+ * Acquiring and releasing a handle does not lock.
+ * <p>
+ * Once the last connection of a handle is closed, its client is kept for the idle timeout
+ * of the handle, see {@link ClientHandle#idleTimeout(long)}, and closed in the background
+ * unless a new connection reuses it.
+ */
 class ClientHandleRegistry {
 
+    /**
+     * how long a fetched server version is used before it is refreshed in the background
+     */
+    static final long SERVER_VERSION_REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * how long the result of a health check is used, and how often it is repeated in the background
+     */
+    static final long HEALTH_CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    // refCount of a closed handle, which can not be acquired anymore
+    private static final int CLOSED = -1;
+
+    /**
+     * creates the client of a handle, replaced by tests to run the driver without a server
+     */
+    interface ClientFactory {
+
+        /**
+         * @param servers the hosts of the handle, empty for the default host
+         */
+        CrateClient create(String[] servers);
+    }
+
+    private static final ClientFactory CRATE_CLIENT_FACTORY = new ClientFactory() {
+        @Override
+        public CrateClient create(String[] servers) {
+            // the no-argument constructor connects to the default host
+            return servers.length == 0 ? new CrateClient() : new CrateClient(servers);
+        }
+    };
+
     private final ConcurrentHashMap<String, ClientHandle> clientHandles = new ConcurrentHashMap<>();
+    private final AtomicLong clientsCreated = new AtomicLong();
+    private final AtomicLong clientsReused = new AtomicLong();
+    private final AtomicLong clientsClosed = new AtomicLong();
+    private final CrateMetrics metrics = new CrateMetrics(null);
+    private volatile ScheduledThreadPoolExecutor scheduler;
+    private final ClientFactory clientFactory;
 
     public ClientHandleRegistry() {
+        this(CRATE_CLIENT_FACTORY);
     }
 
+    ClientHandleRegistry(ClientFactory clientFactory) {
+        this.clientFactory = clientFactory;
+    }
+
+    /**
+     * @return the keys of all handles in use, see {@link #hostsKey(String)}
+     */
     Collection<String> urls() {
         return clientHandles.keySet();
     }
 
+    /**
+     * @return counters of the clients created and reused by this registry
+     */
+    CrateClientStats stats() {
+        int idle = 0;
+        for (ClientHandle handle : clientHandles.values()) {
+            if (handle.refCount.get() == 0) {
+                idle++;
+            }
+        }
+        return new CrateClientStats(clientsCreated.get(), clientsReused.get(), clientsClosed.get(),
+                clientHandles.size(), idle);
+    }
+
+    /**
+     * @return the metrics of all clients of this registry
+     */
+    CrateMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * the thread closing idle clients and checking their health,
+     * started on first use and stopped while there is nothing to do
+     */
+    private ScheduledThreadPoolExecutor scheduler() {
+        ScheduledThreadPoolExecutor scheduler = this.scheduler;
+        if (scheduler == null) {
+            synchronized (this) {
+                scheduler = this.scheduler;
+                if (scheduler == null) {
+                    scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "crate-jdbc-clients");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    scheduler.setKeepAliveTime(1, TimeUnit.SECONDS);
+                    scheduler.allowCoreThreadTimeOut(true);
+                    this.scheduler = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * @param url the URL without protocol and properties, <code>host1:port1[,host2:port2 ...][/schema]</code>
+     * @return the sorted, comma separated hosts of the URL, an empty string for the default host
+     */
+    static String hostsKey(String url) {
+        int schemaIdx = url.indexOf('/');
+        String hosts = schemaIdx < 0 ? url : url.substring(0, schemaIdx);
+        TreeSet<String> normalized = new TreeSet<>();
+        for (String host : hosts.split(",")) {
+            host = host.trim();
+            if (!host.isEmpty()) {
+                normalized.add(host.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        StringBuilder key = new StringBuilder();
+        for (String host : normalized) {
+            if (key.length() > 0) {
+                key.append(',');
+            }
+            key.append(host);
+        }
+        return key.toString();
+    }
+
+    /**
+     * returns the handle of the hosts of the URL, which must be released by
+     * {@link ClientHandle#connectionClosed()}
+     */
     ClientHandle getHandle(String url) {
-        ClientHandle handle;
-        synchronized (clientHandles) {
-            handle = clientHandles.get(url);
+        String key = hostsKey(url);
+        while (true) {
+            ClientHandle handle = clientHandles.get(key);
             if (handle == null) {
-                handle = new ClientHandle(url);
-                clientHandles.put(url, handle);
-            } else {
-                handle.incRef();
+                handle = new ClientHandle(key);
+                ClientHandle existing = clientHandles.putIfAbsent(key, handle);
+                if (existing == null) {
+                    return handle;
+                }
+                handle = existing;
             }
+            if (handle.tryIncRef()) {
+                clientsReused.incrementAndGet();
+                return handle;
+            }
+            // closed concurrently, it is about to be removed
+            clientHandles.remove(key, handle);
         }
-        return handle;
     }
 
     public class ClientHandle {
 
-        private int refCount;
-        private final CrateClient client;
+        // 0 while the handle is idle, a closed handle is never acquired again
+        private final AtomicInteger refCount = new AtomicInteger(1);
+        // incremented whenever the handle becomes idle, so an outdated reaping is skipped
+        private final AtomicInteger idleGeneration = new AtomicInteger();
+        private volatile long idleTimeoutNanos = 0L;
+        private volatile CrateClient client;
         private final String url;
 
+        private volatile CrateServerVersion serverVersion;
+        private volatile long serverVersionFetchedAt;
+        private final AtomicBoolean refreshingServerVersion = new AtomicBoolean(false);
+
+        private volatile long healthCheckInterval = HEALTH_CHECK_INTERVAL;
+        private volatile boolean healthy = false;
+        // the health is unknown until the first check
+        private volatile long healthCheckedAt = System.nanoTime() - HEALTH_CHECK_INTERVAL - 1;
+        private volatile long healthCheckStartedAt;
+        private final AtomicReference<PlainActionFuture<SQLResponse>> healthCheck = new AtomicReference<>();
+        private final AtomicBoolean monitoring = new AtomicBoolean(false);
+        private final CrateMetrics metrics = new CrateMetrics(ClientHandleRegistry.this.metrics);
+
+        /**
+         * @param url the normalized hosts, see {@link #hostsKey(String)}
+         */
         ClientHandle(String url) {
-            refCount = 1;
             this.url = url;
-            if (url.equals("/")) {
-                client = new CrateClient();
-            } else {
-                String[] urlParts = url.split("/");
-                String hosts = urlParts[0];
-                client = new CrateClient(hosts.split(","));
-            }
         }
 
+        /**
+         * The client is created on first use, so a handle which lost the race for
+         * its key in the registry does not start a client.
+         */
         public CrateClient client() {
+            CrateClient client = this.client;
+            if (client == null) {
+                synchronized (this) {
+                    client = this.client;
+                    if (client == null) {
+                        client = clientFactory.create(url.isEmpty() ? new String[0] : url.split(","));
+                        clientsCreated.incrementAndGet();
+                        metrics.register("type=Client,hosts=" + ObjectName.quote(url.isEmpty() ? "default" : url));
+                        this.client = client;
+                    }
+                }
+            }
             return client;
         }
 
+        /**
+         * @return the metrics of the requests sent by the connections of this handle
+         */
+        CrateMetrics metrics() {
+            return metrics;
+        }
+
+        /**
+         * runs the task on the thread of the registry until the returned future is cancelled
+         */
+        ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay, TimeUnit unit) {
+            return scheduler().scheduleWithFixedDelay(task, delay, delay, unit);
+        }
+
+        /**
+         * runs the task once on the thread of the registry, used to hand off work from threads which must not block
+         */
+        void execute(Runnable task) {
+            scheduler().execute(task);
+        }
+
+        /**
+         * @return the normalized hosts of this handle, see {@link #hostsKey(String)}
+         */
         public String url() {
             return url;
         }
 
+        /**
+         * Returns the version of the cluster this handle is connected to.
+         * The version is fetched from <code>sys.nodes</code> on first use only,
+         * afterwards it is refreshed asynchronously so that upgraded or newly joined
+         * nodes are picked up without blocking the caller.
+         */
+        public CrateServerVersion serverVersion() {
+            CrateServerVersion version = serverVersion;
+            if (version == null) {
+                synchronized (this) {
+                    version = serverVersion;
+                    if (version == null) {
+                        version = CrateServerVersion.fromNodes(client().sql(CrateServerVersion.VERSION_STMT).actionGet());
+                        serverVersion(version);
+                    }
+                }
+            } else if (System.nanoTime() - serverVersionFetchedAt > SERVER_VERSION_REFRESH_INTERVAL) {
+                refreshServerVersion();
+            }
+            return version;
+        }
+
+        /**
+         * @return the last fetched version, null if it was not fetched yet, never blocks
+         */
+        @Nullable
+        CrateServerVersion cachedServerVersion() {
+            return serverVersion;
+        }
+
+        private void serverVersion(CrateServerVersion version) {
+            serverVersionFetchedAt = System.nanoTime();
+            serverVersion = version;
+        }
+
+        /**
+         * Tells whether the cluster responds to a query, waiting at most the given timeout, <code>0</code> waits
+         * without timeout.
+         * <p>
+         * A check result is used for {@link #HEALTH_CHECK_INTERVAL}, and the check is repeated in the background
+         * while the handle has connections, so this usually returns right away.
+         * A check which takes longer than the interval marks the cluster as not alive.
+         * The check also refreshes the server version.
+         */
+        boolean isAlive(long timeoutMillis) {
+            monitor();
+            if (System.nanoTime() - healthCheckedAt < healthCheckInterval) {
+                return healthy;
+            }
+            PlainActionFuture<SQLResponse> future = checkHealth();
+            try {
+                if (timeoutMillis > 0) {
+                    future.actionGet(timeoutMillis, TimeUnit.MILLISECONDS);
+                } else {
+                    future.actionGet();
+                }
+                return true;
+            } catch (RuntimeException e) {
+                // failed or timed out, a timeout is only cached once the check exceeds the interval
+                return false;
+            }
+        }
+
+        /**
+         * sets the interval of {@link #isAlive(long)}, the default is {@link #HEALTH_CHECK_INTERVAL}
+         */
+        void healthCheckInterval(long interval, TimeUnit unit) {
+            healthCheckInterval = unit.toNanos(interval);
+        }
+
+        private void health(boolean healthy) {
+            this.healthy = healthy;
+            healthCheckedAt = System.nanoTime();
+        }
+
+        /**
+         * @return the running health check, a new one if none is running
+         */
+        private PlainActionFuture<SQLResponse> checkHealth() {
+            while (true) {
+                PlainActionFuture<SQLResponse> running = healthCheck.get();
+                if (running != null) {
+                    return running;
+                }
+                final PlainActionFuture<SQLResponse> future = PlainActionFuture.newFuture();
+                if (!healthCheck.compareAndSet(null, future)) {
+                    continue;
+                }
+                healthCheckStartedAt = System.nanoTime();
+                ActionListener<SQLResponse> listener = new ActionListener<SQLResponse>() {
+                    @Override
+                    public void onResponse(SQLResponse response) {
+                        serverVersion(CrateServerVersion.fromNodes(response));
+                        health(true);
+                        healthCheck.compareAndSet(future, null);
+                        future.onResponse(response);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        health(false);
+                        healthCheck.compareAndSet(future, null);
+                        future.onFailure(e);
+                    }
+                };
+                try {
+                    client().sql(new SQLRequest(CrateServerVersion.VERSION_STMT), listener);
+                } catch (RuntimeException e) {
+                    listener.onFailure(e);
+                }
+                return future;
+            }
+        }
+
+        /**
+         * starts checking the health in the background until the handle has no connections anymore
+         */
+        private void monitor() {
+            if (!monitoring.compareAndSet(false, true)) {
+                return;
+            }
+            scheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (refCount.get() <= 0) {
+                        monitoring.set(false);
+                        return;
+                    }
+                    if (healthCheck.get() == null) {
+                        checkHealth();
+                    } else if (System.nanoTime() - healthCheckStartedAt > healthCheckInterval) {
+                        health(false);
+                    }
+                    scheduler().schedule(this, healthCheckInterval, TimeUnit.NANOSECONDS);
+                }
+            }, healthCheckInterval, TimeUnit.NANOSECONDS);
+        }
+
+        void refreshServerVersion() {
+            if (!refreshingServerVersion.compareAndSet(false, true)) {
+                return;
+            }
+            ActionListener<SQLResponse> listener = new ActionListener<SQLResponse>() {
+                @Override
+                public void onResponse(SQLResponse response) {
+                    try {
+                        serverVersion(CrateServerVersion.fromNodes(response));
+                    } finally {
+                        refreshingServerVersion.set(false);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    // keep the last known version, the next access will retry
+                    refreshingServerVersion.set(false);
+                }
+            };
+            try {
+                client().sql(new SQLRequest(CrateServerVersion.VERSION_STMT), listener);
+            } catch (RuntimeException e) {
+                listener.onFailure(e);
+            }
+        }
+
+        /**
+         * Sets how long the client is kept once the last connection of this handle is closed,
+         * <code>0</code> closes it right away. The most recently opened connection decides.
+         */
+        void idleTimeout(long millis) {
+            idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0L));
+        }
+
+        /**
+         * releases a reference acquired by {@link #getHandle(String)} or {@link #tryIncRef()},
+         * a release without a reference is ignored
+         */
         void connectionClosed() {
-            synchronized (clientHandles) {
-                if (--refCount == 0) {
-                    client().close();
-                    clientHandles.remove(this.url);
+            while (true) {
+                int current = refCount.get();
+                if (current <= 0) {
+                    return;
                 }
+                if (refCount.compareAndSet(current, current - 1)) {
+                    if (current > 1) {
+                        return;
+                    }
+                    break;
+                }
+            }
+            long idleTimeout = idleTimeoutNanos;
+            if (idleTimeout == 0L) {
+                closeIfIdle();
+                return;
             }
+            final int generation = idleGeneration.incrementAndGet();
+            scheduler().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (idleGeneration.get() == generation) {
+                        closeIfIdle();
+                    }
+                }
+            }, idleTimeout, TimeUnit.NANOSECONDS);
         }
 
-        void incRef() {
-            assert refCount > 0;
-            refCount++;
+        private void closeIfIdle() {
+            if (refCount.compareAndSet(0, CLOSED)) {
+                // before the handle is removed, so a new handle of the same hosts can register its metrics
+                metrics.unregister();
+                clientHandles.remove(url, this);
+                CrateClient client;
+                synchronized (this) {
+                    // waits for a client being created, but does not create one just to close it
+                    client = this.client;
+                }
+                if (client != null) {
+                    clientsClosed.incrementAndGet();
+                    client.close();
+                }
+            }
+        }
+
+        /**
+         * @return false if the handle was already closed
+         */
+        boolean tryIncRef() {
+            while (true) {
+                int current = refCount.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+                if (refCount.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
         }
 
     }
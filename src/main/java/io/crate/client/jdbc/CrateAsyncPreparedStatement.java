@@ -0,0 +1,59 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Asynchronous execution of prepared statements, obtained with
+ * <code>preparedStatement.unwrap(CrateAsyncPreparedStatement.class)</code>.
+ * <p>
+ * The parameters are copied when a method is called, so they can be changed right away.
+ * The query timeout of the statement is not applied.
+ *
+ * @see CrateAsyncStatement
+ */
+public interface CrateAsyncPreparedStatement {
+
+    /**
+     * @see java.sql.PreparedStatement#executeQuery()
+     */
+    CrateFuture<ResultSet> executeQueryAsync() throws SQLException;
+
+    /**
+     * @see java.sql.PreparedStatement#executeUpdate()
+     */
+    CrateFuture<Integer> executeUpdateAsync() throws SQLException;
+
+    /**
+     * Sends the current batch and clears it.
+     * The future fails with a {@link java.sql.BatchUpdateException} if any of the rows failed.
+     * <p>
+     * If the batch is split into multiple requests, see {@link CrateConnection#BULK_CHUNK_SIZE},
+     * {@link CrateConnection#BULK_CHUNK_BYTES} and {@link CrateConnection#BULK_FLUSH_BYTES},
+     * the batch is executed blocking and an already completed future is returned.
+     *
+     * @see java.sql.PreparedStatement#executeBatch()
+     */
+    CrateFuture<int[]> executeBatchAsync() throws SQLException;
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Asynchronous execution of SQL statements, obtained with
+ * <code>statement.unwrap(CrateAsyncStatement.class)</code>.
+ * <p>
+ * None of these methods wait for the server, so a single thread can keep many statements in flight.
+ * In contrast to the blocking methods, the results are not stored on the statement,
+ * so one statement can be used for several concurrent executions.
+ * The query timeout of the statement is not applied.
+ */
+public interface CrateAsyncStatement {
+
+    /**
+     * @see java.sql.Statement#executeQuery(String)
+     */
+    CrateFuture<ResultSet> executeQueryAsync(String sql) throws SQLException;
+
+    /**
+     * @see java.sql.Statement#executeUpdate(String)
+     */
+    CrateFuture<Integer> executeUpdateAsync(String sql) throws SQLException;
+
+    /**
+     * Sends all statements of the current batch at once and clears it.
+     * The future fails with a {@link java.sql.BatchUpdateException} if any of them failed.
+     *
+     * @see java.sql.Statement#executeBatch()
+     */
+    CrateFuture<int[]> executeBatchAsync() throws SQLException;
+}
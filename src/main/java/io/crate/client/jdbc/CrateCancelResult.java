@@ -0,0 +1,68 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of cancelling a statement, see {@link CrateStatementBase#cancelAsync()}.
+ */
+public class CrateCancelResult {
+
+    private final int cancelledRequests;
+    private final int killedJobs;
+    private final long latencyNanos;
+
+    CrateCancelResult(int cancelledRequests, int killedJobs, long latencyNanos) {
+        this.cancelledRequests = cancelledRequests;
+        this.killedJobs = killedJobs;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @return the number of pending requests whose waiting threads were released
+     */
+    public int cancelledRequests() {
+        return cancelledRequests;
+    }
+
+    /**
+     * @return the number of jobs killed on the server, 0 if the server does not support killing jobs
+     */
+    public int killedJobs() {
+        return killedJobs;
+    }
+
+    /**
+     * @return the time from the call to cancel until the server jobs were killed
+     */
+    public long latency(TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "CrateCancelResult{cancelledRequests=%d, killedJobs=%d, latency=%dms}",
+                cancelledRequests, killedJobs, latency(TimeUnit.MILLISECONDS));
+    }
+}
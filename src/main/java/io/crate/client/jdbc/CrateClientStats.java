@@ -0,0 +1,85 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.Locale;
+
+/**
+ * Counters of the clients shared by the connections of a driver, see {@link CrateDriver#clientStats()}.
+ */
+public class CrateClientStats {
+
+    private final long created;
+    private final long reused;
+    private final long closed;
+    private final int open;
+    private final int idle;
+
+    CrateClientStats(long created, long reused, long closed, int open, int idle) {
+        this.created = created;
+        this.reused = reused;
+        this.closed = closed;
+        this.open = open;
+        this.idle = idle;
+    }
+
+    /**
+     * @return the number of clients created, each one starts its own transport and threads
+     */
+    public long created() {
+        return created;
+    }
+
+    /**
+     * @return the number of connections which got an already existing client
+     */
+    public long reused() {
+        return reused;
+    }
+
+    /**
+     * @return the number of clients closed, either with their last connection or after being idle
+     */
+    public long closed() {
+        return closed;
+    }
+
+    /**
+     * @return the number of clients currently kept, including idle ones
+     */
+    public int open() {
+        return open;
+    }
+
+    /**
+     * @return the number of clients without connections, which are closed once their idle timeout expired
+     */
+    public int idle() {
+        return idle;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "CrateClientStats{created=%d, reused=%d, closed=%d, open=%d, idle=%d}",
+                created, reused, closed, open, idle);
+    }
+}
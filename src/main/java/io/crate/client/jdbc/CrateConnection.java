@@ -23,26 +23,123 @@ package io.crate.client.jdbc;
 
 import io.crate.client.CrateClient;
 import io.crate.shade.org.elasticsearch.client.transport.NoNodeAvailableException;
+import io.crate.shade.org.elasticsearch.common.Nullable;
 
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class CrateConnection implements Connection {
 
+    /**
+     * maximum number of rows sent in a single bulk request, 0 disables chunking by rows
+     */
+    static final String BULK_CHUNK_SIZE = "bulkchunksize";
+
+    /**
+     * maximum estimated size in bytes of a single bulk request, 0 disables chunking by size
+     */
+    static final String BULK_CHUNK_BYTES = "bulkchunkbytes";
+
+    /**
+     * maximum number of bulk requests of a batch that are sent but not yet completed
+     */
+    static final String BULK_MAX_IN_FLIGHT = "bulkmaxinflight";
+
+    /**
+     * estimated size in bytes of a pending batch that triggers sending it on <code>addBatch()</code>
+     */
+    static final String BULK_FLUSH_BYTES = "bulkflushbytes";
+
+    /**
+     * number of pages of a paged result that are fetched ahead of the one being read
+     */
+    static final String PREFETCH_PAGES = "prefetchpages";
+
+    /**
+     * milliseconds the client is kept after the last connection to its hosts was closed
+     */
+    static final String CLIENT_IDLE_TIMEOUT = "clientidletimeout";
+
+    /**
+     * number of closed prepared statements kept for reuse, see {@link StatementCache}
+     */
+    static final String STATEMENT_CACHE_SIZE = "statementcachesize";
+
+    /**
+     * maximum number of statements of a <code>Statement.executeBatch()</code> that are sent but not yet completed
+     */
+    static final String BATCH_PARALLELISM = "batchparallelism";
+
+    /**
+     * milliseconds after which an execution is kept in the slow statement log, see {@link #slowStatements()}
+     */
+    static final String SLOW_STATEMENT_THRESHOLD = "slowstatementthreshold";
+
+    /**
+     * number of statements kept in the slow statement log
+     */
+    static final String SLOW_STATEMENT_LOG_SIZE = "slowstatementlogsize";
+
+    /**
+     * milliseconds between writing the new statements of the slow statement log to the driver logger
+     */
+    static final String SLOW_STATEMENT_LOG_INTERVAL = "slowstatementloginterval";
+
+    /**
+     * comma separated class names of the {@link CrateStatementInterceptor}s of the connection
+     */
+    static final String STATEMENT_INTERCEPTORS = "statementinterceptors";
+
+    /**
+     * maximum number of fingerprints kept in the query digests of the client, see {@link #queryDigests()}
+     */
+    static final String QUERY_DIGEST_SIZE = "querydigestsize";
+
+    /**
+     * whether cancelled statements kill the server jobs running the same statement, see {@link JobKiller}
+     */
+    static final String KILL_JOBS = "killjobs";
+
     private final ClientHandleRegistry.ClientHandle clientHandle;
+    private final CrateMetrics metrics;
+    private final String url;
     private boolean readOnly;
     private String schema = null;
     private CrateDatabaseMetaData metaData;
-    private String databaseVersion;
+    @Nullable
+    private StatementCache statementCache;
+    @Nullable
+    private SlowStatementLog slowStatementLog;
+    @Nullable
+    private ScheduledFuture<?> slowStatementLogging;
+    @Nullable
+    private CrateStatementInterceptor[] interceptors;
+    @Nullable
+    private QueryDigests queryDigests;
+    // set once the handle was released, a connection which was never connected still holds it
+    private boolean closed = false;
+    // set once the connection was counted as opened by the metrics
+    private boolean opened = false;
     private Properties properties = new Properties();
 
-    public CrateConnection(ClientHandleRegistry.ClientHandle handle, Properties properties) {
+    /**
+     * @param url the URL without protocol and properties, the handle is shared by all URLs with the same hosts
+     */
+    public CrateConnection(ClientHandleRegistry.ClientHandle handle, Properties properties, String url) {
         this.clientHandle = handle;
+        this.metrics = handle.metrics();
+        this.url = url;
         this.readOnly = false;
         this.properties = properties;
     }
 
+    public CrateConnection(ClientHandleRegistry.ClientHandle handle, Properties properties) {
+        this(handle, properties, handle.url());
+    }
+
     public CrateConnection(ClientHandleRegistry.ClientHandle handle) {
         this(handle, new Properties());
     }
@@ -51,14 +148,62 @@ public class CrateConnection implements Connection {
         return clientHandle.client();
     }
 
+    /**
+     * @return the metrics of the client of this connection, which is shared by all connections to the same hosts
+     */
+    public CrateMetricsMXBean metrics() {
+        return metrics;
+    }
+
+    CrateMetrics clientMetrics() {
+        return metrics;
+    }
+
     public void connect() throws SQLException {
+        try {
+            clientHandle.idleTimeout(longProperty(CLIENT_IDLE_TIMEOUT, 0L));
+            int statementCacheSize = (int) longProperty(STATEMENT_CACHE_SIZE, 0L);
+            if (statementCacheSize > 0) {
+                statementCache = new StatementCache(statementCacheSize);
+            }
+            int queryDigestSize = (int) longProperty(QUERY_DIGEST_SIZE, 0L);
+            if (queryDigestSize > 0) {
+                queryDigests = metrics.queryDigests(queryDigestSize);
+            }
+            interceptors = createInterceptors(properties.getProperty(STATEMENT_INTERCEPTORS));
+            long slowStatementThreshold = longProperty(SLOW_STATEMENT_THRESHOLD, 0L);
+            if (slowStatementThreshold > 0) {
+                slowStatementLog = new SlowStatementLog(slowStatementThreshold, TimeUnit.MILLISECONDS,
+                        (int) longProperty(SLOW_STATEMENT_LOG_SIZE, 128L));
+                long logInterval = longProperty(SLOW_STATEMENT_LOG_INTERVAL, 0L);
+                if (logInterval > 0) {
+                    final SlowStatementLog log = slowStatementLog;
+                    slowStatementLogging = clientHandle.scheduleWithFixedDelay(new Runnable() {
+                        @Override
+                        public void run() {
+                            log.log(CrateDriver.LOGGER);
+                        }
+                    }, logInterval, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
         try {
             metaData = new CrateDatabaseMetaData(this);
-            databaseVersion = metaData.getDatabaseProductVersion();
+            // the version is fetched once per client handle and shared by all of its connections
+            clientHandle.serverVersion();
         } catch (NoNodeAvailableException e) {
             close();
             throw new SQLException(String.format(Locale.ENGLISH, "Connect to '%s' failed", getUrl()), e);
+        } catch (RuntimeException e) {
+            // e.g. a SQLActionException of the version query
+            close();
+            throw new SQLException(e.getMessage(), e);
         }
+        metrics.connectionOpened();
+        opened = true;
     }
 
     @Override
@@ -67,12 +212,115 @@ public class CrateConnection implements Connection {
         return new CrateStatement(this);
     }
 
+    /**
+     * Returns a statement from the statement cache if there is one for the SQL and the current schema,
+     * see {@link #STATEMENT_CACHE_SIZE}. With a statement cache every call returns a new handle to the
+     * statement, which can not be used anymore once it is closed, even if the statement is handed out again.
+     */
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
         checkClosed();
+        if (statementCache != null) {
+            CratePreparedStatement statement = statementCache.take(new StatementCache.Key(sql, schema));
+            if (statement != null) {
+                statement.cached(false);
+            } else {
+                statement = new CratePreparedStatement(this, sql);
+            }
+            return new CratePreparedStatementHandle(this, statement, null);
+        }
         return new CratePreparedStatement(this, sql);
     }
 
+    /**
+     * @return the counters of the statement cache, null if it is disabled, see {@link #STATEMENT_CACHE_SIZE}
+     */
+    @Nullable
+    public CrateStatementCacheStats statementCacheStats() {
+        return statementCache == null ? null : statementCache.stats();
+    }
+
+    /**
+     * @return the most recent executions of this connection which took longer than the slow statement threshold,
+     * oldest first, see {@link #SLOW_STATEMENT_THRESHOLD}. Empty if no threshold is set.
+     */
+    public List<CrateSlowStatement> slowStatements() {
+        return slowStatementLog == null ? Collections.<CrateSlowStatement>emptyList() : slowStatementLog.entries();
+    }
+
+    @Nullable
+    SlowStatementLog slowStatementLog() {
+        return slowStatementLog;
+    }
+
+    /**
+     * Returns the statistics of the statements executed by all connections to the same hosts which
+     * set {@link #QUERY_DIGEST_SIZE}, grouped by their fingerprint and ordered by their total latency,
+     * highest first. The size of the first connection is used.
+     *
+     * @return the query digests, empty if this connection did not set a size
+     */
+    public List<CrateQueryDigest> queryDigests() {
+        return queryDigests == null ? Collections.<CrateQueryDigest>emptyList() : queryDigests.top();
+    }
+
+    @Nullable
+    QueryDigests queryDigestTable() {
+        return queryDigests;
+    }
+
+    /**
+     * @return the interceptors of the statements of this connection, null if there are none
+     */
+    @Nullable
+    CrateStatementInterceptor[] interceptors() {
+        return interceptors;
+    }
+
+    @Nullable
+    private static CrateStatementInterceptor[] createInterceptors(@Nullable String classNames) throws SQLException {
+        if (classNames == null || classNames.trim().isEmpty()) {
+            return null;
+        }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = CrateConnection.class.getClassLoader();
+        }
+        List<CrateStatementInterceptor> interceptors = new ArrayList<>();
+        for (String className : classNames.split(",")) {
+            className = className.trim();
+            if (className.isEmpty()) {
+                continue;
+            }
+            try {
+                interceptors.add(Class.forName(className, true, classLoader)
+                        .asSubclass(CrateStatementInterceptor.class).newInstance());
+            } catch (ClassNotFoundException | ClassCastException | InstantiationException | IllegalAccessException e) {
+                throw new SQLException(String.format(Locale.ENGLISH,
+                        "Cannot create statement interceptor '%s'", className), e);
+            }
+        }
+        return interceptors.isEmpty() ? null : interceptors.toArray(new CrateStatementInterceptor[interceptors.size()]);
+    }
+
+    /**
+     * called when a prepared statement is closed
+     *
+     * @return true if the statement was reset and is kept in the statement cache
+     */
+    boolean release(CratePreparedStatement statement) throws SQLException {
+        if (statementCache == null || isClosed() || !statement.isPoolable()) {
+            return false;
+        }
+        statement.reset();
+        statement.cached(true);
+        if (statementCache.offer(statement)) {
+            return true;
+        }
+        statement.cached(false);
+        return false;
+    }
+
     @Override
     public CallableStatement prepareCall(String sql) throws SQLException {
         checkClosed();
@@ -94,10 +342,30 @@ public class CrateConnection implements Connection {
         }
     }
 
+    long longProperty(String name, long defaultValue) throws SQLException {
+        String value = properties.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException(String.format(Locale.ENGLISH,
+                    "Invalid value '%s' for property '%s', a number is required", value, name), e);
+        }
+    }
+
     private boolean strict() {
         return Boolean.valueOf(properties.getProperty("strict", "false"));
     }
 
+    /**
+     * @return true if cancelled statements also kill their jobs on the server, see {@link #KILL_JOBS}
+     */
+    boolean killsJobs() {
+        return Boolean.valueOf(properties.getProperty(KILL_JOBS, "false"));
+    }
+
     @Override
     public boolean getAutoCommit() throws SQLException {
         checkClosed();
@@ -119,8 +387,28 @@ public class CrateConnection implements Connection {
         throwIfStrictMode("Rollback is not supported.");
     }
 
+    /**
+     * Releases the client handle, closing an already closed connection does nothing.
+     */
     @Override
     public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        if (opened) {
+            opened = false;
+            metrics.connectionClosed();
+        }
+        if (slowStatementLogging != null) {
+            slowStatementLogging.cancel(false);
+            slowStatementLogging = null;
+            // the statements since the last run
+            slowStatementLog.log(CrateDriver.LOGGER);
+        }
         metaData = null;
         clientHandle.connectionClosed();
     }
@@ -328,9 +616,16 @@ public class CrateConnection implements Connection {
         throw new SQLFeatureNotSupportedException();
     }
 
+    /**
+     * Checks whether the cluster responds, the result is cached for a short time,
+     * see {@link ClientHandleRegistry.ClientHandle#isAlive(long)}.
+     */
     @Override
     public boolean isValid(int timeout) throws SQLException {
-        return !isClosed();
+        if (timeout < 0) {
+            throw new SQLException("Timeout must be greater than or equal to 0");
+        }
+        return !isClosed() && clientHandle.isAlive(TimeUnit.SECONDS.toMillis(timeout));
     }
 
     @Override
@@ -384,7 +679,7 @@ public class CrateConnection implements Connection {
     @Override
     public void setSchema(String schema) throws SQLException {
         checkClosed();
-        if (VersionStringComparator.compareVersions(databaseVersion, CrateDatabaseMetaData.CRATE_REQUEST_DEFAULT_SCHEMA) < 0) {
+        if (!serverVersion().supportsDefaultSchema()) {
             // according to JDBC java docs the driver should silently ignore it if it is not supported.
             return;
         }
@@ -439,6 +734,28 @@ public class CrateConnection implements Connection {
     }
 
     public String getUrl() {
-        return clientHandle.url();
+        return url;
+    }
+
+    /**
+     * @return the version and features of the cluster this connection is connected to
+     */
+    public CrateServerVersion serverVersion() {
+        return clientHandle.serverVersion();
+    }
+
+    /**
+     * @return the version of the cluster if it was already fetched, null otherwise, never blocks
+     */
+    @Nullable
+    CrateServerVersion cachedServerVersion() {
+        return clientHandle.cachedServerVersion();
+    }
+
+    /**
+     * runs the task in the background, used by threads which must not block
+     */
+    void execute(Runnable task) {
+        clientHandle.execute(task);
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Creates the physical connections of a connection pool.
+ * <p>
+ * All connections to the same hosts share one client, see {@link CrateDriver#clientStats()},
+ * so a physical connection is cheap. Crate has no authentication, user and password are ignored.
+ */
+public class CrateConnectionPoolDataSource implements ConnectionPoolDataSource {
+
+    private String url;
+    private final Properties properties = new Properties();
+    private int maxStatements = 0;
+    private int loginTimeout = 0;
+    private PrintWriter logWriter;
+
+    /**
+     * @param url a JDBC URL like <code>crate://host1:4300,host2:4300/schema?property=value</code>
+     */
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * sets a connection property, see the driver documentation
+     */
+    public void setProperty(String name, String value) {
+        properties.setProperty(name, value);
+    }
+
+    public String getProperty(String name) {
+        return properties.getProperty(name);
+    }
+
+    /**
+     * Sets the number of prepared statements each connection keeps for reuse,
+     * <code>0</code> does not keep statements.
+     */
+    public void setMaxStatements(int maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    public int getMaxStatements() {
+        return maxStatements;
+    }
+
+    @Override
+    public CratePooledConnection getPooledConnection() throws SQLException {
+        if (url == null) {
+            throw new SQLException("No URL set");
+        }
+        Properties info = new Properties();
+        info.putAll(properties);
+        if (maxStatements > 0) {
+            info.setProperty(CrateConnection.STATEMENT_CACHE_SIZE, String.valueOf(maxStatements));
+        }
+        Connection connection = CrateDriver.INSTANCE.connect(url, info);
+        if (connection == null) {
+            throw new SQLException(String.format(Locale.ENGLISH, "URL '%s' is not a Crate URL", url));
+        }
+        return new CratePooledConnection((CrateConnection) connection);
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String user, String password) throws SQLException {
+        return getPooledConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return loginTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return CrateDriver.LOGGER;
+    }
+}
@@ -2,7 +2,6 @@ package io.crate.client.jdbc;
 
 import io.crate.action.sql.SQLResponse;
 import io.crate.shade.com.google.common.base.Joiner;
-import io.crate.shade.com.google.common.base.Splitter;
 import io.crate.shade.org.elasticsearch.common.collect.Tuple;
 import io.crate.types.*;
 
@@ -16,9 +15,9 @@ public class CrateDatabaseMetaData implements DatabaseMetaData {
     protected static final String CRATE_BULK_ARG_VERSION = "0.42.0";
     protected static final String CRATE_SCHEMATA_VERSION = "0.46.0";
     protected static final String CRATE_REQUEST_DEFAULT_SCHEMA = "0.48.1";
+    protected static final String CRATE_KILL_VERSION = "0.55.0";
 
     private final CrateConnection connection;
-    private String dataBaseVersion;
 
     public CrateDatabaseMetaData(CrateConnection connection) {
         this.connection = connection;
@@ -76,21 +75,7 @@ public class CrateDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public String getDatabaseProductVersion() throws SQLException {
-        ResultSet resultSet = connection.createStatement().executeQuery("select version['number'] from sys.nodes");
-        resultSet.first();
-        String minVersion = null;
-        do {
-            String nodeVersion = resultSet.getString(1);
-            if (nodeVersion == null) {
-                continue;
-            }
-
-            if (minVersion == null || VersionStringComparator.compareVersions(nodeVersion, minVersion) < 0) {
-                minVersion = nodeVersion;
-            }
-        } while (resultSet.next());
-        dataBaseVersion = minVersion;
-        return dataBaseVersion;
+        return connection.serverVersion().number();
     }
 
     @Override
@@ -404,7 +389,7 @@ public class CrateDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public boolean supportsSchemasInTableDefinitions() throws SQLException {
-        return VersionStringComparator.compareVersions(getDatabaseProductVersion(), CRATE_SCHEMATA_VERSION) >= 0;
+        return connection.serverVersion().supportsSchemata();
     }
 
     @Override
@@ -757,7 +742,6 @@ public class CrateDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public ResultSet getSchemas(String catalog, String schemaPattern) throws SQLException {
-        getDatabaseProductVersion();
         boolean hasSchemata = getDatabaseMinorVersion() > 45;
         String table = (hasSchemata
                 ? "information_schema.schemata"
@@ -1529,18 +1513,12 @@ public class CrateDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public int getDatabaseMajorVersion() throws SQLException {
-        if (dataBaseVersion == null) {
-            return -1;
-        }
-        return new Integer(Splitter.on(".").splitToList(dataBaseVersion).get(0));
+        return connection.serverVersion().major();
     }
 
     @Override
     public int getDatabaseMinorVersion() throws SQLException {
-        if (dataBaseVersion == null) {
-            return -1;
-        }
-        return new Integer(Splitter.on(".").splitToList(dataBaseVersion).get(1));
+        return connection.serverVersion().minor();
     }
 
     @Override
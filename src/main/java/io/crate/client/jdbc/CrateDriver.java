@@ -37,21 +37,54 @@ public class CrateDriver implements Driver {
     private static final String SUB_PROTOCOL = "crate";
     public static final String PREFIX = SUB_PROTOCOL + ":" + "//";
     public static final String LONG_PREFIX = PROTOCOL + ":" + SUB_PROTOCOL + ":" + "//";
-    private final ClientHandleRegistry clientHandleRegistry = new ClientHandleRegistry();
+    private final ClientHandleRegistry clientHandleRegistry;
+
+    /**
+     * the driver registered at the {@link DriverManager}, also used by the data sources
+     */
+    static final CrateDriver INSTANCE = new CrateDriver();
+
+    /**
+     * the parent logger of the driver, see {@link #getParentLogger()}
+     */
+    static final Logger LOGGER = Logger.getLogger("io.crate.client.jdbc");
 
     static {
         try {
-            DriverManager.registerDriver(new CrateDriver());
+            DriverManager.registerDriver(INSTANCE);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
+        INSTANCE.clientHandleRegistry.metrics().register("type=Driver");
     }
 
     public Collection<String> clientURLs() {
         return clientHandleRegistry.urls();
     }
 
+    /**
+     * @return how many clients were created and reused by connections of this driver
+     */
+    public CrateClientStats clientStats() {
+        return clientHandleRegistry.stats();
+    }
+
+    /**
+     * @return the metrics of the requests sent by connections of this driver
+     */
+    public CrateMetricsMXBean metrics() {
+        return clientHandleRegistry.metrics();
+    }
+
     public CrateDriver() {
+        this(new ClientHandleRegistry());
+    }
+
+    /**
+     * a driver with its own registry, not registered at the {@link DriverManager}
+     */
+    CrateDriver(ClientHandleRegistry clientHandleRegistry) {
+        this.clientHandleRegistry = clientHandleRegistry;
     }
 
 
@@ -72,7 +105,7 @@ public class CrateDriver implements Driver {
         }
 
         ClientHandleRegistry.ClientHandle handle = clientHandleRegistry.getHandle(url);
-        CrateConnection connection = new CrateConnection(handle, info);
+        CrateConnection connection = new CrateConnection(handle, info, url);
         connection.connect();
 
         if (!url.equals("/")) {
@@ -154,6 +187,6 @@ public class CrateDriver implements Driver {
 
     @Override
     public Logger getParentLogger() throws SQLFeatureNotSupportedException {
-        throw new SQLFeatureNotSupportedException("No parent logger");
+        return LOGGER;
     }
 }
@@ -0,0 +1,49 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * The pending result of a statement executed asynchronously,
+ * see {@link CrateAsyncStatement} and {@link CrateAsyncPreparedStatement}.
+ * <p>
+ * {@link #get()} wraps any failure in an {@link java.util.concurrent.ExecutionException}
+ * with a {@link SQLException} as its cause.
+ */
+public interface CrateFuture<T> extends Future<T> {
+
+    interface Callback<T> {
+
+        void onSuccess(T result);
+
+        void onFailure(SQLException e);
+    }
+
+    /**
+     * Registers a callback which is invoked on the given executor once the result is available.
+     * If the result is already available, the callback is submitted to the executor right away.
+     */
+    void addCallback(Callback<? super T> callback, Executor executor);
+}
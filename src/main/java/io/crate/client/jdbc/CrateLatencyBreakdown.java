@@ -0,0 +1,95 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.Locale;
+
+/**
+ * The phases of the last request of a statement, see {@link CrateStatementBase#latencyBreakdown()}.
+ * The latencies of all requests are recorded in the {@link CrateMetricsMXBean} of the client.
+ */
+public class CrateLatencyBreakdown {
+
+    private final int bulkSize;
+    private final long buildNanos;
+    private final long transportNanos;
+    private final long serverNanos;
+    private final long resultSetNanos;
+
+    CrateLatencyBreakdown(int bulkSize, long buildNanos, long transportNanos, long serverNanos, long resultSetNanos) {
+        this.bulkSize = bulkSize;
+        this.buildNanos = buildNanos;
+        this.transportNanos = transportNanos;
+        this.serverNanos = serverNanos;
+        this.resultSetNanos = resultSetNanos;
+    }
+
+    /**
+     * @return the number of rows of a bulk request, -1 for a single execution
+     */
+    public int bulkSize() {
+        return bulkSize;
+    }
+
+    /**
+     * @return the nanoseconds from the start of the execution until its first request was sent,
+     * 0 for the later requests of a batch
+     */
+    public long buildNanos() {
+        return buildNanos;
+    }
+
+    /**
+     * @return the nanoseconds from sending the request until its response was received,
+     * without the time spent on the server
+     */
+    public long transportNanos() {
+        return transportNanos;
+    }
+
+    /**
+     * @return the nanoseconds spent on the server, as reported by the duration of the response,
+     * 0 if the request failed
+     */
+    public long serverNanos() {
+        return serverNanos;
+    }
+
+    /**
+     * @return the nanoseconds it took to create the result set of the response,
+     * 0 if the execution did not create one
+     */
+    public long resultSetNanos() {
+        return resultSetNanos;
+    }
+
+    public long totalNanos() {
+        return buildNanos + transportNanos + serverNanos + resultSetNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                "CrateLatencyBreakdown{bulkSize=%d, build=%.3f ms, transport=%.3f ms, server=%.3f ms, resultSet=%.3f ms}",
+                bulkSize, buildNanos / 1e6, transportNanos / 1e6, serverNanos / 1e6, resultSetNanos / 1e6);
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+
+/**
+ * The metrics of a client, see {@link ClientHandleRegistry.ClientHandle#metrics()}, or of all clients of a driver.
+ * Everything recorded is also recorded by the parent, so the driver metrics cover all clients, including closed ones.
+ * <p>
+ * Recording only updates {@link StripedCounter}s, it does not allocate or lock.
+ */
+class CrateMetrics implements CrateMetricsMXBean {
+
+    static final String DOMAIN = "io.crate.client.jdbc";
+
+    @Nullable
+    private final CrateMetrics parent;
+
+    private final StripedCounter executions = new StripedCounter();
+    private final StripedCounter bulkRequests = new StripedCounter();
+    private final StripedCounter bulkRows = new StripedCounter();
+    private final StripedCounter timeouts = new StripedCounter();
+    private final StripedCounter failures = new StripedCounter();
+    private final StripedCounter inFlight = new StripedCounter();
+    private final StripedCounter openConnections = new StripedCounter();
+    private final StripedCounter openStatements = new StripedCounter();
+    private final LatencyHistogram executionLatency = new LatencyHistogram();
+    private final LatencyHistogram bulkLatency = new LatencyHistogram();
+    private final LatencyHistogram buildLatency = new LatencyHistogram();
+    private final LatencyHistogram transportLatency = new LatencyHistogram();
+    private final LatencyHistogram serverLatency = new LatencyHistogram();
+    private final LatencyHistogram resultSetLatency = new LatencyHistogram();
+
+    @Nullable
+    private volatile ObjectName objectName;
+    @Nullable
+    private volatile QueryDigests queryDigests;
+
+    CrateMetrics(@Nullable CrateMetrics parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * called right before a request is sent
+     *
+     * @return the start of the request
+     */
+    long started() {
+        requestStarted();
+        return System.nanoTime();
+    }
+
+    private void requestStarted() {
+        inFlight.increment();
+        if (parent != null) {
+            parent.requestStarted();
+        }
+    }
+
+    /**
+     * called once the response or failure of a request started with {@link #started()} was received
+     *
+     * @param bulkRows the number of rows of a bulk request, -1 for a single execution
+     * @param failure null if the request succeeded, failures of single rows of a bulk request are not counted
+     */
+    void completed(long nanos, int bulkRows, @Nullable Throwable failure) {
+        inFlight.decrement();
+        if (bulkRows < 0) {
+            executions.increment();
+            executionLatency.record(nanos);
+        } else {
+            bulkRequests.increment();
+            this.bulkRows.add(bulkRows);
+            bulkLatency.record(nanos);
+        }
+        if (failure instanceof SQLTimeoutException) {
+            timeouts.increment();
+        } else if (failure != null) {
+            failures.increment();
+        }
+        if (parent != null) {
+            parent.completed(nanos, bulkRows, failure);
+        }
+    }
+
+    /**
+     * called once the response of a request was received, see {@link CrateLatencyBreakdown}
+     */
+    void phases(long buildNanos, long transportNanos, long serverNanos) {
+        buildLatency.record(buildNanos);
+        transportLatency.record(transportNanos);
+        serverLatency.record(serverNanos);
+        if (parent != null) {
+            parent.phases(buildNanos, transportNanos, serverNanos);
+        }
+    }
+
+    void resultSetCreated(long nanos) {
+        resultSetLatency.record(nanos);
+        if (parent != null) {
+            parent.resultSetCreated(nanos);
+        }
+    }
+
+    /**
+     * @return the query digests of the client, created with the given capacity if there are none yet
+     */
+    synchronized QueryDigests queryDigests(int capacity) {
+        if (queryDigests == null) {
+            queryDigests = new QueryDigests(capacity);
+        }
+        return queryDigests;
+    }
+
+    void connectionOpened() {
+        openConnections.increment();
+        if (parent != null) {
+            parent.connectionOpened();
+        }
+    }
+
+    void connectionClosed() {
+        openConnections.decrement();
+        if (parent != null) {
+            parent.connectionClosed();
+        }
+    }
+
+    void statementOpened() {
+        openStatements.increment();
+        if (parent != null) {
+            parent.statementOpened();
+        }
+    }
+
+    void statementClosed() {
+        openStatements.decrement();
+        if (parent != null) {
+            parent.statementClosed();
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server. Failures are ignored,
+     * as metrics must not keep the driver from working, e.g. if a security manager denies it.
+     *
+     * @param properties the key properties of the name, e.g. <code>type=Driver</code>
+     */
+    void register(String properties) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":" + properties);
+            mBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException | SecurityException e) {
+            // not available via JMX
+        }
+    }
+
+    void unregister() {
+        ObjectName objectName = this.objectName;
+        if (objectName == null) {
+            return;
+        }
+        this.objectName = null;
+        try {
+            mBeanServer().unregisterMBean(objectName);
+        } catch (JMException | SecurityException e) {
+            // already gone
+        }
+    }
+
+    /**
+     * @return the name the metrics are registered with, null if they are not registered
+     */
+    @Nullable
+    ObjectName objectName() {
+        return objectName;
+    }
+
+    private static MBeanServer mBeanServer() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+
+    @Override
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    @Override
+    public long getBulkRequests() {
+        return bulkRequests.sum();
+    }
+
+    @Override
+    public long getBulkRows() {
+        return bulkRows.sum();
+    }
+
+    @Override
+    public double getMeanRowsPerBulk() {
+        long requests = bulkRequests.sum();
+        return requests == 0 ? 0.0 : (double) bulkRows.sum() / requests;
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getInFlightRequests() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public long getOpenConnections() {
+        return openConnections.sum();
+    }
+
+    @Override
+    public long getOpenStatements() {
+        return openStatements.sum();
+    }
+
+    @Override
+    public double getExecutionLatencyMeanMicros() {
+        return executionLatency.snapshot().meanMicros();
+    }
+
+    @Override
+    public long getExecutionLatencyP50Micros() {
+        return executionLatency.snapshot().percentileMicros(0.5);
+    }
+
+    @Override
+    public long getExecutionLatencyP99Micros() {
+        return executionLatency.snapshot().percentileMicros(0.99);
+    }
+
+    @Override
+    public long getExecutionLatencyP999Micros() {
+        return executionLatency.snapshot().percentileMicros(0.999);
+    }
+
+    @Override
+    public long getExecutionLatencyMaxMicros() {
+        return executionLatency.snapshot().maxMicros();
+    }
+
+    @Override
+    public double getBulkLatencyMeanMicros() {
+        return bulkLatency.snapshot().meanMicros();
+    }
+
+    @Override
+    public long getBulkLatencyP50Micros() {
+        return bulkLatency.snapshot().percentileMicros(0.5);
+    }
+
+    @Override
+    public long getBulkLatencyP99Micros() {
+        return bulkLatency.snapshot().percentileMicros(0.99);
+    }
+
+    @Override
+    public long getBulkLatencyP999Micros() {
+        return bulkLatency.snapshot().percentileMicros(0.999);
+    }
+
+    @Override
+    public long getBulkLatencyMaxMicros() {
+        return bulkLatency.snapshot().maxMicros();
+    }
+
+    @Override
+    public String[] getQueryDigests() {
+        QueryDigests queryDigests = this.queryDigests;
+        if (queryDigests == null) {
+            return new String[0];
+        }
+        List<CrateQueryDigest> top = queryDigests.top();
+        String[] digests = new String[top.size()];
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = top.get(i).toString();
+        }
+        return digests;
+    }
+
+    @Override
+    public double getBuildLatencyMeanMicros() {
+        return buildLatency.snapshot().meanMicros();
+    }
+
+    @Override
+    public long getBuildLatencyP50Micros() {
+        return buildLatency.snapshot().percentileMicros(0.5);
+    }
+
+    @Override
+    public long getBuildLatencyP99Micros() {
+        return buildLatency.snapshot().percentileMicros(0.99);
+    }
+
+    @Override
+    public double getTransportLatencyMeanMicros() {
+        return transportLatency.snapshot().meanMicros();
+    }
+
+    @Override
+    public long getTransportLatencyP50Micros() {
+        return transportLatency.snapshot().percentileMicros(0.5);
+    }
+
+    @Override
+    public long getTransportLatencyP99Micros() {
+        return transportLatency.snapshot().percentileMicros(0.99);
+    }
+
+    @Override
+    public double getServerLatencyMeanMicros() {
+        return serverLatency.snapshot().meanMicros();
+    }
+
+    @Override
+    public long getServerLatencyP50Micros() {
+        return serverLatency.snapshot().percentileMicros(0.5);
+    }
+
+    @Override
+    public long getServerLatencyP99Micros() {
+        return serverLatency.snapshot().percentileMicros(0.99);
+    }
+
+    @Override
+    public double getResultSetLatencyMeanMicros() {
+        return resultSetLatency.snapshot().meanMicros();
+    }
+
+    @Override
+    public long getResultSetLatencyP50Micros() {
+        return resultSetLatency.snapshot().percentileMicros(0.5);
+    }
+
+    @Override
+    public long getResultSetLatencyP99Micros() {
+        return resultSetLatency.snapshot().percentileMicros(0.99);
+    }
+}
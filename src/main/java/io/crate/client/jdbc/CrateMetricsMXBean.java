@@ -0,0 +1,124 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+/**
+ * Counters and latencies of the requests sent by the driver, either of all clients, see
+ * {@link CrateDriver#metrics()}, or of the client of a connection, see {@link CrateConnection#metrics()}.
+ * <p>
+ * Registered as MBeans named <code>io.crate.client.jdbc:type=Driver</code> and
+ * <code>io.crate.client.jdbc:type=Client,hosts="host1:port1,host2:port2"</code>. Latencies are measured on the client, from sending a
+ * request until its response was received, percentiles are approximated by at most 25%.
+ */
+public interface CrateMetricsMXBean {
+
+    /**
+     * @return the number of statements executed, without bulk requests
+     */
+    long getExecutions();
+
+    /**
+     * @return the number of bulk requests executed
+     */
+    long getBulkRequests();
+
+    /**
+     * @return the number of rows sent by bulk requests
+     */
+    long getBulkRows();
+
+    double getMeanRowsPerBulk();
+
+    /**
+     * @return the number of executions and bulk requests whose query timeout expired
+     */
+    long getTimeouts();
+
+    /**
+     * @return the number of executions and bulk requests that failed, without the ones that timed out
+     */
+    long getFailures();
+
+    /**
+     * @return the number of executions and bulk requests waiting for their response
+     */
+    long getInFlightRequests();
+
+    long getOpenConnections();
+
+    long getOpenStatements();
+
+    double getExecutionLatencyMeanMicros();
+
+    long getExecutionLatencyP50Micros();
+
+    long getExecutionLatencyP99Micros();
+
+    long getExecutionLatencyP999Micros();
+
+    long getExecutionLatencyMaxMicros();
+
+    double getBulkLatencyMeanMicros();
+
+    long getBulkLatencyP50Micros();
+
+    long getBulkLatencyP99Micros();
+
+    long getBulkLatencyP999Micros();
+
+    long getBulkLatencyMaxMicros();
+
+    /**
+     * @return the query digests of the client ordered by their total latency, empty if no connection
+     * enabled them or for the driver, see {@link CrateConnection#queryDigests()}
+     */
+    String[] getQueryDigests();
+
+    /**
+     * The phases of the requests that succeeded, see {@link CrateLatencyBreakdown}:
+     * building the request, the transport without the time spent on the server, the server and creating
+     * the result set.
+     */
+    double getBuildLatencyMeanMicros();
+
+    long getBuildLatencyP50Micros();
+
+    long getBuildLatencyP99Micros();
+
+    double getTransportLatencyMeanMicros();
+
+    long getTransportLatencyP50Micros();
+
+    long getTransportLatencyP99Micros();
+
+    double getServerLatencyMeanMicros();
+
+    long getServerLatencyP50Micros();
+
+    long getServerLatencyP99Micros();
+
+    double getResultSetLatencyMeanMicros();
+
+    long getResultSetLatencyP50Micros();
+
+    long getResultSetLatencyP99Micros();
+}
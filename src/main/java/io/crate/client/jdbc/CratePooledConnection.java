@@ -0,0 +1,124 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A physical {@link CrateConnection} managed by a connection pool,
+ * see {@link CrateConnectionPoolDataSource}.
+ * <p>
+ * Prepared statements are cached by the physical connection itself, see the
+ * <code>statementcachesize</code> property, so no statement events are fired.
+ */
+public class CratePooledConnection implements PooledConnection {
+
+    private final CrateConnection connection;
+    private final String schema;
+    private final CopyOnWriteArrayList<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+    private CrateLogicalConnection logicalConnection;
+
+    CratePooledConnection(CrateConnection connection) throws SQLException {
+        this.connection = connection;
+        this.schema = connection.getSchema();
+    }
+
+    /**
+     * restores the settings of the physical connection changed by a logical connection
+     */
+    void reset() throws SQLException {
+        connection.setReadOnly(false);
+        connection.setSchema(schema);
+        connection.clearWarnings();
+    }
+
+    /**
+     * @return the physical connection
+     */
+    CrateConnection physicalConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns a new handle to the physical connection, a previously returned one is closed.
+     */
+    @Override
+    public synchronized Connection getConnection() throws SQLException {
+        if (connection.isClosed()) {
+            throw new SQLException("Connection is closed");
+        }
+        if (logicalConnection != null) {
+            logicalConnection.invalidate();
+        }
+        logicalConnection = new CrateLogicalConnection(this, connection);
+        return logicalConnection;
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        if (logicalConnection != null) {
+            logicalConnection.invalidate();
+            logicalConnection = null;
+        }
+        if (!connection.isClosed()) {
+            connection.close();
+        }
+    }
+
+    void logicalConnectionClosed(CrateLogicalConnection closed) {
+        synchronized (this) {
+            if (closed != logicalConnection) {
+                return;
+            }
+            logicalConnection = null;
+        }
+        ConnectionEvent event = new ConnectionEvent(this);
+        for (ConnectionEventListener listener : listeners) {
+            listener.connectionClosed(event);
+        }
+    }
+
+    @Override
+    public void addConnectionEventListener(ConnectionEventListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectionEventListener(ConnectionEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void addStatementEventListener(StatementEventListener listener) {
+        // statements are cached by the physical connection
+    }
+
+    @Override
+    public void removeStatementEventListener(StatementEventListener listener) {
+    }
+}
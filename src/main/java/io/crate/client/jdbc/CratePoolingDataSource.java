@@ -0,0 +1,370 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Locale;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DataSource} pooling connections to Crate.
+ * <p>
+ * The physical connections are created by a {@link CrateConnectionPoolDataSource} and share one client.
+ * Closing a connection of this data source returns it to the pool. The pool must be configured
+ * before the first connection is requested.
+ * <pre>
+ * CratePoolingDataSource dataSource = new CratePoolingDataSource();
+ * dataSource.setUrl("crate://host1:4300,host2:4300/doc");
+ * dataSource.setMaxSize(20);
+ * dataSource.setMaxStatements(100);
+ * </pre>
+ */
+public class CratePoolingDataSource implements DataSource, AutoCloseable {
+
+    private final CrateConnectionPoolDataSource source;
+
+    private int minIdle = 0;
+    private int maxSize = 10;
+    private boolean validateOnBorrow = true;
+    private int validationTimeout = 1;
+
+    // most recently returned first, so rarely needed connections stay idle at the end
+    private final LinkedBlockingDeque<CratePooledConnection> idle = new LinkedBlockingDeque<>();
+    // physical connections, idle or in use
+    private final AtomicInteger size = new AtomicInteger();
+    // one per connection in use, created on first use
+    private volatile Semaphore permits;
+    private volatile boolean closed = false;
+
+    private final ConnectionEventListener listener = new ConnectionEventListener() {
+        @Override
+        public void connectionClosed(ConnectionEvent event) {
+            release((CratePooledConnection) event.getSource());
+        }
+
+        @Override
+        public void connectionErrorOccurred(ConnectionEvent event) {
+            discard((CratePooledConnection) event.getSource());
+            permits.release();
+            fill();
+        }
+    };
+
+    public CratePoolingDataSource() {
+        this(new CrateConnectionPoolDataSource());
+    }
+
+    CratePoolingDataSource(CrateConnectionPoolDataSource source) {
+        this.source = source;
+    }
+
+    /**
+     * @param url a JDBC URL like <code>crate://host1:4300,host2:4300/schema?property=value</code>
+     */
+    public void setUrl(String url) {
+        source.setUrl(url);
+    }
+
+    public String getUrl() {
+        return source.getUrl();
+    }
+
+    /**
+     * sets a connection property, see the driver documentation
+     */
+    public void setProperty(String name, String value) {
+        source.setProperty(name, value);
+    }
+
+    /**
+     * @see CrateConnectionPoolDataSource#setMaxStatements(int)
+     */
+    public void setMaxStatements(int maxStatements) {
+        source.setMaxStatements(maxStatements);
+    }
+
+    public int getMaxStatements() {
+        return source.getMaxStatements();
+    }
+
+    /**
+     * Sets the number of connections created when the pool is first used and kept afterwards, default <code>0</code>.
+     * Discarded connections are replaced until there are this many again.
+     */
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Sets the maximum number of connections, default <code>10</code>. If all are in use,
+     * {@link #getConnection()} waits for one to be returned, at most for the login timeout.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Whether a connection is checked with {@link Connection#isValid(int)} before it is handed out, default
+     * <code>true</code>. The check result is cached for a short time, so this is usually cheap.
+     */
+    public void setValidateOnBorrow(boolean validateOnBorrow) {
+        this.validateOnBorrow = validateOnBorrow;
+    }
+
+    public boolean isValidateOnBorrow() {
+        return validateOnBorrow;
+    }
+
+    /**
+     * Sets the timeout in seconds of the validation, default <code>1</code>.
+     */
+    public void setValidationTimeout(int seconds) {
+        this.validationTimeout = seconds;
+    }
+
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * @return the number of connections in the pool that are not in use
+     */
+    public int getNumIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of connections in use
+     */
+    public int getNumActive() {
+        return size.get() - idle.size();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Semaphore permits = start();
+        acquire(permits);
+        boolean discarded = false;
+        try {
+            // closed while waiting for a permit
+            checkOpen();
+            CratePooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isValid(pooled)) {
+                    return pooled.getConnection();
+                }
+                discard(pooled);
+                discarded = true;
+            }
+            pooled = create();
+            if (!isValid(pooled)) {
+                discard(pooled);
+                throw new SQLException(String.format(Locale.ENGLISH, "Connection to '%s' is not valid", getUrl()));
+            }
+            return pooled.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        } finally {
+            if (discarded) {
+                // after polling, so a replacement which is not valid either is not polled and replaced again
+                fill();
+            }
+        }
+    }
+
+    /**
+     * Crate has no authentication, user and password are ignored.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Closes all idle connections, connections in use are closed once they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        CratePooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Data source is closed");
+        }
+    }
+
+    private Semaphore start() throws SQLException {
+        checkOpen();
+        Semaphore permits = this.permits;
+        if (permits == null) {
+            synchronized (this) {
+                permits = this.permits;
+                if (permits == null) {
+                    permits = new Semaphore(maxSize, true);
+                    this.permits = permits;
+                    fill();
+                }
+            }
+        }
+        return permits;
+    }
+
+    private void acquire(Semaphore permits) throws SQLException {
+        int timeout = source.getLoginTimeout();
+        try {
+            if (timeout <= 0) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(timeout, TimeUnit.SECONDS)) {
+                throw new SQLTimeoutException(String.format(Locale.ENGLISH,
+                        "No connection available within %d seconds, all %d connections are in use", timeout, maxSize));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    private boolean isValid(CratePooledConnection pooled) throws SQLException {
+        return !validateOnBorrow || pooled.physicalConnection().isValid(validationTimeout);
+    }
+
+    private CratePooledConnection create() throws SQLException {
+        size.incrementAndGet();
+        try {
+            CratePooledConnection pooled = source.getPooledConnection();
+            pooled.addConnectionEventListener(listener);
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            size.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * creates idle connections until there are at least {@link #getMinIdle()} connections
+     */
+    private void fill() {
+        while (!closed && size.get() < minIdle) {
+            try {
+                idle.offerLast(create());
+            } catch (SQLException | RuntimeException e) {
+                // the next getConnection() reports the failure
+                return;
+            }
+        }
+    }
+
+    private void release(CratePooledConnection pooled) {
+        try {
+            if (closed) {
+                discard(pooled);
+                return;
+            }
+            try {
+                pooled.reset();
+                idle.offerFirst(pooled);
+            } catch (SQLException | RuntimeException e) {
+                discard(pooled);
+                fill();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(CratePooledConnection pooled) {
+        size.decrementAndGet();
+        pooled.removeConnectionEventListener(listener);
+        try {
+            pooled.close();
+        } catch (SQLException e) {
+            // the connection is not used anymore anyway
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        source.setLogWriter(out);
+    }
+
+    /**
+     * Sets how long {@link #getConnection()} waits for a connection if all are in use,
+     * <code>0</code> waits without timeout.
+     */
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        source.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return source.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return CrateDriver.LOGGER;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isAssignableFrom(getClass())) {
+            return (T) this;
+        }
+        throw new SQLException("Cannot unwrap to " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isAssignableFrom(getClass());
+    }
+}
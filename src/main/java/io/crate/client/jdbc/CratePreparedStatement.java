@@ -2,7 +2,7 @@ package io.crate.client.jdbc;
 
 import io.crate.action.sql.*;
 import io.crate.shade.com.google.common.base.Throwables;
-import io.crate.shade.org.elasticsearch.action.ActionFuture;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
 import io.crate.shade.org.elasticsearch.common.Nullable;
 
 import java.io.InputStream;
@@ -12,97 +12,118 @@ import java.net.URL;
 import java.sql.*;
 import java.sql.Date;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
-public class CratePreparedStatement extends CrateStatementBase implements PreparedStatement {
+public class CratePreparedStatement extends CrateStatementBase implements PreparedStatement, CrateAsyncPreparedStatement {
 
     static class CratePreparedStatementParser {
         /**
          * Parses the number of parameters from the given SQL statement.
          * Is aware of '?' and '$1' kind of parameters
-         * and does not consider those when occuring in strings.
+         * and does not consider those when occuring in strings, quoted identifiers or comments.
          *
          * @param statement the SQL statement to get the number of parameters from
          * @return a BitSet with all the parameter slots set ($1 -> "1", (?, ?) -> "11")
+         * @see ParsedStatement
          */
         public static BitSet getParameters(String statement) {
-            BitSet paramSlots = new BitSet();
-            int count = 0;
-            boolean insideString = false;
-
-            for (int i = 0; i < statement.length(); i++) {
-                switch (statement.charAt(i)) {
-                    case '\'':
-                        insideString ^= true;
-                        break;
-                    case '$':
-                        if (!insideString) {
-                            if (statement.length() > i + 1) {
-                                // numeric parameter
-                                int paramNum = getParamNumber(statement, i + 1);
-                                if (paramNum > 0) {
-                                    paramSlots.set(paramNum - 1);
-                                }
-                            }
-                        }
-                        break;
-                    case '?':
-                        if (!insideString) {
-                            paramSlots.set(count++);
-                        }
-                        break;
-                    default:
-
-                        break;
-                }
-            }
-            return paramSlots;
-        }
-
-        private static int getParamNumber(String statement, int pos) {
-            StringBuilder builder = new StringBuilder();
-            int i = pos,
-                    length = statement.length();
-            char c;
-            while (i < length) {
-                c = statement.charAt(i++);
-                if ('0' <= c && c <= '9') {
-                    builder.append(c);
-                } else {
-                    break;
-                }
-            }
-            try {
-                return Integer.valueOf(builder.toString());
-            } catch (NumberFormatException e) {
-                return -1;
-            }
+            return ParsedStatement.parse(statement).parameterSlots();
         }
     }
 
     private static final int[] BATCH_FAILED_RESPONSE = new int[]{EXECUTE_FAILED};
 
+    private final String stmt;
+    private final ParsedStatement parsedStatement;
+    private final StatementCache.Key cacheKey;
+    // closed by the user, but kept open by the statement cache of the connection
+    private boolean cached = false;
+    @Nullable
+    private final PagedQuery limitableQuery;
     private final SQLRequest sqlRequest = new SQLRequest();
     private SQLResponse sqlResponse;
 
     private final BitSet parameterSlots;
     private BitSet paramsAdded;
 
-    private List<Object[]> batchParams = new LinkedList<>();
-    private Object[] currentParams;
+    private final BatchBuffer params;
+
+    private int bulkChunkSize;
+    private long bulkChunkBytes;
+    private int bulkMaxInFlight;
+    private long bulkFlushBytes;
+    private long batchBytes = 0;
+    private BulkDispatcher bulkDispatcher;
 
     public CratePreparedStatement(CrateConnection connection, String stmt) {
-        super(connection);
+        super(connection, true);
         try {
+            cacheKey = new StatementCache.Key(stmt, connection.getSchema());
             sqlRequest.setDefaultSchema(connection.getSchema());
+            bulkChunkSize = (int) connection.longProperty(CrateConnection.BULK_CHUNK_SIZE, 0);
+            bulkChunkBytes = connection.longProperty(CrateConnection.BULK_CHUNK_BYTES, 0);
+            bulkMaxInFlight = (int) connection.longProperty(CrateConnection.BULK_MAX_IN_FLIGHT, 2);
+            bulkFlushBytes = connection.longProperty(CrateConnection.BULK_FLUSH_BYTES, 0);
         } catch (SQLException e) {
             throw Throwables.propagate(e);
         }
+        this.stmt = stmt;
+        parsedStatement = ParsedStatement.of(stmt);
+        limitableQuery = PagedQuery.parse(parsedStatement.strippedSql());
         sqlRequest.stmt(stmt);
         sqlRequest.includeTypesOnResponse(true);
-        parameterSlots = CratePreparedStatementParser.getParameters(sqlRequest.stmt());
+        parameterSlots = parsedStatement.parameterSlots();
         paramsAdded = new BitSet(parameterSlots.size());
-        currentParams = new Object[parameterSlots.length()];
+        params = new BatchBuffer(parameterSlots.length());
+    }
+
+    StatementCache.Key cacheKey() {
+        return cacheKey;
+    }
+
+    /**
+     * Offers the statement to the statement cache of the connection, it is closed only if it is not cached.
+     * A cached statement must not be used anymore, it is handed out again by
+     * {@link CrateConnection#prepareStatement(String)}.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (isClosed()) {
+            return;
+        }
+        if (!connection.release(this)) {
+            discard();
+        }
+    }
+
+    /**
+     * closes the statement without offering it to the statement cache
+     */
+    void discard() throws SQLException {
+        cached = false;
+        super.close();
+    }
+
+    /**
+     * marks the statement as closed while it is in the statement cache, or as open once it is handed out again
+     */
+    void cached(boolean cached) {
+        this.cached = cached;
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return cached || super.isClosed();
+    }
+
+    /**
+     * restores the state of a newly prepared statement
+     */
+    @Override
+    protected void reset() throws SQLException {
+        super.reset();
+        paramsAdded.clear();
+        params.clearCurrentRow();
+        clearBatch();
     }
 
     protected void checkAllArgumentsProvided() throws SQLException {
@@ -158,10 +179,14 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
     public boolean execute() throws SQLException {
         checkClosed();
         checkAllArgumentsProvided();
+        executionStarted();
 
-        sqlRequest.args(currentParams);
+        sqlRequest.stmt(limitToMaxRows(stmt, limitableQuery));
+        sqlRequest.args(params.currentRow());
         executeSingle();
-        resultSet = new CrateResultSet(this, sqlResponse);
+        long resultSetStarted = System.nanoTime();
+        resultSet = new CrateResultSet(this, sqlResponse, null, getMaxRows());
+        resultSetCreated(resultSetStarted);
         if (!hasResultSet(sqlResponse)) {
             return false;
         }
@@ -169,71 +194,165 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
     }
 
     private void executeSingle() throws SQLException {
-        try {
-            ActionFuture<SQLResponse> future = connection.client().sql(sqlRequest);
-            if (getQueryTimeout() > 0) {
-                sqlResponse = future.actionGet(getQueryTimeout(), TimeUnit.SECONDS);
-            } else {
-                sqlResponse = future.actionGet();
+        sqlResponse = executeRequest(sqlRequest);
+    }
+
+    /**
+     * @return a copy of the request with the given arguments, so it can be executed while the statement is reused
+     */
+    private SQLRequest newRequest(Object[] args) throws SQLException {
+        SQLRequest request = new SQLRequest(stmt, args);
+        request.setDefaultSchema(connection.getSchema());
+        request.includeTypesOnResponse(true);
+        return request;
+    }
+
+    @Override
+    public CrateFuture<ResultSet> executeQueryAsync() throws SQLException {
+        checkClosed();
+        checkAllArgumentsProvided();
+        final SettableCrateFuture<ResultSet> future = new SettableCrateFuture<>();
+        final int maxRows = getMaxRows();
+        SQLRequest request = newRequest(params.currentRow());
+        request.stmt(limitToMaxRows(stmt, limitableQuery));
+        executeAsync(request, new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                long resultSetStarted = System.nanoTime();
+                future.set(new CrateResultSet(CratePreparedStatement.this, response, null, maxRows));
+                resultSetCreated(resultSetStarted);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public CrateFuture<Integer> executeUpdateAsync() throws SQLException {
+        checkClosed();
+        checkAllArgumentsProvided();
+        final SettableCrateFuture<Integer> future = new SettableCrateFuture<>();
+        executeAsync(newRequest(params.currentRow()), new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                if (hasResultSet(response)) {
+                    future.setException(new SQLException("Execution of statement returned a ResultSet"));
+                } else {
+                    future.set((int) Math.max(0L, response.rowCount()));
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.setException(e);
             }
-        } catch (SQLActionException e) {
-            throw new SQLException(e.getMessage(), e);
+        });
+        return future;
+    }
+
+    @Override
+    public CrateFuture<int[]> executeBatchAsync() throws SQLException {
+        checkClosed();
+        if (!connection.serverVersion().supportsBulkArgs()) {
+            List<SQLRequest> requests = new ArrayList<>(params.size());
+            for (int i = 0; i < params.size(); i++) {
+                requests.add(newRequest(params.row(i)));
+            }
+            clearBatch();
+            return SettableCrateFuture.executeAll(this, requests);
         }
+        if (bulkDispatcher != null || chunked()) {
+            try {
+                return SettableCrateFuture.completed(executeBatch());
+            } catch (SQLException e) {
+                return SettableCrateFuture.failed(e);
+            }
+        }
+        SQLBulkRequest bulkRequest = new SQLBulkRequest(stmt, params.rows(0, params.size()));
+        bulkRequest.setDefaultSchema(connection.getSchema());
+        bulkRequest.includeTypesOnResponse(true);
+        clearBatch();
+
+        final SettableCrateFuture<int[]> future = new SettableCrateFuture<>();
+        ActionListener<SQLBulkResponse> listener = new ActionListener<SQLBulkResponse>() {
+            @Override
+            public void onResponse(SQLBulkResponse response) {
+                future.set(updateCounts(response));
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                // we cannot know what batch worked and what went wrong here
+                future.setException(new BatchUpdateException(e.getMessage(), BATCH_FAILED_RESPONSE, e));
+            }
+        };
+        executeAsync(bulkRequest, listener);
+        return future;
     }
 
     private boolean hasResultSet(SQLResponse response) {
         return response.rowCount() > 0 && response.rowCount() == response.rows().length;
     }
 
-    private void set(int idx, @Nullable Object value) throws SQLException {
+    /**
+     * @return the column of the parameter in {@link #params}
+     */
+    private int column(int idx) throws SQLException {
         checkClosed();
-        try {
-            currentParams[idx - 1] = value;
-            paramsAdded.set(idx - 1);
-        } catch (IndexOutOfBoundsException e) {
+        if (idx < 1 || idx > params.numColumns()) {
             throw new SQLException(
                     String.format(Locale.ENGLISH, "invalid parameter index %d", idx));
         }
+        paramsAdded.set(idx - 1);
+        return idx - 1;
+    }
+
+    private void set(int idx, @Nullable Object value) throws SQLException {
+        params.setObject(column(idx), value);
     }
 
     @Override
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
-        set(parameterIndex, null);
+        params.setNull(column(parameterIndex));
     }
 
     @Override
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-        set(parameterIndex, x);
+        params.setBoolean(column(parameterIndex), x);
     }
 
     @Override
     public void setByte(int parameterIndex, byte x) throws SQLException {
-        set(parameterIndex, x);
+        params.setByte(column(parameterIndex), x);
     }
 
     @Override
     public void setShort(int parameterIndex, short x) throws SQLException {
-        set(parameterIndex, x);
+        params.setShort(column(parameterIndex), x);
     }
 
     @Override
     public void setInt(int parameterIndex, int x) throws SQLException {
-        set(parameterIndex, x);
+        params.setInt(column(parameterIndex), x);
     }
 
     @Override
     public void setLong(int parameterIndex, long x) throws SQLException {
-        set(parameterIndex, x);
+        params.setLong(column(parameterIndex), x);
     }
 
     @Override
     public void setFloat(int parameterIndex, float x) throws SQLException {
-        set(parameterIndex, x);
+        params.setFloat(column(parameterIndex), x);
     }
 
     @Override
     public void setDouble(int parameterIndex, double x) throws SQLException {
-        set(parameterIndex, x);
+        params.setDouble(column(parameterIndex), x);
     }
 
     @Override
@@ -253,17 +372,17 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
 
     @Override
     public void setDate(int parameterIndex, Date x) throws SQLException {
-        set(parameterIndex, x.getTime());
+        setLong(parameterIndex, x.getTime());
     }
 
     @Override
     public void setTime(int parameterIndex, Time x) throws SQLException {
-        set(parameterIndex, x.getTime());
+        setLong(parameterIndex, x.getTime());
     }
 
     @Override
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-        set(parameterIndex, x.getTime());
+        setLong(parameterIndex, x.getTime());
     }
 
     @Override
@@ -285,7 +404,7 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
     public void clearParameters() throws SQLException {
         checkClosed();
         paramsAdded.clear();
-        Arrays.fill(currentParams, null);
+        params.clearCurrentRow();
     }
 
     @Override
@@ -307,25 +426,40 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
     public void addBatch() throws SQLException {
         checkClosed();
         checkAllArgumentsProvided();
-        batchParams.add(currentParams);
-        currentParams = new Object[parameterSlots.length()];
-        clearParameters(); // init new params and reset counter
+        if (bulkFlushBytes > 0) {
+            batchBytes += params.estimateSize(params.size());
+        }
+        params.addRow();
+        paramsAdded.clear();
+
+        if (bulkFlushBytes > 0 && batchBytes >= bulkFlushBytes
+                && connection.serverVersion().supportsBulkArgs()) {
+            // send what we have so far, the results are collected by executeBatch()
+            if (bulkDispatcher == null) {
+                bulkDispatcher = newBulkDispatcher();
+            }
+            dispatchBatch(bulkDispatcher);
+        }
     }
 
+    /**
+     * Rows already sent because the pending batch exceeded {@link CrateConnection#BULK_FLUSH_BYTES}
+     * cannot be taken back, only their results are discarded.
+     */
     @Override
     public void clearBatch() throws SQLException {
-        batchParams.clear();
+        params.clear();
+        batchBytes = 0;
+        bulkDispatcher = null;
     }
 
 
     @Override
     public int[] executeBatch() throws SQLException {
         checkClosed();
+        executionStarted();
         int[] results;
-        DatabaseMetaData metaData = connection.getMetaData();
-        if (VersionStringComparator.compareVersions(
-                metaData.getDatabaseProductVersion(),
-                CrateDatabaseMetaData.CRATE_BULK_ARG_VERSION) >= 0) {
+        if (connection.serverVersion().supportsBulkArgs()) {
             results = executeBatchBulk();
         } else {
             results = executeBatchSingle();
@@ -335,18 +469,51 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
 
     }
 
-    private int[] executeBulk(SQLBulkRequest bulkRequest) throws SQLException {
-        SQLBulkResponse bulkResponse;
-        try {
-            ActionFuture<SQLBulkResponse> future = connection.client().bulkSql(bulkRequest);
-            if (getQueryTimeout() > 0) {
-                bulkResponse = future.actionGet(getQueryTimeout(), TimeUnit.SECONDS);
-            } else {
-                bulkResponse = future.actionGet();
+    private boolean chunked() {
+        return bulkChunkSize > 0 || bulkChunkBytes > 0;
+    }
+
+    private BulkDispatcher newBulkDispatcher() throws SQLException {
+        return new BulkDispatcher(this, connection.client(), stmt, connection.getSchema(), bulkMaxInFlight);
+    }
+
+    /**
+     * sends all pending rows in chunks of at most {@link #bulkChunkSize} rows and {@link #bulkChunkBytes} bytes,
+     * a chunk is boxed right before it is sent
+     */
+    private void dispatchBatch(BulkDispatcher dispatcher) {
+        int maxRows = bulkChunkSize > 0 ? bulkChunkSize : Integer.MAX_VALUE;
+        long maxBytes = bulkChunkBytes > 0 ? bulkChunkBytes : Long.MAX_VALUE;
+        int chunkStart = 0;
+        long chunkBytes = 0;
+        for (int row = 0, size = params.size(); row < size; row++) {
+            if (bulkChunkBytes > 0) {
+                long rowBytes = params.estimateSize(row);
+                if (row > chunkStart && chunkBytes + rowBytes > maxBytes) {
+                    dispatcher.send(params.rows(chunkStart, row));
+                    chunkStart = row;
+                    chunkBytes = 0;
+                }
+                chunkBytes += rowBytes;
             }
-        } catch (SQLActionException e) {
-            throw new SQLException(e.getMessage(), e);
+            if (row + 1 - chunkStart >= maxRows) {
+                dispatcher.send(params.rows(chunkStart, row + 1));
+                chunkStart = row + 1;
+                chunkBytes = 0;
+            }
+        }
+        if (chunkStart < params.size()) {
+            dispatcher.send(params.rows(chunkStart, params.size()));
         }
+        params.clear();
+        batchBytes = 0;
+    }
+
+    private int[] executeBulk(SQLBulkRequest bulkRequest) throws SQLException {
+        return updateCounts(executeRequest(bulkRequest));
+    }
+
+    static int[] updateCounts(SQLBulkResponse bulkResponse) {
         int[] results = new int[bulkResponse.results().length];
         SQLBulkResponse.Result[] results1 = bulkResponse.results();
         for (int i = 0, results1Length = results1.length; i < results1Length; i++) {
@@ -361,8 +528,13 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
     }
 
     private int[] executeBatchBulk() throws SQLException {
-        SQLBulkRequest bulkRequest = new SQLBulkRequest(sqlRequest.stmt(),
-                batchParams.toArray(new Object[batchParams.size()][]));
+        if (bulkDispatcher != null || chunked()) {
+            BulkDispatcher dispatcher = bulkDispatcher == null ? newBulkDispatcher() : bulkDispatcher;
+            bulkDispatcher = null;
+            dispatchBatch(dispatcher);
+            return dispatcher.finish();
+        }
+        SQLBulkRequest bulkRequest = new SQLBulkRequest(stmt, params.rows(0, params.size()));
         bulkRequest.setDefaultSchema(connection.getSchema());
         bulkRequest.includeTypesOnResponse(true);
         try {
@@ -374,11 +546,11 @@ public class CratePreparedStatement extends CrateStatementBase implements Prepar
     }
 
     private int[] executeBatchSingle() throws SQLException {
-        int[] results = new int[batchParams.size()];
+        int[] results = new int[params.size()];
         boolean failed = false;
-        for (int i = 0, batchParamsSize = batchParams.size(); i < batchParamsSize; i++) {
-            Object[] params = batchParams.get(i);
-            sqlRequest.args(params);
+        sqlRequest.stmt(stmt);
+        for (int i = 0; i < results.length; i++) {
+            sqlRequest.args(params.row(i));
             try {
                 executeSingle();
                 results[i] = (int) sqlResponse.rowCount();
@@ -0,0 +1,111 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statistics of all executions of statements with the same fingerprint, see
+ * {@link CrateConnection#queryDigests()}.
+ */
+public class CrateQueryDigest {
+
+    private final String fingerprint;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long rows;
+    private final long errors;
+    private final long overestimatedNanos;
+
+    CrateQueryDigest(String fingerprint, long count, long totalNanos, long maxNanos, long rows, long errors,
+                     long overestimatedNanos) {
+        this.fingerprint = fingerprint;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.rows = rows;
+        this.errors = errors;
+        this.overestimatedNanos = overestimatedNanos;
+    }
+
+    /**
+     * @return the statement with its literals and parameter markers replaced by <code>?</code>
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the number of executions and bulk requests
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return the total latency of all executions, measured on the client,
+     * including {@link #overestimated(TimeUnit)}
+     */
+    public long total(TimeUnit unit) {
+        return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long mean(TimeUnit unit) {
+        return count == 0 ? 0L : unit.convert(totalNanos / count, TimeUnit.NANOSECONDS);
+    }
+
+    public long max(TimeUnit unit) {
+        return unit.convert(maxNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of rows returned or affected
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of executions that failed
+     */
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     * @return the total latency the fingerprint took over from the one it replaced in the table,
+     * the maximum its total latency is too high
+     */
+    public long overestimated(TimeUnit unit) {
+        return unit.convert(overestimatedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                "CrateQueryDigest{fingerprint=%s, count=%d, total=%.3f ms, mean=%.3f ms, max=%.3f ms, rows=%d, errors=%d}",
+                fingerprint, count, totalNanos / 1e6, count == 0 ? 0.0 : totalNanos / 1e6 / count, maxNanos / 1e6,
+                rows, errors);
+    }
+}
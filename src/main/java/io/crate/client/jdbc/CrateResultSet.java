@@ -24,6 +24,7 @@ package io.crate.client.jdbc;
 import io.crate.action.sql.SQLResponse;
 import io.crate.client.jdbc.types.CrateArray;
 import io.crate.shade.com.google.common.collect.Lists;
+import io.crate.shade.org.elasticsearch.common.Nullable;
 import io.crate.types.ArrayType;
 import io.crate.types.DataType;
 
@@ -43,64 +44,86 @@ public class CrateResultSet implements ResultSet {
     private final Statement statement;
     private final SQLResponse sqlResponse;
     private boolean closed = false;
-    private ArrayIterator rowsIt;
-    private List<Object> currentRow;
+    @Nullable
+    private final ResultPager pager;
+    private Object[][] rows;
+    private Object[] currentRow;
     private int rowIdx = -1;
+    /**
+     * number of rows in the pages before the current one
+     */
+    private long pageOffset = 0;
+    private final long maxRows;
     private List<String> columns;
     private List<DataType> types;
 
-
-    static class ArrayIterator implements Iterator<Object[]> {
-
-        private final Object[][] array;
-        private final int end;
-        private int idx;
-
-        public ArrayIterator(Object[][] array, int start, int end) {
-            this.array = array;
-            this.end = end;
-            this.idx = start;
-        }
-
-        @Override
-        public boolean hasNext() {
-            return idx < end;
-        }
-
-        @Override
-        public Object[] next() {
-            return array[idx++];
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException("remove not supported");
-        }
+    public CrateResultSet(Statement statement, SQLResponse sqlResponse) {
+        this(statement, sqlResponse, null, 0);
     }
 
-
-    public CrateResultSet(Statement statement, SQLResponse sqlResponse) {
+    /**
+     * @param sqlResponse the first page of the result if a pager is given
+     * @param maxRows     the maximum number of rows returned, 0 for no limit
+     */
+    CrateResultSet(Statement statement, SQLResponse sqlResponse, @Nullable ResultPager pager, long maxRows) {
         this.statement = statement;
         this.sqlResponse = sqlResponse;
+        this.pager = pager;
+        this.maxRows = maxRows;
         columns = Lists.newArrayList(sqlResponse.cols());
         types = Lists.newArrayList(sqlResponse.columnTypes());
-        rowsIt = new ArrayIterator(sqlResponse.rows(), 0, sqlResponse.rows().length);
+        rows = sqlResponse.rows();
     }
 
     @Override
     public boolean next() throws SQLException {
         checkClosed();
-        if (!rowsIt.hasNext()) {
+        int nextIdx = rowIdx + 1;
+        if (maxRows > 0 && pageOffset + nextIdx >= maxRows) {
             return false;
         }
-        currentRow = Lists.newArrayList(rowsIt.next());
-        rowIdx++;
+        if (nextIdx >= rows.length) {
+            if (!nextPage()) {
+                return false;
+            }
+            // the first row of the new page
+            nextIdx = 0;
+        }
+        // point to the row of the response directly, rows are never copied
+        currentRow = rows[nextIdx];
+        rowIdx = nextIdx;
         return true;
     }
 
+    /**
+     * replaces the current page by the next one, the previous rows can be garbage collected
+     *
+     * @return false if there are no more rows
+     */
+    private boolean nextPage() throws SQLException {
+        if (pager == null) {
+            return false;
+        }
+        SQLResponse page = pager.next();
+        if (page == null) {
+            return false;
+        }
+        pageOffset += rows.length;
+        rows = page.rows();
+        rowIdx = -1;
+        return rows.length > 0;
+    }
+
+    private boolean hasMorePages() throws SQLException {
+        return pager != null && pager.peek() != null;
+    }
+
     @Override
     public void close() throws SQLException {
         closed = true;
+        if (pager != null) {
+            pager.close();
+        }
     }
 
     @Override
@@ -379,60 +402,83 @@ public class CrateResultSet implements ResultSet {
     @Override
     public boolean isBeforeFirst() throws SQLException {
         checkClosed();
-        return rowIdx == -1 && sqlResponse.rowCount() > 0;
+        return rowIdx == -1 && pageOffset == 0 && sqlResponse.rowCount() > 0;
     }
 
     @Override
     public boolean isAfterLast() throws SQLException {
         checkClosed();
+        if (pager != null) {
+            return rowIdx >= rows.length && pageOffset + rows.length > 0 && !hasMorePages();
+        }
         return rowIdx >= sqlResponse.rowCount();
     }
 
     @Override
     public boolean isFirst() throws SQLException {
         checkClosed();
-        return rowIdx == 0;
+        return rowIdx == 0 && pageOffset == 0;
     }
 
     @Override
     public boolean isLast() throws SQLException {
         checkClosed();
-        return rowIdx == sqlResponse.rows().length - 1;
+        if (maxRows > 0 && rowIdx >= 0 && rowIdx < rows.length && pageOffset + rowIdx + 1 == maxRows) {
+            return true;
+        }
+        return rowIdx == rows.length - 1 && !hasMorePages();
     }
 
     @Override
     public void beforeFirst() throws SQLException {
         checkClosed();
-        rowsIt = new ArrayIterator(sqlResponse.rows(), 0, sqlResponse.rows().length);
+        checkFirstPage();
         rowIdx = -1;
     }
 
     @Override
     public void afterLast() throws SQLException {
         checkClosed();
-        rowIdx = sqlResponse.rows().length;
-        while (rowsIt.hasNext()) {
-            rowsIt.next();
+        if (pager != null) {
+            pager.close();
         }
+        rowIdx = rows.length;
     }
 
     @Override
     public boolean first() throws SQLException {
         checkClosed();
-        if (sqlResponse.rows().length > 0) {
-            rowsIt = new ArrayIterator(sqlResponse.rows(), 0, sqlResponse.rows().length);
+        checkFirstPage();
+        if (rows.length > 0) {
+            rowIdx = -1;
             return next();
         }
         return false;
     }
 
+    /**
+     * the rows of previous pages are gone, so moving back is only possible within the first page
+     */
+    private void checkFirstPage() throws SQLException {
+        if (pageOffset > 0) {
+            throw new SQLException("Cannot move to the first row, the result is fetched in pages");
+        }
+    }
+
     @Override
     public boolean last() throws SQLException {
         checkClosed();
-        if (sqlResponse.rows().length > 0 && rowIdx < sqlResponse.rows().length) {
-            while (rowsIt.hasNext()) {
-                next();
+        if (pager != null) {
+            while (!isLast()) {
+                if (!next()) {
+                    return false;
+                }
             }
+            return rowIdx >= 0;
+        }
+        if (rows.length > 0 && rowIdx < rows.length) {
+            rowIdx = maxRows > 0 ? (int) Math.min(rows.length, maxRows) - 1 : rows.length - 1;
+            currentRow = rows[rowIdx];
             return true;
         }
         return false;
@@ -441,17 +487,17 @@ public class CrateResultSet implements ResultSet {
     @Override
     public int getRow() throws SQLException {
         checkClosed();
-        return rowIdx + 1;
+        return (int) (pageOffset + rowIdx + 1);
     }
 
     @Override
     public boolean absolute(int row) throws SQLException {
         checkClosed();
-        if (sqlResponse.rows().length > 0 && rowIdx < sqlResponse.rows().length) {
-            while (getRow() != row) {
-                next();
+        if (rows.length > 0 && (rowIdx < rows.length || hasMorePages())) {
+            while (getRow() != row && next()) {
+                // advance until the requested row is reached
             }
-            return true;
+            return getRow() == row;
         }
         return false;
     }
@@ -491,7 +537,7 @@ public class CrateResultSet implements ResultSet {
     @Override
     public int getFetchSize() throws SQLException {
         checkClosed();
-        return 0;
+        return pager == null ? 0 : pager.fetchSize();
     }
 
     @Override
@@ -1169,6 +1215,9 @@ public class CrateResultSet implements ResultSet {
         return iface.isAssignableFrom(getClass());
     }
 
+    /**
+     * @return the number of rows of the result, or of its first page if it is fetched in pages
+     */
     public long getCount() {
         return sqlResponse.rowCount();
     }
@@ -1184,7 +1233,7 @@ public class CrateResultSet implements ResultSet {
         if (currentRow == null) {
             throw new SQLException("currentRow not available. Call next() first.");
         }
-        return currentRow.get(columnIndex - 1);
+        return currentRow[columnIndex - 1];
     }
 
     private Number getNumber(int columnIndex) throws SQLException {
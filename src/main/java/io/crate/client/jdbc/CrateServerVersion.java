@@ -0,0 +1,144 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLResponse;
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+/**
+ * Immutable snapshot of the version of a Crate cluster and the driver features it supports.
+ * The version of a cluster is the lowest version of all of its nodes.
+ * <p>
+ * Instances are parsed once per {@link ClientHandleRegistry.ClientHandle} and shared by all of its
+ * connections, so feature checks don't require a round trip to <code>sys.nodes</code>.
+ */
+public class CrateServerVersion {
+
+    static final String VERSION_STMT = "select version['number'] from sys.nodes";
+
+    private static final int[] BULK_ARGS = VersionStringComparator.components(CrateDatabaseMetaData.CRATE_BULK_ARG_VERSION);
+    private static final int[] SCHEMATA = VersionStringComparator.components(CrateDatabaseMetaData.CRATE_SCHEMATA_VERSION);
+    private static final int[] DEFAULT_SCHEMA = VersionStringComparator.components(CrateDatabaseMetaData.CRATE_REQUEST_DEFAULT_SCHEMA);
+    private static final int[] KILL = VersionStringComparator.components(CrateDatabaseMetaData.CRATE_KILL_VERSION);
+
+    private final String number;
+    private final int[] components;
+    private final boolean supportsBulkArgs;
+    private final boolean supportsSchemata;
+    private final boolean supportsDefaultSchema;
+    private final boolean supportsKill;
+
+    private CrateServerVersion(@Nullable String number) {
+        this.number = number;
+        this.components = number == null ? new int[0] : VersionStringComparator.components(number);
+        this.supportsBulkArgs = atLeast(BULK_ARGS);
+        this.supportsSchemata = atLeast(SCHEMATA);
+        this.supportsDefaultSchema = atLeast(DEFAULT_SCHEMA);
+        this.supportsKill = atLeast(KILL);
+    }
+
+    public static CrateServerVersion parse(@Nullable String number) {
+        return new CrateServerVersion(number);
+    }
+
+    /**
+     * Builds the version from the response of {@link #VERSION_STMT},
+     * using the lowest version of all nodes.
+     */
+    static CrateServerVersion fromNodes(SQLResponse response) {
+        String minVersion = null;
+        int[] minComponents = null;
+        for (Object[] row : response.rows()) {
+            if (row[0] == null) {
+                continue;
+            }
+            String nodeVersion = row[0].toString();
+            int[] nodeComponents = VersionStringComparator.components(nodeVersion);
+            if (minComponents == null || VersionStringComparator.compareVersions(nodeComponents, minComponents) < 0) {
+                minVersion = nodeVersion;
+                minComponents = nodeComponents;
+            }
+        }
+        return new CrateServerVersion(minVersion);
+    }
+
+    private boolean atLeast(int[] version) {
+        return VersionStringComparator.compareVersions(components, version) >= 0;
+    }
+
+    /**
+     * the version string as reported by the cluster, null if no node reported a version
+     */
+    @Nullable
+    public String number() {
+        return number;
+    }
+
+    public int major() {
+        return component(0);
+    }
+
+    public int minor() {
+        return component(1);
+    }
+
+    public int revision() {
+        return component(2);
+    }
+
+    private int component(int idx) {
+        return components.length > idx ? components[idx] : -1;
+    }
+
+    /**
+     * bulk arguments in a single request ({@link io.crate.action.sql.SQLBulkRequest})
+     */
+    public boolean supportsBulkArgs() {
+        return supportsBulkArgs;
+    }
+
+    /**
+     * the <code>information_schema.schemata</code> table
+     */
+    public boolean supportsSchemata() {
+        return supportsSchemata;
+    }
+
+    /**
+     * setting the default schema on a request
+     */
+    public boolean supportsDefaultSchema() {
+        return supportsDefaultSchema;
+    }
+
+    /**
+     * killing jobs with <code>KILL job_id</code>
+     */
+    public boolean supportsKill() {
+        return supportsKill;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(number);
+    }
+}
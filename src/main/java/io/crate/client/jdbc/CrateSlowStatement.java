@@ -0,0 +1,119 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statement which took longer than the slow statement threshold of its connection,
+ * see {@link CrateConnection#slowStatements()}.
+ */
+public class CrateSlowStatement {
+
+    final long seq;
+    private final long timestamp;
+    private final String stmt;
+    private final String args;
+    @Nullable
+    private final String schema;
+    private final int bulkSize;
+    private final long latencyNanos;
+    private final float serverDuration;
+    @Nullable
+    private final String failure;
+
+    CrateSlowStatement(long seq, long timestamp, String stmt, String args, @Nullable String schema, int bulkSize,
+                       long latencyNanos, float serverDuration, @Nullable String failure) {
+        this.seq = seq;
+        this.timestamp = timestamp;
+        this.stmt = stmt;
+        this.args = args;
+        this.schema = schema;
+        this.bulkSize = bulkSize;
+        this.latencyNanos = latencyNanos;
+        this.serverDuration = serverDuration;
+        this.failure = failure;
+    }
+
+    /**
+     * @return the time the response was received, in milliseconds since the epoch
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public String stmt() {
+        return stmt;
+    }
+
+    /**
+     * @return the arguments, truncated, of the first row for bulk requests
+     */
+    public String args() {
+        return args;
+    }
+
+    @Nullable
+    public String schema() {
+        return schema;
+    }
+
+    /**
+     * @return the number of rows of a bulk request, -1 for a single execution
+     */
+    public int bulkSize() {
+        return bulkSize;
+    }
+
+    /**
+     * @return the time from sending the request until its response was received
+     */
+    public long latency(TimeUnit unit) {
+        return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the duration in milliseconds reported by the server, -1 if the statement failed
+     */
+    public float serverDuration() {
+        return serverDuration;
+    }
+
+    /**
+     * @return the message of the failure, null if the statement succeeded
+     */
+    @Nullable
+    public String failure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                "CrateSlowStatement{stmt=%s, args=%s, schema=%s, bulkSize=%d, latency=%.3f ms, serverDuration=%.3f ms%s}",
+                stmt, args, schema, bulkSize, latencyNanos / 1e6, serverDuration,
+                failure == null ? "" : ", failure=" + failure);
+    }
+}
@@ -22,24 +22,38 @@
 package io.crate.client.jdbc;
 
 import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLBulkRequest;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
+import io.crate.shade.com.google.common.base.Throwables;
 import io.crate.shade.org.elasticsearch.action.ActionFuture;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
+import io.crate.shade.org.elasticsearch.common.Nullable;
 
 import java.sql.BatchUpdateException;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
-public class CrateStatement extends CrateStatementBase {
+public class CrateStatement extends CrateStatementBase implements CrateAsyncStatement {
 
 
     protected SQLResponse sqlResponse;
-    protected List<String> batch = new LinkedList<>();
+    protected List<String> batch = new ArrayList<>();
+    private String pagingKey;
+    private final int prefetchPages;
+    private final int batchParallelism;
 
     public CrateStatement(CrateConnection connection) {
         super(connection);
+        try {
+            prefetchPages = (int) connection.longProperty(CrateConnection.PREFETCH_PAGES, 1);
+            batchParallelism = (int) connection.longProperty(CrateConnection.BATCH_PARALLELISM, 1);
+        } catch (SQLException e) {
+            throw Throwables.propagate(e);
+        }
     }
 
 
@@ -55,29 +69,111 @@ public class CrateStatement extends CrateStatementBase {
         }
     }
 
+    /**
+     * Sets the column by which results are paged if a fetch size is set.
+     * The column must be unique, not null and selected by the statement,
+     * which must not contain an ORDER BY clause. If no key is set, only statements
+     * with an ORDER BY clause are paged, using LIMIT and OFFSET, the result of any
+     * other statement is fetched with a single request.
+     *
+     * @see #setFetchSize(int)
+     */
+    public void setPagingKey(String column) throws SQLException {
+        checkClosed();
+        pagingKey = column;
+    }
+
+    public String getPagingKey() throws SQLException {
+        checkClosed();
+        return pagingKey;
+    }
+
     @Override
     public boolean execute(String sql) throws SQLException {
         checkClosed();
-        SQLRequest sqlRequest = new SQLRequest(sql);
-        sqlRequest.setDefaultSchema(connection.getSchema());
-        sqlRequest.includeTypesOnResponse(true);
-        try {
-            ActionFuture<SQLResponse> future = connection.client().sql(sqlRequest);
-            if (getQueryTimeout() > 0) {
-                sqlResponse = future.actionGet(getQueryTimeout(), TimeUnit.SECONDS);
-            } else {
-                sqlResponse = future.actionGet();
-            }
-        } catch (SQLActionException e) {
-            throw new SQLException(e.getMessage(), e);
+        executionStarted();
+        PagedQuery pagedQuery = getFetchSize() > 0 || getMaxRows() > 0 ? PagedQuery.parse(ParsedStatement.parse(sql).strippedSql()) : null;
+        if (getFetchSize() > 0 && pagedQuery != null && (pagingKey != null || pagedQuery.ordered())) {
+            ResultPager pager = new ResultPager(this, connection.client(), pagedQuery, connection.getSchema(),
+                    getFetchSize(), prefetchPages, pagingKey, getMaxRows());
+            sqlResponse = pager.first();
+            long resultSetStarted = System.nanoTime();
+            resultSet = new CrateResultSet(this, sqlResponse, pager, getMaxRows());
+            resultSetCreated(resultSetStarted);
+            return true;
         }
+        sqlResponse = executeRequest(newRequest(limitToMaxRows(sql, pagedQuery)));
         if (sqlResponse.rowCount() < 0 || sqlResponse.rowCount() != sqlResponse.rows().length) {
             return false;
         }
-        resultSet = new CrateResultSet(this, sqlResponse);
+        long resultSetStarted = System.nanoTime();
+        resultSet = new CrateResultSet(this, sqlResponse, null, getMaxRows());
+        resultSetCreated(resultSetStarted);
         return true;
     }
 
+    private SQLRequest newRequest(String sql) throws SQLException {
+        SQLRequest sqlRequest = new SQLRequest(sql);
+        sqlRequest.setDefaultSchema(connection.getSchema());
+        sqlRequest.includeTypesOnResponse(true);
+        return sqlRequest;
+    }
+
+    @Override
+    public CrateFuture<ResultSet> executeQueryAsync(String sql) throws SQLException {
+        checkClosed();
+        final SettableCrateFuture<ResultSet> future = new SettableCrateFuture<>();
+        final int maxRows = getMaxRows();
+        String stmt = maxRows > 0 ? limitToMaxRows(sql, PagedQuery.parse(ParsedStatement.parse(sql).strippedSql())) : sql;
+        executeAsync(newRequest(stmt), new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                long resultSetStarted = System.nanoTime();
+                future.set(new CrateResultSet(CrateStatement.this, response, null, maxRows));
+                resultSetCreated(resultSetStarted);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public CrateFuture<Integer> executeUpdateAsync(String sql) throws SQLException {
+        checkClosed();
+        final SettableCrateFuture<Integer> future = new SettableCrateFuture<>();
+        executeAsync(newRequest(sql), new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                if (response.rowCount() > 0 && response.rowCount() == response.rows().length) {
+                    future.setException(new SQLException("Execution of statement returned a ResultSet"));
+                } else {
+                    future.set((int) Math.max(0L, response.rowCount()));
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.setException(e);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public CrateFuture<int[]> executeBatchAsync() throws SQLException {
+        checkClosed();
+        List<SQLRequest> requests = new ArrayList<>(batch.size());
+        for (String command : batch) {
+            requests.add(newRequest(command));
+        }
+        batch.clear();
+        return SettableCrateFuture.executeAll(this, requests);
+    }
+
     @Override
     public int getUpdateCount() throws SQLException {
         checkClosed();
@@ -99,27 +195,173 @@ public class CrateStatement extends CrateStatementBase {
     @Override
     public int[] executeBatch() throws SQLException {
         checkClosed();
+        executionStarted();
         if (resultSet != null) {
             resultSet.close();
         }
         boolean failed = false;
         int[] results = new int[batch.size()];
 
-        for (int i = 0, batchSize = batch.size(); i < batchSize; i++) {
-            String command = batch.get(i);
+        int from = 0;
+        if (batch.size() > 1 && connection.serverVersion().supportsBulkArgs()) {
+            ParameterizedInsert[] inserts = new ParameterizedInsert[batch.size()];
+            for (int i = 0; i < inserts.length; i++) {
+                inserts[i] = ParameterizedInsert.parse(batch.get(i));
+            }
+            int i = 0;
+            while (i < inserts.length) {
+                int end = i + 1;
+                if (inserts[i] != null) {
+                    while (end < inserts.length && inserts[i].sameShape(inserts[end])) {
+                        end++;
+                    }
+                }
+                if (end - i > 1) {
+                    failed |= executeStatements(from, i, results);
+                    failed |= executeInserts(inserts, i, end, results);
+                    from = end;
+                }
+                i = end;
+            }
+        }
+        failed |= executeStatements(from, batch.size(), results);
+        clearBatch();
+        if (failed) {
+            throw new BatchUpdateException("Error during executeBatch", results);
+        }
+        return results;
+    }
+
+    /**
+     * executes the statements of the batch within the given range one by one or concurrently
+     *
+     * @return true if any of the statements failed
+     */
+    private boolean executeStatements(int from, int to, int[] results) throws SQLException {
+        if (batchParallelism > 1 && to - from > 1) {
+            return executeConcurrently(from, to, results);
+        }
+        boolean failed = false;
+        for (int i = from; i < to; i++) {
             try {
-                int result = executeUpdate(command);
+                int result = executeUpdate(batch.get(i));
                 results[i] = (result == -1 ? SUCCESS_NO_INFO : result);
             } catch (SQLException e) {
                 failed = true;
                 results[i] = EXECUTE_FAILED;
             }
         }
-        clearBatch();
-        if (failed) {
-            throw new BatchUpdateException("Error during executeBatch", results);
+        return failed;
+    }
+
+    /**
+     * Sends the inserts of the same shape as a single bulk request.
+     * If the server rejects the request as a whole, the inserts are executed one by one,
+     * so the result of every single one is known.
+     *
+     * @return true if any of the inserts failed
+     */
+    private boolean executeInserts(ParameterizedInsert[] inserts, int from, int to, int[] results) throws SQLException {
+        Object[][] bulkArgs = new Object[to - from][];
+        for (int i = from; i < to; i++) {
+            bulkArgs[i - from] = inserts[i].args();
+        }
+        String stmt = inserts[from].stmt();
+        SQLBulkRequest bulkRequest = new SQLBulkRequest(stmt, bulkArgs);
+        bulkRequest.setDefaultSchema(connection.getSchema());
+        bulkRequest.includeTypesOnResponse(true);
+        int[] updateCounts;
+        try {
+            updateCounts = CratePreparedStatement.updateCounts(executeRequest(bulkRequest));
+        } catch (SQLException e) {
+            if (e.getCause() instanceof SQLActionException) {
+                return executeStatements(from, to, results);
+            }
+            Arrays.fill(results, from, to, EXECUTE_FAILED);
+            return true;
+        }
+        boolean failed = false;
+        for (int i = 0; i < updateCounts.length; i++) {
+            results[from + i] = updateCounts[i];
+            failed |= updateCounts[i] == EXECUTE_FAILED;
+        }
+        return failed;
+    }
+
+    /**
+     * Sends the statements of the batch within the given range without waiting for the previous ones,
+     * at most <code>batchParallelism</code> of them are pending at any time. The results are collected
+     * in the order the statements were added, the same way {@link #executeUpdate(String)} returns them.
+     *
+     * @return true if any of the statements failed
+     */
+    private boolean executeConcurrently(int from, int to, int[] results) throws SQLException {
+        List<PendingStatement> pending = new ArrayList<>(to - from);
+        boolean failed = false;
+        int completed = from;
+        for (int i = from; i < to; i++) {
+            if (i - completed >= batchParallelism) {
+                failed |= !complete(pending.set(completed - from, null), completed++, results);
+            }
+            SQLRequest request;
+            try {
+                request = intercept(newRequest(batch.get(i)));
+            } catch (SQLException e) {
+                // rejected by an interceptor, failed like the other statements in order
+                pending.add(new PendingStatement(null));
+                continue;
+            }
+            PendingStatement statement = new PendingStatement(request);
+            statement.startedNanos = started();
+            try {
+                statement.future = connection.client().sql(statement.request);
+                track(statement.future, statement.request.stmt());
+            } catch (SQLActionException e) {
+                // completed as failed, like the other statements in order
+                completed(statement.request, statement.startedNanos, null, e);
+            }
+            pending.add(statement);
+        }
+        while (completed < to) {
+            failed |= !complete(pending.set(completed - from, null), completed++, results);
+        }
+        return failed;
+    }
+
+    private boolean complete(PendingStatement statement, int idx, int[] results) {
+        if (statement.future != null) {
+            SQLResponse response = null;
+            Throwable failure = null;
+            try {
+                response = await(statement.future, statement.request.stmt());
+            } catch (SQLException | RuntimeException e) {
+                // failed, the other statements are still executed
+                failure = e;
+            }
+            completed(statement.request, statement.startedNanos, response, failure);
+            if (response != null && (response.rowCount() <= 0 || response.rowCount() != response.rows().length)) {
+                // return 0 if no affected Rows are given
+                results[idx] = (int) Math.max(0L, response.rowCount());
+                return true;
+            }
+        }
+        results[idx] = EXECUTE_FAILED;
+        return false;
+    }
+
+    /**
+     * a statement of the batch sent by {@link #executeConcurrently(int, int, int[])}
+     */
+    private static class PendingStatement {
+        @Nullable
+        private final SQLRequest request;
+        private long startedNanos;
+        @Nullable
+        private ActionFuture<SQLResponse> future;
+
+        private PendingStatement(@Nullable SQLRequest request) {
+            this.request = request;
         }
-        return results;
     }
 
 }
@@ -21,15 +21,75 @@
 
 package io.crate.client.jdbc;
 
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLBaseRequest;
+import io.crate.action.sql.SQLBaseResponse;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.shade.org.elasticsearch.ElasticsearchTimeoutException;
+import io.crate.shade.org.elasticsearch.action.ActionFuture;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
 import java.sql.*;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public abstract class CrateStatementBase implements Statement {
     protected CrateConnection connection;
     protected ResultSet resultSet;
-    private int queryTimeout = 0;
+    private long queryTimeout = 0;
+    private TimeUnit queryTimeoutUnit = TimeUnit.SECONDS;
+    private int fetchSize = 0;
+    private int maxRows = 0;
+    private boolean poolable;
+    /**
+     * pending requests, which are cancelled by {@link #cancel()} or once the query timeout expired
+     */
+    private final ConcurrentHashMap<Future<?>, PendingRequest> running = new ConcurrentHashMap<>();
+    // kept when the statement is closed, so requests still pending can be completed
+    private final CrateMetrics metrics;
+    @Nullable
+    private final SlowStatementLog slowStatementLog;
+    @Nullable
+    private final CrateStatementInterceptor[] interceptors;
+    @Nullable
+    private final QueryDigests queryDigests;
+    // the phases of the last request, see latencyBreakdown(),
+    // guarded by this as prefetched pages and asynchronous executions complete on transport threads
+    private long executionStartedNanos;
+    private boolean hasLatencyBreakdown;
+    private int lastBulkSize;
+    private long lastBuildNanos;
+    private long lastTransportNanos;
+    private long lastServerNanos;
+    private long lastResultSetNanos;
 
     public CrateStatementBase(CrateConnection connection) {
+        this(connection, false);
+    }
+
+    /**
+     * @param poolable the default of {@link #isPoolable()}
+     */
+    protected CrateStatementBase(CrateConnection connection, boolean poolable) {
         this.connection = connection;
+        this.poolable = poolable;
+        metrics = connection.clientMetrics();
+        slowStatementLog = connection.slowStatementLog();
+        interceptors = connection.interceptors();
+        queryDigests = connection.queryDigestTable();
+        metrics.statementOpened();
     }
 
     @Override
@@ -40,11 +100,33 @@ public abstract class CrateStatementBase implements Statement {
 
     @Override
     public void close() throws SQLException {
+        if (connection != null) {
+            metrics.statementClosed();
+        }
         connection = null;
+        // the timeouts would keep the requests reachable and still kill their jobs
+        for (PendingRequest request : running.values()) {
+            request.cancelTimeout();
+        }
+        running.clear();
+        if (resultSet != null) {
+            resultSet.close();
+            resultSet = null;
+        }
+    }
+
+    /**
+     * restores the settings of a new statement and closes its result set, used by the statement cache
+     */
+    protected void reset() throws SQLException {
         if (resultSet != null) {
             resultSet.close();
             resultSet = null;
         }
+        queryTimeout = 0;
+        queryTimeoutUnit = TimeUnit.SECONDS;
+        fetchSize = 0;
+        maxRows = 0;
     }
 
     @Override
@@ -59,12 +141,30 @@ public abstract class CrateStatementBase implements Statement {
 
     @Override
     public int getMaxRows() throws SQLException {
-        return 0;
+        return maxRows;
     }
 
+    /**
+     * SELECT statements without a LIMIT are limited on the server, see {@link PagedQuery},
+     * the result set of any other statement stops after <code>max</code> rows.
+     */
     @Override
     public void setMaxRows(int max) throws SQLException {
-        // no-op
+        checkClosed();
+        if (max < 0) {
+            throw new SQLException("Max rows must be greater than or equal to 0");
+        }
+        maxRows = max;
+    }
+
+    /**
+     * @return the statement limited to {@link #getMaxRows()} if it can be limited
+     */
+    protected String limitToMaxRows(String stmt, @Nullable PagedQuery query) throws SQLException {
+        if (maxRows > 0 && query != null) {
+            return query.limit(maxRows);
+        }
+        return stmt;
     }
 
     @Override
@@ -72,20 +172,408 @@ public abstract class CrateStatementBase implements Statement {
         // no-op
     }
 
+    /**
+     * @return the query timeout in seconds, rounded up if it was set with a finer unit
+     */
     @Override
     public int getQueryTimeout() throws SQLException {
-        return queryTimeout;
+        long millis = queryTimeoutUnit.toMillis(queryTimeout);
+        return (int) Math.min((millis + 999) / 1000, Integer.MAX_VALUE);
     }
 
     @Override
     public void setQueryTimeout(int seconds) throws SQLException {
-        queryTimeout = seconds;
+        setQueryTimeout(seconds, TimeUnit.SECONDS);
     }
 
+    /**
+     * Like {@link #setQueryTimeout(int)}, with a precision of milliseconds.
+     * <p>
+     * Once a request of this statement is running longer than the timeout, it is cancelled and, if
+     * {@link CrateConnection#KILL_JOBS} is set, its job is killed on the server, see {@link #cancel()}.
+     * Its response is dropped when it arrives.
+     */
+    public void setQueryTimeout(long timeout, TimeUnit unit) throws SQLException {
+        checkClosed();
+        if (timeout < 0) {
+            throw new SQLException("Query timeout must be greater than or equal to 0");
+        }
+        queryTimeout = timeout;
+        queryTimeoutUnit = unit;
+    }
+
+    /**
+     * Releases all threads waiting for a result of this statement and, if {@link CrateConnection#KILL_JOBS}
+     * is set, kills its jobs on the server without waiting for the jobs to be killed.
+     * Asynchronous executions are not affected.
+     * <p>
+     * The jobs are found by their statement text, see {@link JobKiller}. A job is only killed if it is the
+     * only one running that statement, but then it may also belong to another connection or client
+     * if the cancelled request already finished.
+     *
+     * @see #cancelAsync()
+     */
     @Override
     public void cancel() throws SQLException {
+        cancelAsync();
+    }
+
+    /**
+     * Like {@link #cancel()}, the returned future completes once the server jobs were killed.
+     * Jobs are only killed if enabled by {@link CrateConnection#KILL_JOBS} and if the server supports it,
+     * see {@link CrateServerVersion#supportsKill()}.
+     */
+    public CrateFuture<CrateCancelResult> cancelAsync() throws SQLException {
         checkClosed();
-        throw new SQLFeatureNotSupportedException("Statement: cancel not supported");
+        long startedNanos = System.nanoTime();
+        int cancelled = 0;
+        Set<String> stmts = new HashSet<>();
+        for (Map.Entry<Future<?>, PendingRequest> entry : running.entrySet()) {
+            if (entry.getKey().cancel(true)) {
+                cancelled++;
+                stmts.add(entry.getValue().stmt);
+            }
+            untrack(entry.getKey());
+        }
+        if (stmts.isEmpty() || !connection.killsJobs() || !connection.serverVersion().supportsKill()) {
+            return SettableCrateFuture.completed(new CrateCancelResult(cancelled, 0, System.nanoTime() - startedNanos));
+        }
+        return JobKiller.kill(connection.client(), stmts, cancelled, startedNanos);
+    }
+
+    /**
+     * registers a sent request, so it can be cancelled until it is passed to {@link #await(ActionFuture, String)}.
+     * The query timeout starts with the registration.
+     */
+    void track(Future<?> future, String stmt) {
+        PendingRequest request = new PendingRequest(future, stmt, connection);
+        if (queryTimeout > 0) {
+            request.timeout = TimeoutWheel.shared().schedule(request, queryTimeout, queryTimeoutUnit);
+        }
+        if (running.putIfAbsent(future, request) != null) {
+            request.cancelTimeout();
+        }
+    }
+
+    /**
+     * stops the query timeout of the request, so it does not keep the request reachable
+     */
+    void untrack(Future<?> future) {
+        PendingRequest request = running.remove(future);
+        if (request != null) {
+            request.cancelTimeout();
+        }
+    }
+
+    /**
+     * waits for the result of a request, at most for the query timeout
+     *
+     * @throws SQLTimeoutException if the query timeout expired
+     * @throws SQLException if the request failed or the statement was cancelled
+     */
+    <T> T await(ActionFuture<T> future, String stmt) throws SQLException {
+        track(future, stmt);
+        try {
+            if (queryTimeout > 0) {
+                // the timeout wheel releases this thread, the timed wait only guards against a late tick
+                return future.actionGet(queryTimeout, queryTimeoutUnit);
+            }
+            return future.actionGet();
+        } catch (SQLActionException e) {
+            throw new SQLException(e.getMessage(), e);
+        } catch (ElasticsearchTimeoutException e) {
+            PendingRequest request = running.get(future);
+            if (request != null && request.cancelTimeout()) {
+                request.run();
+            }
+            throw timeoutException(e);
+        } catch (CancellationException e) {
+            PendingRequest request = running.get(future);
+            if (request != null && request.timedOut) {
+                throw timeoutException(e);
+            }
+            throw new SQLException("Statement was cancelled", e);
+        } finally {
+            untrack(future);
+        }
+    }
+
+    /**
+     * sends the request and waits for its response, see {@link #await(ActionFuture, String)}
+     */
+    SQLResponse executeRequest(SQLRequest request) throws SQLException {
+        request = intercept(request);
+        long startedNanos = started();
+        SQLResponse response = null;
+        Throwable failure = null;
+        try {
+            response = await(connection.client().sql(request), request.stmt());
+            return response;
+        } catch (SQLActionException e) {
+            failure = e;
+            throw new SQLException(e.getMessage(), e);
+        } catch (SQLException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            completed(request, startedNanos, response, failure);
+        }
+    }
+
+    /**
+     * sends the bulk request and waits for its response, see {@link #await(ActionFuture, String)}
+     */
+    SQLBulkResponse executeRequest(SQLBulkRequest request) throws SQLException {
+        request = intercept(request);
+        long startedNanos = started();
+        SQLBulkResponse response = null;
+        Throwable failure = null;
+        try {
+            response = await(connection.client().bulkSql(request), request.stmt());
+            return response;
+        } catch (SQLActionException e) {
+            failure = e;
+            throw new SQLException(e.getMessage(), e);
+        } catch (SQLException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            completed(request, startedNanos, response, failure);
+        }
+    }
+
+    /**
+     * Sends the request without waiting for its response. Like {@link #executeRequest(SQLRequest)} it is
+     * passed to the interceptors and its completion is recorded, before the listener is called.
+     * A request rejected by an interceptor fails the listener.
+     */
+    void executeAsync(SQLRequest request, ActionListener<SQLResponse> listener) {
+        try {
+            request = intercept(request);
+        } catch (SQLException e) {
+            listener.onFailure(e);
+            return;
+        }
+        ActionListener<SQLResponse> recording = recording(request, started(), listener);
+        try {
+            connection.client().sql(request, recording);
+        } catch (SQLActionException e) {
+            recording.onFailure(e);
+        }
+    }
+
+    /**
+     * like {@link #executeAsync(SQLRequest, ActionListener)} for a bulk request
+     */
+    void executeAsync(SQLBulkRequest request, ActionListener<SQLBulkResponse> listener) {
+        try {
+            request = intercept(request);
+        } catch (SQLException e) {
+            listener.onFailure(e);
+            return;
+        }
+        ActionListener<SQLBulkResponse> recording = recording(request, started(), listener);
+        try {
+            connection.client().bulkSql(request, recording);
+        } catch (SQLActionException e) {
+            recording.onFailure(e);
+        }
+    }
+
+    /**
+     * @return a listener which calls {@link #completed} before passing the response or failure on
+     */
+    private <T extends SQLBaseResponse> ActionListener<T> recording(final SQLBaseRequest request,
+                                                                  final long startedNanos,
+                                                                  final ActionListener<T> listener) {
+        return new ActionListener<T>() {
+            @Override
+            public void onResponse(T response) {
+                completed(request, startedNanos, response, null);
+                listener.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                completed(request, startedNanos, null, e);
+                listener.onFailure(e);
+            }
+        };
+    }
+
+    /**
+     * passes the request to the {@link CrateStatementInterceptor}s of the connection, before it is sent
+     *
+     * @return the request to send
+     */
+    SQLRequest intercept(SQLRequest request) throws SQLException {
+        if (interceptors != null) {
+            for (CrateStatementInterceptor interceptor : interceptors) {
+                request = interceptor.before(this, request);
+            }
+        }
+        return request;
+    }
+
+    /**
+     * passes the bulk request to the {@link CrateStatementInterceptor}s of the connection, before it is sent
+     *
+     * @return the request to send
+     */
+    SQLBulkRequest intercept(SQLBulkRequest request) throws SQLException {
+        if (interceptors != null) {
+            for (CrateStatementInterceptor interceptor : interceptors) {
+                request = interceptor.before(this, request);
+            }
+        }
+        return request;
+    }
+
+    /**
+     * called when an execution starts, before its first request is built
+     */
+    synchronized void executionStarted() {
+        executionStartedNanos = System.nanoTime();
+    }
+
+    /**
+     * called right before a request is sent
+     *
+     * @return the start of the request, to pass to {@link #completed}
+     */
+    long started() {
+        return metrics.started();
+    }
+
+    /**
+     * Called by every execution once the response or failure of a request was received,
+     * records its metrics, slow statements and query digests and passes it to the {@link CrateStatementInterceptor}s.
+     *
+     * @param response null if the request failed
+     * @param failure null if the request succeeded
+     */
+    void completed(SQLBaseRequest request, long startedNanos, @Nullable SQLBaseResponse response,
+                   @Nullable Throwable failure) {
+        long completedNanos = System.nanoTime();
+        long nanos = completedNanos - startedNanos;
+        int bulkRows = request instanceof SQLBulkRequest ? ((SQLBulkRequest) request).bulkArgs().length : -1;
+        metrics.completed(nanos, bulkRows, failure);
+        long serverNanos = 0L;
+        if (response != null) {
+            // the duration is in milliseconds, it cannot exceed the latency measured on the client
+            serverNanos = Math.min(nanos, Math.max(0L, (long) (response.duration() * 1_000_000L)));
+        }
+        long buildNanos = 0L;
+        synchronized (this) {
+            if (executionStartedNanos != 0L) {
+                // later requests of the same execution were built while the first one was pending
+                buildNanos = Math.max(0L, startedNanos - executionStartedNanos);
+                executionStartedNanos = 0L;
+            }
+            hasLatencyBreakdown = true;
+            lastBulkSize = bulkRows;
+            lastBuildNanos = buildNanos;
+            lastTransportNanos = nanos - serverNanos;
+            lastServerNanos = serverNanos;
+            lastResultSetNanos = 0L;
+        }
+        if (response != null) {
+            metrics.phases(buildNanos, nanos - serverNanos, serverNanos);
+        }
+        if (slowStatementLog != null && nanos >= slowStatementLog.thresholdNanos()) {
+            slowStatementLog.add(request, nanos, response, failure);
+        }
+        if (queryDigests != null) {
+            queryDigests.record(request, nanos, response, failure);
+        }
+        if (interceptors != null) {
+            for (CrateStatementInterceptor interceptor : interceptors) {
+                try {
+                    interceptor.after(this, request, response, failure, startedNanos, completedNanos);
+                } catch (RuntimeException e) {
+                    CrateDriver.LOGGER.log(Level.WARNING, "Statement interceptor failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * called once the result set of the last request was created
+     *
+     * @param startedNanos the {@link System#nanoTime()} before the result set was created
+     */
+    void resultSetCreated(long startedNanos) {
+        long nanos = System.nanoTime() - startedNanos;
+        synchronized (this) {
+            lastResultSetNanos = nanos;
+        }
+        metrics.resultSetCreated(nanos);
+    }
+
+    /**
+     * @return the time spent in each phase of the last request of this statement, null if none was sent
+     */
+    @Nullable
+    public synchronized CrateLatencyBreakdown latencyBreakdown() {
+        if (!hasLatencyBreakdown) {
+            return null;
+        }
+        return new CrateLatencyBreakdown(lastBulkSize, lastBuildNanos, lastTransportNanos, lastServerNanos,
+                lastResultSetNanos);
+    }
+
+    private SQLTimeoutException timeoutException(Throwable cause) {
+        return new SQLTimeoutException(String.format(Locale.ENGLISH, "Query timeout of %d ms expired",
+                queryTimeoutUnit.toMillis(queryTimeout)), cause);
+    }
+
+    /**
+     * A request tracked by {@link #track(Future, String)}, run by the {@link TimeoutWheel} once
+     * the query timeout expired.
+     * Cancelling the future releases waiting threads and drops the response once it arrives.
+     */
+    private static class PendingRequest implements Runnable {
+
+        private final Future<?> future;
+        private final String stmt;
+        private final CrateConnection connection;
+        private volatile TimeoutWheel.Timeout timeout;
+        private volatile boolean timedOut = false;
+
+        PendingRequest(Future<?> future, String stmt, CrateConnection connection) {
+            this.future = future;
+            this.stmt = stmt;
+            this.connection = connection;
+        }
+
+        /**
+         * @return false if there is no timeout or it already expired
+         */
+        boolean cancelTimeout() {
+            TimeoutWheel.Timeout timeout = this.timeout;
+            return timeout != null && timeout.cancel();
+        }
+
+        /**
+         * Runs on the thread of the timer wheel, so the jobs are killed by another thread and only
+         * if the server version is already known.
+         */
+        @Override
+        public void run() {
+            timedOut = true;
+            if (!future.cancel(true) || !connection.killsJobs()) {
+                return;
+            }
+            CrateServerVersion version = connection.cachedServerVersion();
+            if (version != null && version.supportsKill()) {
+                connection.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        JobKiller.kill(connection.client(), Collections.singleton(stmt), 1, System.nanoTime());
+                    }
+                });
+            }
+        }
     }
 
     @Override
@@ -127,12 +615,16 @@ public abstract class CrateStatementBase implements Statement {
     @Override
     public void setFetchSize(int rows) throws SQLException {
         checkClosed();
+        if (rows < 0) {
+            throw new SQLException("Fetch size must be greater than or equal to 0");
+        }
+        fetchSize = rows;
     }
 
     @Override
     public int getFetchSize() throws SQLException {
         checkClosed();
-        return 0;
+        return fetchSize;
     }
 
     @Override
@@ -203,14 +695,19 @@ public abstract class CrateStatementBase implements Statement {
         return connection == null;
     }
 
+    /**
+     * Only prepared statements are pooled, by the statement cache of the connection.
+     */
     @Override
     public void setPoolable(boolean poolable) throws SQLException {
-        throw new SQLFeatureNotSupportedException("Statement: setPoolable not supported");
+        checkClosed();
+        this.poolable = poolable;
     }
 
     @Override
     public boolean isPoolable() throws SQLException {
-        return false;
+        checkClosed();
+        return poolable;
     }
 
     @Override
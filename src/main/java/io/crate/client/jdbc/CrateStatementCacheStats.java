@@ -0,0 +1,83 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.Locale;
+
+/**
+ * Counters of the statement cache of a connection, see {@link CrateConnection#statementCacheStats()}.
+ */
+public class CrateStatementCacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int maxSize;
+
+    CrateStatementCacheStats(long hits, long misses, long evictions, int size, int maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the number of prepared statements taken from the cache
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of statements prepared because none was cached
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of statements closed because the cache was full
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of statements currently cached
+     */
+    public int size() {
+        return size;
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH,
+                "CrateStatementCacheStats{hits=%d, misses=%d, evictions=%d, size=%d, maxSize=%d}",
+                hits, misses, evictions, size, maxSize);
+    }
+}
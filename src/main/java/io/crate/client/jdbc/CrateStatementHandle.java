@@ -0,0 +1,305 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.sql.*;
+import java.util.Set;
+
+/**
+ * A statement handed out to a single user, by a {@link CrateLogicalConnection} or
+ * by a {@link CrateConnection} with a statement cache.
+ * <p>
+ * Closing the handle detaches it from the statement, so a reference kept afterwards
+ * can not reach the statement once it is handed out again.
+ * {@link #getConnection()} returns the connection which created the handle.
+ */
+class CrateStatementHandle<S extends Statement> implements Statement {
+
+    private final Connection connection;
+    @Nullable
+    private final Set<CrateStatementHandle<?>> openStatements;
+    private volatile S statement;
+
+    /**
+     * @param openStatements the handles of the connection which are not closed yet, this one included,
+     *                       it is removed once it is closed
+     */
+    CrateStatementHandle(Connection connection, S statement, @Nullable Set<CrateStatementHandle<?>> openStatements) {
+        this.connection = connection;
+        this.statement = statement;
+        this.openStatements = openStatements;
+    }
+
+    S statement() throws SQLException {
+        S statement = this.statement;
+        if (statement == null) {
+            throw new SQLException("Statement is closed");
+        }
+        return statement;
+    }
+
+    private void detach() {
+        statement = null;
+        if (openStatements != null) {
+            openStatements.remove(this);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        S statement = this.statement;
+        if (statement != null) {
+            detach();
+            statement.close();
+        }
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        S statement = this.statement;
+        return statement == null || statement.isClosed();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        statement();
+        return connection;
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        S statement = statement();
+        statement.closeOnCompletion();
+        if (statement.isClosed()) {
+            detach();
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        return statement().executeQuery(sql);
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        return statement().executeUpdate(sql);
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return statement().getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        statement().setMaxFieldSize(max);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return statement().getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        statement().setMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        statement().setEscapeProcessing(enable);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return statement().getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        statement().setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        statement().cancel();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return statement().getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        statement().clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        statement().setCursorName(name);
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        return statement().execute(sql);
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return statement().getResultSet();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return statement().getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return statement().getMoreResults();
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        statement().setFetchDirection(direction);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return statement().getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        statement().setFetchSize(rows);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return statement().getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return statement().getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return statement().getResultSetType();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        statement().addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        statement().clearBatch();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        return statement().executeBatch();
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return statement().getMoreResults(current);
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return statement().getGeneratedKeys();
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        return statement().executeUpdate(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        return statement().executeUpdate(sql, columnIndexes);
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        return statement().executeUpdate(sql, columnNames);
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        return statement().execute(sql, autoGeneratedKeys);
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        return statement().execute(sql, columnIndexes);
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        return statement().execute(sql, columnNames);
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return statement().getResultSetHoldability();
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        statement().setPoolable(poolable);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return statement().isPoolable();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return statement().isCloseOnCompletion();
+    }
+
+    /**
+     * Unwraps to the statement of the handle as well, which must not be used once the handle is closed.
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isAssignableFrom(getClass())) {
+            return (T) this;
+        }
+        return statement().unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isAssignableFrom(getClass()) || statement().isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBaseRequest;
+import io.crate.action.sql.SQLBaseResponse;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLRequest;
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Called before and after every request sent by <code>Statement.execute()</code>, the executions of a
+ * <code>PreparedStatement</code> and the bulk requests of a batch, including asynchronous executions
+ * and each page of a result fetched in pages.
+ * <p>
+ * Registered by the fully qualified class names of the implementations in the
+ * <code>statementinterceptors</code> connection property, separated by commas. Every connection creates
+ * its own instances using their public no-argument constructor, interceptors are called in that order.
+ * Requests of a batch, asynchronous executions and prefetched pages may be completed on another thread
+ * than the one that sent them, so implementations need to be thread safe.
+ */
+public interface CrateStatementInterceptor {
+
+    /**
+     * called before the request is sent
+     *
+     * @return the request to send, either the given one or a rewritten one
+     * @throws SQLException to fail the execution without sending the request
+     */
+    SQLRequest before(Statement statement, SQLRequest request) throws SQLException;
+
+    /**
+     * called before the bulk request is sent
+     *
+     * @return the request to send, either the given one or a rewritten one
+     * @throws SQLException to fail the execution without sending the request
+     */
+    SQLBulkRequest before(Statement statement, SQLBulkRequest request) throws SQLException;
+
+    /**
+     * called once the response or failure of a request was received.
+     * Exceptions thrown by this method are logged and ignored.
+     *
+     * @param request the request as it was sent
+     * @param response null if the request failed
+     * @param failure null if the request succeeded
+     * @param startedNanos the {@link System#nanoTime()} right before the request was sent
+     * @param completedNanos the {@link System#nanoTime()} once the response or failure was received
+     */
+    void after(Statement statement, SQLBaseRequest request, @Nullable SQLBaseResponse response,
+               @Nullable Throwable failure, long startedNanos, long completedNanos);
+}
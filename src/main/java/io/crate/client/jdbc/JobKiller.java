@@ -0,0 +1,137 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Kills the server jobs of cancelled statements.
+ * <p>
+ * The client does not know the job id of a request, so the job is looked up in
+ * <code>sys.jobs</code> by its statement and killed with <code>KILL</code>. If several jobs
+ * run the same statement, it is unknown which one belongs to the cancelled request, so none
+ * of them is killed. A single matching job may still be the one of another connection or client
+ * if the cancelled one already finished, so this is only used if enabled by {@link CrateConnection#KILL_JOBS}.
+ * Nothing blocks, the result is reported to the returned future.
+ */
+class JobKiller {
+
+    static final String JOBS_STMT = "select id from sys.jobs where stmt = ?";
+
+    private final CrateClient client;
+    private final SettableCrateFuture<CrateCancelResult> future = new SettableCrateFuture<>();
+    private final int cancelledRequests;
+    private final long startedNanos;
+
+    // starts with one for the kill() call itself, so the result is not reported before all requests are sent
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicInteger killed = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private JobKiller(CrateClient client, int cancelledRequests, long startedNanos) {
+        this.client = client;
+        this.cancelledRequests = cancelledRequests;
+        this.startedNanos = startedNanos;
+    }
+
+    /**
+     * @param startedNanos the {@link System#nanoTime()} the cancellation started, used to measure its latency
+     */
+    static SettableCrateFuture<CrateCancelResult> kill(CrateClient client, Collection<String> stmts,
+                                                       int cancelledRequests, long startedNanos) {
+        JobKiller killer = new JobKiller(client, cancelledRequests, startedNanos);
+        for (String stmt : stmts) {
+            killer.killJobs(stmt);
+        }
+        killer.done();
+        return killer.future;
+    }
+
+    private void killJobs(String stmt) {
+        execute(new SQLRequest(JOBS_STMT, new Object[]{stmt}), new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                Object[][] rows = response.rows();
+                if (rows.length == 1) {
+                    killJob(String.valueOf(rows[0][0]));
+                } else if (rows.length > 1) {
+                    failure.compareAndSet(null, new SQLException(String.format(Locale.ENGLISH,
+                            "%d jobs are running the cancelled statement, none of them was killed", rows.length)));
+                }
+                done();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                failure.compareAndSet(null, e);
+                done();
+            }
+        });
+    }
+
+    private void killJob(String jobId) {
+        execute(new SQLRequest("kill '" + jobId.replace("'", "''") + "'"), new ActionListener<SQLResponse>() {
+            @Override
+            public void onResponse(SQLResponse response) {
+                killed.incrementAndGet();
+                done();
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                // the job most likely finished in the meantime
+                done();
+            }
+        });
+    }
+
+    private void execute(SQLRequest request, ActionListener<SQLResponse> listener) {
+        pending.incrementAndGet();
+        try {
+            client.sql(request, listener);
+        } catch (SQLActionException e) {
+            listener.onFailure(e);
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() > 0) {
+            return;
+        }
+        Throwable e = failure.get();
+        if (e != null && killed.get() == 0) {
+            future.setException(e);
+        } else {
+            future.set(new CrateCancelResult(cancelledRequests, killed.get(), System.nanoTime() - startedNanos));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in microseconds, updated concurrently like a {@link StripedCounter}.
+ * <p>
+ * Every power of two is split into 4 buckets, so a percentile is at most 25% above the actual value.
+ * Latencies of more than 2^40 microseconds, about 12 days, are counted in the last bucket.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(StripedCounter.STRIPES * BUCKETS);
+    private final StripedCounter totalMicros = new StripedCounter();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0L, nanos));
+        buckets.getAndIncrement(StripedCounter.stripe() * BUCKETS + bucket(micros));
+        totalMicros.add(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int mantissa = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * @return the smallest latency which is counted in the bucket after the given one
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int mantissa = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + mantissa + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0L;
+        for (int i = 0; i < buckets.length(); i++) {
+            long c = buckets.get(i);
+            counts[i % BUCKETS] += c;
+            count += c;
+        }
+        return new Snapshot(counts, count, totalMicros.sum(), maxMicros.get());
+    }
+
+    /**
+     * the state of a histogram at some point in time
+     */
+    static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long totalMicros;
+        private final long maxMicros;
+
+        private Snapshot(long[] counts, long count, long totalMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        long count() {
+            return count;
+        }
+
+        double meanMicros() {
+            return count == 0 ? 0.0 : (double) totalMicros / count;
+        }
+
+        long maxMicros() {
+            return maxMicros;
+        }
+
+        /**
+         * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile
+         * @return the upper bound of the bucket which contains the percentile, 0 if nothing was recorded
+         */
+        long percentileMicros(double quantile) {
+            if (count == 0) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return Math.min(upperBound(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+    }
+}
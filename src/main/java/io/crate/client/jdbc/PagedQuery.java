@@ -0,0 +1,186 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.util.Locale;
+
+/**
+ * A SELECT statement which can be fetched in pages, see {@link ResultPager}, or limited to a maximum
+ * number of rows.
+ * <p>
+ * Only plain statements qualify: a single top-level SELECT without LIMIT, OFFSET,
+ * set operations or comments, callers strip the comments beforehand, see {@link ParsedStatement#strippedSql()}.
+ * Keyset paging additionally requires that the statement
+ * has no ORDER BY, GROUP BY or HAVING clause, as those are added or would interfere
+ * with the added key condition. Offset paging requires a top-level ORDER BY, see {@link #ordered()}.
+ */
+class PagedQuery {
+
+    private final String stmt;
+    private final int whereIdx;
+    private final boolean keysetCompatible;
+    private final boolean ordered;
+
+    private PagedQuery(String stmt, int whereIdx, boolean keysetCompatible, boolean ordered) {
+        this.stmt = stmt;
+        this.whereIdx = whereIdx;
+        this.keysetCompatible = keysetCompatible;
+        this.ordered = ordered;
+    }
+
+    /**
+     * @return the pageable query or null if the statement cannot be paged
+     */
+    @Nullable
+    static PagedQuery parse(String sql) {
+        String stmt = sql.trim();
+        while (stmt.endsWith(";")) {
+            stmt = stmt.substring(0, stmt.length() - 1).trim();
+        }
+        String lower = stmt.toLowerCase(Locale.ENGLISH);
+        if (!lower.startsWith("select")) {
+            return null;
+        }
+        boolean hasFrom = false;
+        boolean keysetCompatible = true;
+        boolean ordered = false;
+        int whereIdx = -1;
+        int depth = 0;
+        int length = lower.length();
+        for (int i = 0; i < length; i++) {
+            char c = lower.charAt(i);
+            switch (c) {
+                case '\'':
+                case '"':
+                    // skip the literal or identifier, escaped quotes are just two literals in a row
+                    int end = lower.indexOf(c, i + 1);
+                    if (end < 0) {
+                        return null;
+                    }
+                    i = end;
+                    break;
+                case '(':
+                    depth++;
+                    break;
+                case ')':
+                    depth--;
+                    break;
+                case ';':
+                    return null;
+                case '-':
+                case '/':
+                    if (i + 1 < length && lower.charAt(i + 1) == (c == '-' ? '-' : '*')) {
+                        return null;
+                    }
+                    break;
+                default:
+                    if (depth > 0 || !Character.isLetter(c) || (i > 0 && isIdentifierPart(lower.charAt(i - 1)))) {
+                        break;
+                    }
+                    int wordEnd = i;
+                    while (wordEnd < length && isIdentifierPart(lower.charAt(wordEnd))) {
+                        wordEnd++;
+                    }
+                    switch (lower.substring(i, wordEnd)) {
+                        case "from":
+                            hasFrom = true;
+                            break;
+                        case "where":
+                            if (whereIdx < 0) {
+                                whereIdx = i;
+                            }
+                            break;
+                        case "order":
+                            ordered = true;
+                            keysetCompatible = false;
+                            break;
+                        case "group":
+                        case "having":
+                            keysetCompatible = false;
+                            break;
+                        case "limit":
+                        case "offset":
+                        case "union":
+                        case "intersect":
+                        case "except":
+                            return null;
+                        default:
+                            break;
+                    }
+                    i = wordEnd - 1;
+                    break;
+            }
+        }
+        if (!hasFrom || depth != 0) {
+            return null;
+        }
+        return new PagedQuery(stmt, whereIdx, keysetCompatible, ordered);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    boolean keysetCompatible() {
+        return keysetCompatible;
+    }
+
+    /**
+     * @return whether the statement has a top-level ORDER BY, without it the order of the rows may
+     * differ between requests, so pages selected by LIMIT and OFFSET could skip or repeat rows
+     */
+    boolean ordered() {
+        return ordered;
+    }
+
+    String limit(long limit) {
+        return String.format(Locale.ENGLISH, "%s limit %d", stmt, limit);
+    }
+
+    String offsetPage(int limit, long offset) {
+        return String.format(Locale.ENGLISH, "%s limit %d offset %d", stmt, limit, offset);
+    }
+
+    /**
+     * @param afterLastKey whether to only select rows after the last key, which is passed as argument
+     */
+    String keysetPage(String key, boolean afterLastKey, int limit) {
+        StringBuilder sb = new StringBuilder(stmt.length() + key.length() * 2 + 40);
+        if (afterLastKey) {
+            if (whereIdx < 0) {
+                sb.append(stmt).append(" where ");
+            } else {
+                sb.append(stmt, 0, whereIdx)
+                        .append("where (")
+                        .append(stmt, whereIdx + "where".length(), stmt.length())
+                        .append(") and ");
+            }
+            sb.append(key).append(" > ?");
+        } else {
+            sb.append(stmt);
+        }
+        sb.append(" order by ").append(key).append(" limit ").append(limit);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An <code>INSERT ... VALUES</code> statement with its literals replaced by parameters, so inserts
+ * which only differ in their values can be sent as a single {@link io.crate.action.sql.SQLBulkRequest}.
+ * <p>
+ * String, numeric, boolean and null literals are extracted. Statements with parameters, comments,
+ * array or object literals or a sub-query are left as they are.
+ */
+class ParameterizedInsert {
+
+    private final String stmt;
+    private final Object[] args;
+
+    private ParameterizedInsert(String stmt, Object[] args) {
+        this.stmt = stmt;
+        this.args = args;
+    }
+
+    /**
+     * @return the parameterized insert or null if the statement is not an insert of literal values
+     */
+    @Nullable
+    static ParameterizedInsert parse(String sql) {
+        int length = sql.length();
+        StringBuilder stmt = new StringBuilder(length);
+        List<Object> args = new ArrayList<>();
+        boolean first = true;
+        boolean values = false;
+        int copiedUntil = 0;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            int end;
+            Object literal;
+            if (c == '\'') {
+                end = stringEnd(sql, i, '\'');
+                if (end < 0) {
+                    return null;
+                }
+                literal = sql.substring(i + 1, end - 1).replace("''", "'");
+            } else if (c == '"') {
+                end = stringEnd(sql, i, '"');
+                if (end < 0) {
+                    return null;
+                }
+                i = end;
+                continue;
+            } else if (isDigit(c) || (c == '.' || c == '-') && i + 1 < length && isDigit(sql.charAt(i + 1))) {
+                if (c == '-' && !startsValue(sql, i)) {
+                    i++;
+                    continue;
+                }
+                end = numberEnd(sql, i + 1);
+                if (end < length && isIdentifierPart(sql.charAt(end))) {
+                    return null;
+                }
+                literal = number(sql.substring(i, end));
+                if (literal == null) {
+                    return null;
+                }
+            } else if (Character.isLetter(c) || c == '_') {
+                end = i + 1;
+                while (end < length && isIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end).toLowerCase(Locale.ENGLISH);
+                if (first && !word.equals("insert")) {
+                    return null;
+                }
+                first = false;
+                switch (word) {
+                    case "values":
+                        values = true;
+                        i = end;
+                        continue;
+                    case "select":
+                        return null;
+                    case "true":
+                    case "false":
+                        literal = Boolean.valueOf(word);
+                        break;
+                    case "null":
+                        literal = null;
+                        break;
+                    default:
+                        i = end;
+                        continue;
+                }
+            } else if (c == '?' || c == '$' || c == '[' || c == '{' || c == ';'
+                       || (c == '-' || c == '/') && i + 1 < length && sql.charAt(i + 1) == (c == '-' ? '-' : '*')) {
+                return null;
+            } else {
+                i++;
+                continue;
+            }
+            stmt.append(sql, copiedUntil, i).append('?');
+            args.add(literal);
+            copiedUntil = end;
+            i = end;
+        }
+        if (!values || args.isEmpty()) {
+            return null;
+        }
+        stmt.append(sql, copiedUntil, length);
+        return new ParameterizedInsert(stmt.toString(), args.toArray());
+    }
+
+    /**
+     * @return the index after the closing quote, escaped quotes are part of the string, -1 if it is not closed
+     */
+    private static int stringEnd(String sql, int start, char quote) {
+        int i = start + 1;
+        int length = sql.length();
+        while (i < length) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int numberEnd(String sql, int i) {
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == 'e' || c == 'E') {
+                if (i + 1 < length && (sql.charAt(i + 1) == '-' || sql.charAt(i + 1) == '+')) {
+                    i++;
+                }
+            } else if (!isDigit(c) && c != '.') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    @Nullable
+    private static Object number(String literal) {
+        try {
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    return Double.valueOf(literal);
+                }
+            }
+            return Long.valueOf(literal);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return whether the minus sign at the given index is the sign of a value rather than an operator
+     */
+    private static boolean startsValue(String sql, int idx) {
+        for (int i = idx - 1; i >= 0; i--) {
+            char c = sql.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '(' || c == ',' || c == '=';
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDigit(char c) {
+        return '0' <= c && c <= '9';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * @return the statement with parameters instead of literals
+     */
+    String stmt() {
+        return stmt;
+    }
+
+    /**
+     * @return the extracted literals, in the order of their parameters
+     */
+    Object[] args() {
+        return args;
+    }
+
+    boolean sameShape(@Nullable ParameterizedInsert other) {
+        return other != null && stmt.equals(other.stmt);
+    }
+}
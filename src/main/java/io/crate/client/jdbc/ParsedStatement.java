@@ -0,0 +1,396 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.com.google.common.cache.CacheBuilder;
+import io.crate.shade.com.google.common.cache.CacheLoader;
+import io.crate.shade.com.google.common.cache.LoadingCache;
+import io.crate.shade.com.google.common.cache.Weigher;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The result of tokenizing a SQL statement in a single pass: its kind, the parameter slots and
+ * positions, and the statement without comments.
+ * <p>
+ * String literals (<code>'it''s'</code>), quoted identifiers (<code>"a""b"</code>), line comments
+ * (<code>--</code>) and block comments (<code>/* *&#47;</code>) are skipped, so parameter markers
+ * inside of them are not counted.
+ * <p>
+ * Instances are immutable and shared, see {@link #of(String)}.
+ */
+class ParsedStatement {
+
+    enum Kind {
+        SELECT,
+        INSERT,
+        UPDATE,
+        DELETE,
+        OTHER
+    }
+
+    /**
+     * the cache is bounded by the total length of the cached statements
+     */
+    static final long MAX_CACHED_CHARS = 4 * 1024 * 1024;
+
+    private static final LoadingCache<String, ParsedStatement> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_CACHED_CHARS)
+            .weigher(new Weigher<String, ParsedStatement>() {
+                @Override
+                public int weigh(String sql, ParsedStatement parsed) {
+                    return parsed.hasComments() ? sql.length() + parsed.strippedSql.length() : sql.length();
+                }
+            })
+            .build(new CacheLoader<String, ParsedStatement>() {
+                @Override
+                public ParsedStatement load(String sql) {
+                    return parse(sql);
+                }
+            });
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final String sql;
+    private final String strippedSql;
+    private final Kind kind;
+    private final BitSet parameterSlots;
+    private final int[] parameterPositions;
+
+    private ParsedStatement(String sql, String strippedSql, Kind kind, BitSet parameterSlots, int[] parameterPositions) {
+        this.sql = sql;
+        this.strippedSql = strippedSql;
+        this.kind = kind;
+        this.parameterSlots = parameterSlots;
+        this.parameterPositions = parameterPositions;
+    }
+
+    /**
+     * Returns the parsed statement from the JVM wide cache, so identical statements are only
+     * parsed once regardless of the connection they are prepared on.
+     */
+    static ParsedStatement of(String sql) {
+        return CACHE.getUnchecked(sql);
+    }
+
+    /**
+     * Parses the statement without using the cache, e.g. for ad-hoc statements which are
+     * unlikely to be executed again.
+     */
+    static ParsedStatement parse(String sql) {
+        int length = sql.length();
+        BitSet slots = new BitSet();
+        int[] positions = NO_POSITIONS;
+        int numPositions = 0;
+        int count = 0;
+        // only allocated once a comment is found
+        StringBuilder stripped = null;
+        int copiedUntil = 0;
+        Kind kind = null;
+
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            switch (c) {
+                case '\'':
+                case '"':
+                    // an escaped quote just ends one literal and starts the next one
+                    int end = sql.indexOf(c, i + 1);
+                    i = end < 0 ? length : end + 1;
+                    break;
+                case '-':
+                case '/':
+                    int commentEnd = commentEnd(sql, i, c);
+                    if (commentEnd < 0) {
+                        i++;
+                        break;
+                    }
+                    if (stripped == null) {
+                        stripped = new StringBuilder(length);
+                    }
+                    stripped.append(sql, copiedUntil, i).append(' ');
+                    copiedUntil = commentEnd;
+                    i = commentEnd;
+                    break;
+                case '?':
+                    slots.set(count++);
+                    positions = addPosition(positions, numPositions++, i);
+                    i++;
+                    break;
+                case '$':
+                    int paramNum = 0;
+                    int j = i + 1;
+                    for (; j < length; j++) {
+                        char d = sql.charAt(j);
+                        if (d < '0' || d > '9') {
+                            break;
+                        }
+                        // an overflow makes it an invalid parameter number
+                        paramNum = paramNum > (Integer.MAX_VALUE - 9) / 10 ? -1 : paramNum * 10 + (d - '0');
+                        if (paramNum < 0) {
+                            break;
+                        }
+                    }
+                    if (paramNum > 0) {
+                        slots.set(paramNum - 1);
+                        positions = addPosition(positions, numPositions++, i);
+                    }
+                    i = j;
+                    break;
+                default:
+                    if (kind == null && Character.isLetter(c)) {
+                        kind = kind(sql, i);
+                    }
+                    i++;
+                    break;
+            }
+        }
+        String strippedSql = sql;
+        if (stripped != null) {
+            strippedSql = stripped.append(sql, copiedUntil, length).toString();
+        }
+        return new ParsedStatement(sql, strippedSql, kind == null ? Kind.OTHER : kind, slots,
+                numPositions == positions.length ? positions : Arrays.copyOf(positions, numPositions));
+    }
+
+    /**
+     * Normalizes the statement, so all executions of the same query have the same fingerprint
+     * regardless of their literals, see {@link QueryDigests}.
+     * <p>
+     * String and numeric literals and parameter markers become <code>?</code>, lists of them,
+     * e.g. of <code>IN</code> or <code>VALUES</code>, become <code>?, ...</code>. Comments are
+     * removed, whitespace is collapsed and everything but quoted identifiers is lower cased.
+     */
+    static String fingerprint(String sql) {
+        int length = sql.length();
+        StringBuilder fingerprint = new StringBuilder(length);
+        boolean space = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            int commentEnd = c == '-' || c == '/' ? commentEnd(sql, i, c) : -1;
+            if (commentEnd >= 0) {
+                space = true;
+                i = commentEnd;
+                continue;
+            }
+            int literalEnd = literalEnd(sql, i, fingerprint);
+            if (literalEnd >= 0) {
+                if (endsWith(fingerprint, "?, ...,")) {
+                    // already collapsed
+                    fingerprint.setLength(fingerprint.length() - 1);
+                } else if (endsWith(fingerprint, "?,")) {
+                    fingerprint.append(" ...");
+                } else {
+                    if (space && fingerprint.length() > 0) {
+                        fingerprint.append(' ');
+                    }
+                    fingerprint.append('?');
+                }
+                space = false;
+                i = literalEnd;
+                continue;
+            }
+            if (c == ',') {
+                fingerprint.append(',');
+                space = true;
+                i++;
+                continue;
+            }
+            if (space && fingerprint.length() > 0) {
+                fingerprint.append(' ');
+            }
+            space = false;
+            if (c == '"') {
+                int end = quoteEnd(sql, i);
+                fingerprint.append(sql, i, end);
+                i = end;
+            } else if (Character.isLetter(c) || c == '_') {
+                for (; i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_'); i++) {
+                    fingerprint.append(Character.toLowerCase(sql.charAt(i)));
+                }
+            } else {
+                fingerprint.append(c);
+                i++;
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @return the index after the literal or parameter marker starting at <code>start</code> or -1 if there is none
+     */
+    private static int literalEnd(String sql, int start, StringBuilder fingerprint) {
+        int length = sql.length();
+        char c = sql.charAt(start);
+        if (c == '\'') {
+            return quoteEnd(sql, start);
+        } else if (c == '?') {
+            return start + 1;
+        } else if (c == '$' || c == '-') {
+            if (c == '-' && fingerprint.length() > 0 && "(,=<>+-*/".indexOf(fingerprint.charAt(fingerprint.length() - 1)) < 0) {
+                // a subtraction
+                return -1;
+            }
+            int end = c == '$' ? digitsEnd(sql, start + 1) : literalEnd(sql, start + 1, fingerprint);
+            return end > start + 1 ? end : -1;
+        } else if (c >= '0' && c <= '9') {
+            int end = digitsEnd(sql, start);
+            if (end < length && sql.charAt(end) == '.') {
+                end = digitsEnd(sql, end + 1);
+            }
+            if (end + 1 < length && (sql.charAt(end) == 'e' || sql.charAt(end) == 'E')) {
+                int exponent = sql.charAt(end + 1) == '+' || sql.charAt(end + 1) == '-' ? end + 2 : end + 1;
+                int exponentEnd = digitsEnd(sql, exponent);
+                if (exponentEnd > exponent) {
+                    end = exponentEnd;
+                }
+            }
+            return end;
+        }
+        return -1;
+    }
+
+    private static int digitsEnd(String sql, int start) {
+        int i = start;
+        while (i < sql.length() && sql.charAt(i) >= '0' && sql.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the index after the quoted string or identifier starting at <code>start</code>,
+     * including escaped quotes
+     */
+    private static int quoteEnd(String sql, int start) {
+        char quote = sql.charAt(start);
+        int end = sql.indexOf(quote, start + 1);
+        while (end >= 0 && end + 1 < sql.length() && sql.charAt(end + 1) == quote) {
+            end = sql.indexOf(quote, end + 2);
+        }
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    private static boolean endsWith(StringBuilder sb, String suffix) {
+        int offset = sb.length() - suffix.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (sb.charAt(offset + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index after the comment starting at <code>start</code> or -1 if there is none
+     */
+    private static int commentEnd(String sql, int start, char c) {
+        int length = sql.length();
+        if (start + 1 >= length) {
+            return -1;
+        }
+        if (c == '-' && sql.charAt(start + 1) == '-') {
+            int end = sql.indexOf('\n', start + 2);
+            return end < 0 ? length : end + 1;
+        }
+        if (c == '/' && sql.charAt(start + 1) == '*') {
+            int end = sql.indexOf("*/", start + 2);
+            return end < 0 ? length : end + 2;
+        }
+        return -1;
+    }
+
+    private static int[] addPosition(int[] positions, int idx, int position) {
+        if (idx == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(8, idx * 2));
+        }
+        positions[idx] = position;
+        return positions;
+    }
+
+    private static Kind kind(String sql, int start) {
+        if (startsWithKeyword(sql, start, "select")) {
+            return Kind.SELECT;
+        } else if (startsWithKeyword(sql, start, "insert")) {
+            return Kind.INSERT;
+        } else if (startsWithKeyword(sql, start, "update")) {
+            return Kind.UPDATE;
+        } else if (startsWithKeyword(sql, start, "delete")) {
+            return Kind.DELETE;
+        }
+        return Kind.OTHER;
+    }
+
+    private static boolean startsWithKeyword(String sql, int start, String keyword) {
+        int end = start + keyword.length();
+        return sql.regionMatches(true, start, keyword, 0, keyword.length())
+               && (end == sql.length() || !Character.isLetterOrDigit(sql.charAt(end)) && sql.charAt(end) != '_');
+    }
+
+    String sql() {
+        return sql;
+    }
+
+    /**
+     * @return the statement with every comment replaced by a single space,
+     * the statement itself if it has no comments
+     */
+    String strippedSql() {
+        return strippedSql;
+    }
+
+    boolean hasComments() {
+        return strippedSql != sql;
+    }
+
+    /**
+     * @return the kind of the statement, determined by its first keyword
+     */
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * @return a copy of the BitSet with all the parameter slots set ($1 -> "1", (?, ?) -> "11"),
+     * as the parsed statement is shared by all connections
+     */
+    BitSet parameterSlots() {
+        return (BitSet) parameterSlots.clone();
+    }
+
+    /**
+     * @return the offsets of all parameter markers within the statement, in the order of their occurrence
+     */
+    int[] parameterPositions() {
+        return parameterPositions.clone();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBaseRequest;
+import io.crate.action.sql.SQLBaseResponse;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLResponse;
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The statistics of the statements executed by a client, grouped by their fingerprint, see
+ * {@link ParsedStatement#fingerprint(String)}.
+ * <p>
+ * At most <code>capacity</code> fingerprints are kept, using the space-saving algorithm weighted by latency:
+ * a new fingerprint replaces the one with the lowest total latency and takes over its total, so the
+ * fingerprints with the highest total latency are kept, even though the total of a new one is overestimated.
+ * Recording an existing fingerprint only updates atomic counters, only new fingerprints take a lock.
+ */
+class QueryDigests {
+
+    private static final Comparator<CrateQueryDigest> BY_TOTAL = new Comparator<CrateQueryDigest>() {
+        @Override
+        public int compare(CrateQueryDigest o1, CrateQueryDigest o2) {
+            return Long.compare(o2.total(TimeUnit.NANOSECONDS), o1.total(TimeUnit.NANOSECONDS));
+        }
+    };
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Digest> digests;
+
+    private static class Digest {
+        private final String fingerprint;
+        private final long overestimatedNanos;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos;
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        private Digest(String fingerprint, long overestimatedNanos) {
+            this.fingerprint = fingerprint;
+            this.overestimatedNanos = overestimatedNanos;
+            this.totalNanos = new AtomicLong(overestimatedNanos);
+        }
+
+        private void record(long nanos, long rows, boolean failed) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+            if (rows > 0) {
+                this.rows.addAndGet(rows);
+            }
+            if (failed) {
+                errors.incrementAndGet();
+            }
+        }
+
+        private CrateQueryDigest snapshot() {
+            return new CrateQueryDigest(fingerprint, count.get(), totalNanos.get(), maxNanos.get(), rows.get(),
+                    errors.get(), overestimatedNanos);
+        }
+    }
+
+    QueryDigests(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.digests = new ConcurrentHashMap<>(this.capacity * 2);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @param response null if the request failed
+     * @param failure null if the request succeeded
+     */
+    void record(SQLBaseRequest request, long nanos, @Nullable SQLBaseResponse response, @Nullable Throwable failure) {
+        String fingerprint = ParsedStatement.fingerprint(request.stmt());
+        Digest digest = digests.get(fingerprint);
+        if (digest == null) {
+            digest = add(fingerprint);
+        }
+        digest.record(nanos, rows(response), failure != null);
+    }
+
+    private synchronized Digest add(String fingerprint) {
+        Digest digest = digests.get(fingerprint);
+        if (digest != null) {
+            return digest;
+        }
+        long overestimatedNanos = 0L;
+        if (digests.size() >= capacity) {
+            Digest min = null;
+            for (Digest candidate : digests.values()) {
+                if (min == null || candidate.totalNanos.get() < min.totalNanos.get()) {
+                    min = candidate;
+                }
+            }
+            // executions still recorded on the replaced digest are lost
+            digests.remove(min.fingerprint);
+            overestimatedNanos = min.totalNanos.get();
+        }
+        digest = new Digest(fingerprint, overestimatedNanos);
+        digests.put(fingerprint, digest);
+        return digest;
+    }
+
+    private static long rows(@Nullable SQLBaseResponse response) {
+        if (response instanceof SQLResponse) {
+            return ((SQLResponse) response).rowCount();
+        } else if (response instanceof SQLBulkResponse) {
+            long rows = 0L;
+            for (SQLBulkResponse.Result result : ((SQLBulkResponse) response).results()) {
+                rows += Math.max(0L, result.rowCount());
+            }
+            return rows;
+        }
+        return 0L;
+    }
+
+    /**
+     * @return the digests ordered by their total latency, highest first
+     */
+    List<CrateQueryDigest> top() {
+        List<CrateQueryDigest> top = new ArrayList<>(digests.size());
+        for (Digest digest : digests.values()) {
+            top.add(digest.snapshot());
+        }
+        Collections.sort(top, BY_TOTAL);
+        return top;
+    }
+}
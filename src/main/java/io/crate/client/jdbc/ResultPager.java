@@ -0,0 +1,360 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fetches the result of a {@link PagedQuery} in pages of at most <code>fetchSize</code> rows.
+ * <p>
+ * Without a key the pages are selected with LIMIT and OFFSET. With a key, which needs to be
+ * unique, not null and part of the selected columns, the rows are ordered by the key and each
+ * page starts after the last key of the previous one.
+ * A page with less than <code>fetchSize</code> rows is the last one.
+ * <p>
+ * Up to <code>prefetch</code> pages are requested ahead of the page being read. At most
+ * <code>prefetch + 2</code> pages are held in memory: the pending ones, the next page returned
+ * by {@link #peek()} and the page being read. Offset pages are requested all at once,
+ * key pages one after another as each needs the last key of the previous page.
+ * Requests are built while holding the monitor of the pager, but sent after releasing it.
+ * Like every other request of a statement, each page request is passed to the interceptors
+ * of the statement and recorded once it completed, see {@link CrateStatementBase#completed}.
+ * <p>
+ * If <code>maxRows</code> is set, no more rows than that are requested.
+ */
+class ResultPager {
+
+    /**
+     * the result of a page request, which is also its listener
+     */
+    private class PageFuture extends PlainActionFuture<SQLResponse> {
+
+        private final SQLRequest request;
+        // set by send(), before the request is passed to the client
+        private SQLRequest sentRequest;
+        private long startedNanos;
+        // the exception of an interceptor which rejected the request
+        private volatile SQLException rejected;
+
+        private PageFuture(SQLRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public void onResponse(SQLResponse page) {
+            statement.completed(sentRequest, startedNanos, page, null);
+            onPage(page);
+            super.onResponse(page);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+            if (sentRequest != null) {
+                statement.completed(sentRequest, startedNanos, null, e);
+            }
+            synchronized (ResultPager.this) {
+                exhausted = true;
+                keyRequestInFlight = false;
+            }
+            super.onFailure(e);
+        }
+    }
+
+    private final CrateStatementBase statement;
+    private final CrateClient client;
+    private final PagedQuery query;
+    private final String schema;
+    private final int fetchSize;
+    private final int prefetch;
+    @Nullable
+    private final String key;
+    private final long maxRows;
+
+    // guarded by this, the listeners of prefetched pages run on transport threads
+    private final ArrayDeque<PageFuture> pending = new ArrayDeque<>();
+    private int keyIdx = -1;
+    private Object lastKey;
+    private boolean keyRequestInFlight = false;
+    private long nextOffset = 0;
+    private long requestedRows = 0;
+    private boolean exhausted = false;
+    // set if the last row of a full key page has no key, so the next page cannot be requested
+    @Nullable
+    private SQLException keyFailure;
+
+    private SQLResponse nextPage;
+
+    ResultPager(CrateStatementBase statement, CrateClient client, PagedQuery query, String schema,
+                int fetchSize, int prefetch, @Nullable String key, long maxRows) throws SQLException {
+        if (key != null && !query.keysetCompatible()) {
+            throw new SQLException(String.format(Locale.ENGLISH,
+                    "cannot page by key '%s', the statement must not contain ORDER BY, GROUP BY or HAVING", key));
+        }
+        this.statement = statement;
+        this.client = client;
+        this.query = query;
+        this.schema = schema;
+        this.fetchSize = fetchSize;
+        this.prefetch = Math.max(0, prefetch);
+        this.key = key;
+        this.maxRows = maxRows;
+    }
+
+    int fetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @return the first page, which contains the columns of the result even if it has no rows
+     */
+    SQLResponse first() throws SQLException {
+        PageFuture future;
+        synchronized (this) {
+            assert pending.isEmpty() && nextOffset == 0 : "first page already fetched";
+            future = request(false);
+        }
+        send(future);
+        SQLResponse page = await(future);
+        if (key != null && page.rows().length > 0 && keyIdx < 0) {
+            throw new SQLException(String.format(Locale.ENGLISH,
+                    "cannot page by key '%s', it must be one of the selected columns", key));
+        }
+        List<PageFuture> prefetched;
+        synchronized (this) {
+            prefetched = fill();
+        }
+        send(prefetched);
+        return page;
+    }
+
+    /**
+     * @return the next page without consuming it, null if there are no more rows
+     */
+    @Nullable
+    SQLResponse peek() throws SQLException {
+        if (nextPage != null) {
+            return nextPage;
+        }
+        PageFuture future;
+        PageFuture requested = null;
+        List<PageFuture> prefetched;
+        synchronized (this) {
+            future = pending.poll();
+            if (future == null) {
+                if (keyFailure != null) {
+                    throw keyFailure;
+                }
+                if (exhausted) {
+                    return null;
+                }
+                future = request(false);
+                requested = future;
+            }
+            prefetched = fill();
+        }
+        if (requested != null) {
+            send(requested);
+        }
+        send(prefetched);
+        SQLResponse page = await(future);
+        if (page.rows().length < fetchSize) {
+            // pages requested after the last one are empty, drop them
+            close();
+        }
+        if (page.rows().length > 0) {
+            nextPage = page;
+        }
+        return nextPage;
+    }
+
+    /**
+     * @return the next page, null if there are no more rows
+     */
+    @Nullable
+    SQLResponse next() throws SQLException {
+        SQLResponse page = peek();
+        nextPage = null;
+        return page;
+    }
+
+    /**
+     * stops fetching, the results of requested pages are discarded
+     */
+    synchronized void close() {
+        exhausted = true;
+        for (PageFuture future : pending) {
+            statement.untrack(future);
+        }
+        pending.clear();
+    }
+
+    /**
+     * builds requests until <code>prefetch</code> pages are pending, must be called while holding the monitor
+     *
+     * @return the requests to pass to {@link #send(List)} once the monitor is released
+     */
+    private List<PageFuture> fill() {
+        List<PageFuture> requested = null;
+        while (pending.size() < prefetch && !exhausted && !(key != null && keyRequestInFlight)) {
+            if (requested == null) {
+                requested = new ArrayList<>(prefetch);
+            }
+            requested.add(request(true));
+        }
+        return requested == null ? Collections.<PageFuture>emptyList() : requested;
+    }
+
+    /**
+     * builds the request of the next page, must be called while holding the monitor
+     *
+     * @param prefetch whether to add the page to the pending ones, which happens before it is sent,
+     *                 so pages requested by its listener are queued after it
+     * @return the request to pass to {@link #send(PageFuture)} once the monitor is released
+     */
+    private PageFuture request(boolean prefetch) {
+        int limit = fetchSize;
+        if (maxRows > 0) {
+            limit = (int) Math.min(fetchSize, maxRows - requestedRows);
+            if (requestedRows + limit >= maxRows) {
+                // this is the last page, so it is fine if it is shorter than the fetch size
+                exhausted = true;
+            }
+        }
+        requestedRows += limit;
+        SQLRequest request;
+        if (key == null) {
+            request = new SQLRequest(query.offsetPage(limit, nextOffset));
+            nextOffset += limit;
+        } else if (lastKey == null) {
+            request = new SQLRequest(query.keysetPage(key, false, limit));
+            keyRequestInFlight = true;
+        } else {
+            request = new SQLRequest(query.keysetPage(key, true, limit), new Object[]{lastKey});
+            keyRequestInFlight = true;
+        }
+        request.setDefaultSchema(schema);
+        request.includeTypesOnResponse(true);
+
+        PageFuture future = new PageFuture(request);
+        if (prefetch) {
+            pending.add(future);
+            statement.track(future, request.stmt());
+        }
+        return future;
+    }
+
+    private void send(PageFuture future) {
+        assert !Thread.holdsLock(this) : "requests must not be sent while holding the monitor";
+        try {
+            future.sentRequest = statement.intercept(future.request);
+        } catch (SQLException e) {
+            // rethrown by await()
+            future.rejected = e;
+            future.onFailure(e);
+            return;
+        }
+        future.startedNanos = statement.started();
+        try {
+            client.sql(future.sentRequest, future);
+        } catch (SQLActionException e) {
+            future.onFailure(e);
+        }
+    }
+
+    private void send(List<PageFuture> futures) {
+        for (PageFuture future : futures) {
+            send(future);
+        }
+    }
+
+    private void onPage(SQLResponse page) {
+        List<PageFuture> chained;
+        synchronized (this) {
+            chained = nextKeyPages(page);
+        }
+        send(chained);
+    }
+
+    /**
+     * updates the state with a received page, must be called while holding the monitor
+     *
+     * @return the chained key page requests to send once the monitor is released
+     */
+    private List<PageFuture> nextKeyPages(SQLResponse page) {
+        Object[][] rows = page.rows();
+        if (rows.length < fetchSize) {
+            exhausted = true;
+        }
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        keyRequestInFlight = false;
+        if (rows.length > 0) {
+            if (keyIdx < 0) {
+                keyIdx = Arrays.asList(page.cols()).indexOf(key);
+                if (keyIdx < 0) {
+                    // reported by first()
+                    exhausted = true;
+                    return Collections.emptyList();
+                }
+            }
+            lastKey = rows[rows.length - 1][keyIdx];
+            if (lastKey == null) {
+                if (!exhausted) {
+                    // the next page would start from the first one again
+                    keyFailure = new SQLException(String.format(Locale.ENGLISH,
+                            "cannot page by key '%s', it must be unique and not null", key));
+                    exhausted = true;
+                }
+                return Collections.emptyList();
+            }
+            // chain the next page
+            return fill();
+        }
+        return Collections.emptyList();
+    }
+
+    private SQLResponse await(PageFuture future) throws SQLException {
+        try {
+            return statement.await(future, future.request.stmt());
+        } catch (RuntimeException e) {
+            SQLException rejected = future.rejected;
+            if (rejected != null) {
+                throw rejected;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.shade.com.google.common.util.concurrent.AbstractFuture;
+import io.crate.shade.com.google.common.util.concurrent.FutureCallback;
+import io.crate.shade.com.google.common.util.concurrent.Futures;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CrateFuture} completed by the listener of a request.
+ * The listener only completes the future, callbacks are run on their own executors.
+ */
+class SettableCrateFuture<T> extends AbstractFuture<T> implements CrateFuture<T> {
+
+    static <T> SettableCrateFuture<T> completed(T value) {
+        SettableCrateFuture<T> future = new SettableCrateFuture<>();
+        future.set(value);
+        return future;
+    }
+
+    static <T> SettableCrateFuture<T> failed(Throwable t) {
+        SettableCrateFuture<T> future = new SettableCrateFuture<>();
+        future.setException(t);
+        return future;
+    }
+
+    /**
+     * Executes all requests of the statement at once, see {@link CrateStatementBase#executeAsync}.
+     * The future yields the update counts in the order of the requests, or fails
+     * with a {@link BatchUpdateException} containing them if any of the requests failed.
+     */
+    static SettableCrateFuture<int[]> executeAll(CrateStatementBase statement, List<SQLRequest> requests) {
+        final SettableCrateFuture<int[]> future = new SettableCrateFuture<>();
+        final int[] results = new int[requests.size()];
+        if (results.length == 0) {
+            future.set(results);
+            return future;
+        }
+        final AtomicInteger pending = new AtomicInteger(results.length);
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < results.length; i++) {
+            final int idx = i;
+            ActionListener<SQLResponse> listener = new ActionListener<SQLResponse>() {
+                @Override
+                public void onResponse(SQLResponse response) {
+                    results[idx] = response.rowCount() >= 0 ? (int) response.rowCount() : Statement.SUCCESS_NO_INFO;
+                    done();
+                }
+
+                @Override
+                public void onFailure(Throwable e) {
+                    results[idx] = Statement.EXECUTE_FAILED;
+                    failures.incrementAndGet();
+                    done();
+                }
+
+                private void done() {
+                    // the decrement publishes the results written by the other listeners
+                    if (pending.decrementAndGet() == 0) {
+                        if (failures.get() > 0) {
+                            future.setException(new BatchUpdateException("Error during executeBatch", results));
+                        } else {
+                            future.set(results);
+                        }
+                    }
+                }
+            };
+            statement.executeAsync(requests.get(i), listener);
+        }
+        return future;
+    }
+
+    /**
+     * converts the failure of a request the same way the blocking execution does
+     */
+    static SQLException toSQLException(Throwable t) {
+        if (t instanceof SQLException) {
+            return (SQLException) t;
+        }
+        return new SQLException(t.getMessage(), t);
+    }
+
+    @Override
+    public boolean set(T value) {
+        return super.set(value);
+    }
+
+    @Override
+    public boolean setException(Throwable throwable) {
+        return super.setException(toSQLException(throwable));
+    }
+
+    @Override
+    public void addCallback(final Callback<? super T> callback, Executor executor) {
+        Futures.addCallback(this, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                callback.onSuccess(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                callback.onFailure(toSQLException(t));
+            }
+        }, executor);
+    }
+}
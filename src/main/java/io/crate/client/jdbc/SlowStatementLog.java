@@ -0,0 +1,165 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBaseRequest;
+import io.crate.action.sql.SQLBaseResponse;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLRequest;
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the most recent statements of a connection which took longer than a threshold,
+ * see {@link CrateConnection#SLOW_STATEMENT_THRESHOLD}.
+ * <p>
+ * The statements are kept in a ring buffer, adding one does not lock and overwrites the oldest one once
+ * the buffer is full. Only statements above the threshold build an entry, so faster ones just cost a comparison.
+ */
+class SlowStatementLog {
+
+    static final int MAX_ARGS = 10;
+    static final int MAX_ARG_LENGTH = 64;
+
+    private static final Comparator<CrateSlowStatement> BY_SEQ = new Comparator<CrateSlowStatement>() {
+        @Override
+        public int compare(CrateSlowStatement o1, CrateSlowStatement o2) {
+            return Long.compare(o1.seq, o2.seq);
+        }
+    };
+
+    private final long thresholdNanos;
+    private final AtomicReferenceArray<CrateSlowStatement> entries;
+    private final AtomicLong written = new AtomicLong();
+    // guarded by this, adding statements does not lock
+    private long logged = 0L;
+
+    /**
+     * @param size the number of statements kept, rounded up to a power of two
+     */
+    SlowStatementLog(long threshold, TimeUnit unit, int size) {
+        this.thresholdNanos = unit.toNanos(threshold);
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    long thresholdNanos() {
+        return thresholdNanos;
+    }
+
+    void add(SQLBaseRequest request, long latencyNanos, @Nullable SQLBaseResponse response, @Nullable Throwable failure) {
+        int bulkSize = -1;
+        Object[] args;
+        if (request instanceof SQLBulkRequest) {
+            Object[][] bulkArgs = ((SQLBulkRequest) request).bulkArgs();
+            bulkSize = bulkArgs.length;
+            args = bulkArgs.length > 0 ? bulkArgs[0] : new Object[0];
+        } else {
+            args = ((SQLRequest) request).args();
+        }
+        long seq = written.getAndIncrement();
+        entries.set((int) seq & (entries.length() - 1), new CrateSlowStatement(seq, System.currentTimeMillis(),
+                request.stmt(), truncate(args), request.getDefaultSchema(), bulkSize, latencyNanos,
+                response == null ? -1.0f : response.duration(), failure == null ? null : failure.getMessage()));
+    }
+
+    static String truncate(Object[] args) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (i == MAX_ARGS) {
+                sb.append("... ").append(args.length - MAX_ARGS).append(" more");
+                break;
+            }
+            String arg = String.valueOf(args[i]);
+            if (arg.length() > MAX_ARG_LENGTH) {
+                sb.append(arg, 0, MAX_ARG_LENGTH).append("...");
+            } else {
+                sb.append(arg);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * @return the statements kept, oldest first
+     */
+    List<CrateSlowStatement> entries() {
+        return entries(0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the statements kept with a sequence number in the range <code>[from, to)</code>, oldest first
+     */
+    private List<CrateSlowStatement> entries(long from, long to) {
+        List<CrateSlowStatement> result = new ArrayList<>(entries.length());
+        for (int i = 0; i < entries.length(); i++) {
+            CrateSlowStatement entry = entries.get(i);
+            if (entry != null && entry.seq >= from && entry.seq < to) {
+                result.add(entry);
+            }
+        }
+        Collections.sort(result, BY_SEQ);
+        return result;
+    }
+
+    /**
+     * Writes the statements added since the last call to the logger.
+     * Statements which were overwritten before they could be logged are only counted.
+     *
+     * @return the number of statements logged
+     */
+    synchronized int log(Logger logger) {
+        long written = this.written.get();
+        if (written == logged) {
+            return 0;
+        }
+        List<CrateSlowStatement> entries = entries(logged, written);
+        long dropped = written - logged - entries.size();
+        logged = written;
+        if (!logger.isLoggable(Level.WARNING)) {
+            return 0;
+        }
+        if (dropped > 0) {
+            logger.warning(String.format(Locale.ENGLISH, "%d slow statements were dropped before they were logged", dropped));
+        }
+        for (CrateSlowStatement entry : entries) {
+            logger.warning(entry.toString());
+        }
+        return entries.size();
+    }
+}
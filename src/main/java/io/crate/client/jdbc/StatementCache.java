@@ -0,0 +1,134 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.shade.org.elasticsearch.common.Nullable;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Closed prepared statements of a connection, kept for reuse by {@link CrateConnection#prepareStatement(String)}.
+ * <p>
+ * Statements are keyed by their SQL and the schema they were prepared with.
+ * Only statements that are not in use are cached, the least recently used one
+ * is closed once the cache exceeds its size.
+ */
+class StatementCache {
+
+    static class Key {
+
+        private final String sql;
+        @Nullable
+        private final String schema;
+
+        Key(String sql, @Nullable String schema) {
+            this.sql = sql;
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return sql.equals(key.sql) && (schema == null ? key.schema == null : schema.equals(key.schema));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * sql.hashCode() + (schema == null ? 0 : schema.hashCode());
+        }
+    }
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, CratePreparedStatement> statements;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the cached statement, which is removed from the cache, or null if there is none
+     */
+    @Nullable
+    synchronized CratePreparedStatement take(Key key) {
+        CratePreparedStatement statement = statements.remove(key);
+        if (statement == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return statement;
+    }
+
+    /**
+     * @return false if a statement with the same key is already cached, the given one is not cached then
+     */
+    boolean offer(CratePreparedStatement statement) throws SQLException {
+        CratePreparedStatement evicted = null;
+        synchronized (this) {
+            Key key = statement.cacheKey();
+            if (statements.containsKey(key)) {
+                return false;
+            }
+            statements.put(key, statement);
+            if (statements.size() > maxSize) {
+                Iterator<CratePreparedStatement> it = statements.values().iterator();
+                evicted = it.next();
+                it.remove();
+                evictions++;
+            }
+        }
+        if (evicted != null) {
+            evicted.discard();
+        }
+        return true;
+    }
+
+    synchronized CrateStatementCacheStats stats() {
+        return new CrateStatementCacheStats(hits, misses, evictions, statements.size(), maxSize);
+    }
+
+    /**
+     * closes and removes all cached statements
+     */
+    void clear() throws SQLException {
+        CratePreparedStatement[] cached;
+        synchronized (this) {
+            cached = statements.values().toArray(new CratePreparedStatement[statements.size()]);
+            statements.clear();
+        }
+        for (CratePreparedStatement statement : cached) {
+            statement.discard();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which is cheap to update by many threads at once, the sum is only read occasionally.
+ * <p>
+ * Every thread adds to one of several cells, each on its own cache line, so concurrent updates
+ * rarely contend. Reading sums up all cells and is not an atomic snapshot.
+ */
+class StripedCounter {
+
+    // longs per cell, keeps the cells 128 bytes apart, which also covers adjacent line prefetching
+    private static final int PADDING = 16;
+
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    private static int stripes(int processors) {
+        int stripes = 1;
+        while (stripes < processors && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    /**
+     * @return the stripe of the current thread, in the range <code>[0, STRIPES)</code>
+     */
+    static int stripe() {
+        long id = Thread.currentThread().getId();
+        // thread ids are sequential, spread them over the stripes
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 58) & (STRIPES - 1);
+    }
+
+    void add(long delta) {
+        cells.getAndAdd(stripe() * PADDING, delta);
+    }
+
+    void increment() {
+        add(1L);
+    }
+
+    void decrement() {
+        add(-1L);
+    }
+
+    long sum() {
+        long sum = 0L;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel running timeouts on a single daemon thread.
+ * <p>
+ * Scheduling and cancelling only enqueue the timeout, the buckets of the wheel are
+ * owned by the worker thread, so neither blocks nor takes a lock.
+ * A timeout is run within one tick after its delay, tasks should be short and must not block.
+ * The worker parks while no timeout is scheduled.
+ */
+class TimeoutWheel {
+
+    static final long DEFAULT_TICK_MILLIS = 1L;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static class SharedHolder {
+        private static final TimeoutWheel INSTANCE = new TimeoutWheel("crate-jdbc-timeout",
+                DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * @return the wheel shared by all statements of this JVM
+     */
+    static TimeoutWheel shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startedNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    // timeouts which were scheduled, but neither run nor removed after being cancelled
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+
+    // only accessed by the worker thread
+    private long tick;
+
+    /**
+     * @param wheelSize rounded up to the next power of two
+     */
+    TimeoutWheel(String threadName, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tick duration must be greater than 0");
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("wheel size must be between 1 and 2^30");
+        }
+        tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        buckets = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        mask = buckets.length - 1;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * runs the task once the delay elapsed, unless the returned timeout is cancelled before
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startedNanos + Math.max(unit.toNanos(delay), 0L));
+        scheduled.add(timeout);
+        if (pending.getAndIncrement() == 0) {
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    /**
+     * @return the number of timeouts which neither ran nor were removed after being cancelled
+     */
+    int pending() {
+        return pending.get();
+    }
+
+    private void work() {
+        while (true) {
+            if (pending.get() == 0) {
+                LockSupport.park(this);
+                // nothing was scheduled while parking, so no bucket needs to be visited for the skipped ticks
+                tick = Math.max(tick, elapsedNanos() / tickNanos);
+                continue;
+            }
+            long deadline = waitForNextTick();
+            transferScheduled();
+            removeCancelled();
+            buckets[(int) (tick & mask)].expire(deadline);
+            tick++;
+        }
+    }
+
+    private long elapsedNanos() {
+        return System.nanoTime() - startedNanos;
+    }
+
+    /**
+     * @return the deadline of the current tick, relative to the start of the wheel
+     */
+    private long waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long remaining = deadline - elapsedNanos();
+            if (remaining <= 0) {
+                return deadline;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state.get() != Timeout.SCHEDULED) {
+                // cancelled before it reached its bucket, it is counted in removeCancelled()
+                continue;
+            }
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / buckets.length;
+            buckets[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            pending.decrementAndGet();
+        }
+    }
+
+    class Timeout {
+
+        private static final int SCHEDULED = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(SCHEDULED);
+        private final long deadline;
+        // released once the timeout is cancelled or expired, so the wheel does not keep the task reachable
+        private volatile Runnable task;
+
+        // only accessed by the worker thread
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return false if the timeout already ran or was cancelled
+         */
+        boolean cancel() {
+            if (!state.compareAndSet(SCHEDULED, CANCELLED)) {
+                return false;
+            }
+            task = null;
+            cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(SCHEDULED, EXPIRED)) {
+                return;
+            }
+            Runnable task = this.task;
+            this.task = null;
+            pending.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                // a failing task must not stop the worker, the task is responsible for reporting failures
+            }
+        }
+    }
+
+    /**
+     * a doubly linked list of the timeouts of one slot of the wheel
+     */
+    private static class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void expire(long deadline) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds > 0) {
+                    timeout.remainingRounds--;
+                } else if (timeout.deadline <= deadline) {
+                    remove(timeout);
+                    timeout.expire();
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -21,8 +21,8 @@
 
 package io.crate.client.jdbc;
 
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Scanner;
 
 /**
  *
@@ -30,6 +30,7 @@ import java.util.Scanner;
 public class VersionStringComparator implements Comparator<String> {
 
     private static final VersionStringComparator INSTANCE = new VersionStringComparator();
+    private static final int[] EMPTY = new int[0];
 
     public static int compareVersions(String o1, String o2) {
         return INSTANCE.compare(o1, o2);
@@ -40,17 +41,63 @@ public class VersionStringComparator implements Comparator<String> {
 
     @Override
     public int compare(String o1, String o2) {
-        Scanner o1Scanner = new Scanner(o1).useDelimiter("\\.");
-        Scanner o2Scanner = new Scanner(o2).useDelimiter("\\.");
-        while (o1Scanner.hasNextInt() && o2Scanner.hasNextInt()) {
-            int v1 = o1Scanner.nextInt();
-            int v2 = o2Scanner.nextInt();
-            if (v1 < v2) {
+        return compareVersions(components(o1), components(o2));
+    }
+
+    /**
+     * Compares two versions that were already split with {@link #components(String)}.
+     */
+    static int compareVersions(int[] v1, int[] v2) {
+        for (int i = 0, length = Math.min(v1.length, v2.length); i < length; i++) {
+            if (v1[i] < v2[i]) {
                 return -1;
-            } else if (v1 > v2) {
+            } else if (v1[i] > v2[i]) {
                 return 1;
             }
         }
-        return o1Scanner.hasNextInt() ? 1 : (o2Scanner.hasNextInt() ? -1 : 0);
+        return v1.length > v2.length ? 1 : (v1.length < v2.length ? -1 : 0);
+    }
+
+    /**
+     * Splits a version string into its leading numeric components,
+     * e.g. "0.55.4" -> [0, 55, 4] and "1.0.1-SNAPSHOT" -> [1, 0].
+     * Parsing stops at the first component that is not a number.
+     */
+    static int[] components(String version) {
+        int[] components = EMPTY;
+        int count = 0;
+        int start = 0;
+        int length = version.length();
+        while (start < length) {
+            int end = version.indexOf('.', start);
+            if (end < 0) {
+                end = length;
+            }
+            int value = parseComponent(version, start, end);
+            if (value < 0) {
+                break;
+            }
+            if (count == components.length) {
+                components = Arrays.copyOf(components, Math.max(3, count * 2));
+            }
+            components[count++] = value;
+            start = end + 1;
+        }
+        return count == components.length ? components : Arrays.copyOf(components, count);
+    }
+
+    private static int parseComponent(String version, int start, int end) {
+        if (start == end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = version.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 }
@@ -27,6 +27,7 @@ import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import io.crate.client.CrateClient;
 import io.crate.shade.org.elasticsearch.action.ActionFuture;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
 import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
 import org.junit.Before;
 import org.junit.Rule;
@@ -87,10 +88,56 @@ public abstract class AbstractCrateJDBCTest {
         when(crateClient.sql((SQLRequest) any())).thenAnswer(sqlAnswer);
         when(crateClient.sql(anyString())).thenAnswer(sqlAnswer);
         when(crateClient.bulkSql((SQLBulkRequest) any())).thenAnswer(sqlBulkAnswer);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ActionListener<SQLResponse> listener = (ActionListener<SQLResponse>) invocation.getArguments()[1];
+                SQLResponse response;
+                try {
+                    response = fakeExecuteSQL(invocation.getArguments()[0]).actionGet();
+                } catch (Exception e) {
+                    listener.onFailure(e);
+                    return null;
+                }
+                listener.onResponse(response);
+                return null;
+            }
+        }).when(crateClient).sql(any(SQLRequest.class), any(ActionListener.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ActionListener<SQLBulkResponse> listener = (ActionListener<SQLBulkResponse>) invocation.getArguments()[1];
+                SQLBulkResponse response;
+                try {
+                    response = fakeExecuteBulkSQL(invocation.getArguments()[0]).actionGet();
+                } catch (Exception e) {
+                    listener.onFailure(e);
+                    return null;
+                }
+                listener.onResponse(response);
+                return null;
+            }
+        }).when(crateClient).bulkSql(any(SQLBulkRequest.class), any(ActionListener.class));
 
 
         ClientHandleRegistry.ClientHandle clientHandle = mock(ClientHandleRegistry.ClientHandle.class);
+        when(clientHandle.metrics()).thenReturn(new CrateMetrics(null));
         when(clientHandle.client()).thenReturn(crateClient);
+        Answer<CrateServerVersion> serverVersionAnswer = new Answer<CrateServerVersion>() {
+            @Override
+            public CrateServerVersion answer(InvocationOnMock invocation) throws Throwable {
+                return CrateServerVersion.parse(getServerVersion());
+            }
+        };
+        when(clientHandle.serverVersion()).thenAnswer(serverVersionAnswer);
+        when(clientHandle.cachedServerVersion()).thenAnswer(serverVersionAnswer);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((Runnable) invocation.getArguments()[0]).run();
+                return null;
+            }
+        }).when(clientHandle).execute(any(Runnable.class));
 
         CrateConnection conn = new CrateConnection(clientHandle);
         connection = spy(conn);
@@ -0,0 +1,134 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BatchBufferTest {
+
+    @Test
+    public void testPrimitiveValuesKeepTheirType() throws Exception {
+        BatchBuffer buffer = new BatchBuffer(7);
+        buffer.setByte(0, (byte) 1);
+        buffer.setShort(1, (short) 2);
+        buffer.setInt(2, 3);
+        buffer.setLong(3, 4L);
+        buffer.setFloat(4, 5.5f);
+        buffer.setDouble(5, 6.5d);
+        buffer.setBoolean(6, true);
+        buffer.addRow();
+
+        Object[] row = buffer.row(0);
+        assertThat(row, is(new Object[]{(byte) 1, (short) 2, 3, 4L, 5.5f, 6.5d, true}));
+        assertThat(row[0], instanceOf(Byte.class));
+        assertThat(row[1], instanceOf(Short.class));
+        assertThat(row[2], instanceOf(Integer.class));
+        assertThat(row[4], instanceOf(Float.class));
+    }
+
+    @Test
+    public void testNullValues() throws Exception {
+        BatchBuffer buffer = new BatchBuffer(2);
+        buffer.setInt(0, 1);
+        buffer.setNull(1);
+        buffer.addRow();
+        buffer.setNull(0);
+        buffer.setObject(1, "foo");
+        buffer.addRow();
+
+        assertThat(buffer.rows(0, 2), is(new Object[][]{
+                new Object[]{1, null},
+                new Object[]{null, "foo"}
+        }));
+    }
+
+    @Test
+    public void testMixedTypesFallBackToObjects() throws Exception {
+        BatchBuffer buffer = new BatchBuffer(1);
+        buffer.setInt(0, 1);
+        buffer.addRow();
+        buffer.setNull(0);
+        buffer.addRow();
+        buffer.setLong(0, 2L);
+        buffer.addRow();
+        buffer.setObject(0, "foo");
+        buffer.addRow();
+
+        assertThat(buffer.rows(0, 4), is(new Object[][]{
+                new Object[]{1},
+                new Object[]{null},
+                new Object[]{2L},
+                new Object[]{"foo"}
+        }));
+    }
+
+    @Test
+    public void testGrowAndRowsRange() throws Exception {
+        BatchBuffer buffer = new BatchBuffer(1);
+        for (int i = 0; i < 1000; i++) {
+            if (i % 100 == 0) {
+                buffer.setNull(0);
+            } else {
+                buffer.setLong(0, i);
+            }
+            buffer.addRow();
+        }
+        assertThat(buffer.size(), is(1000));
+        Object[][] rows = buffer.rows(99, 102);
+        assertThat(rows, is(new Object[][]{
+                new Object[]{99L},
+                new Object[]{null},
+                new Object[]{101L}
+        }));
+    }
+
+    @Test
+    public void testClearKeepsCurrentRow() throws Exception {
+        BatchBuffer buffer = new BatchBuffer(2);
+        buffer.setInt(0, 1);
+        buffer.setObject(1, "foo");
+        buffer.addRow();
+        buffer.setInt(0, 2);
+        buffer.setObject(1, "bar");
+
+        buffer.clear();
+        assertThat(buffer.size(), is(0));
+        assertThat(buffer.currentRow(), is(new Object[]{2, "bar"}));
+
+        buffer.addRow();
+        assertThat(buffer.rows(0, 1), is(new Object[][]{new Object[]{2, "bar"}}));
+        assertThat(buffer.currentRow(), is(new Object[]{null, null}));
+    }
+
+    @Test
+    public void testEstimateSize() throws Exception {
+        BatchBuffer buffer = new BatchBuffer(3);
+        buffer.setLong(0, 1L);
+        buffer.setObject(1, "foo");
+        buffer.setNull(2);
+        buffer.addRow();
+        assertThat(buffer.estimateSize(0), is(BulkDispatcher.estimateSize(buffer.row(0))));
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
+import io.crate.shade.org.elasticsearch.client.transport.NoNodeAvailableException;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+public class ClientHandleRegistryTest {
+
+    @Test
+    public void testHostsKey() throws Exception {
+        assertThat(ClientHandleRegistry.hostsKey("/"), is(""));
+        assertThat(ClientHandleRegistry.hostsKey("/doc"), is(""));
+        assertThat(ClientHandleRegistry.hostsKey("a:4300"), is("a:4300"));
+        assertThat(ClientHandleRegistry.hostsKey("a:4300,b:4300/doc"), is("a:4300,b:4300"));
+        assertThat(ClientHandleRegistry.hostsKey("b:4300, A:4300/other"), is("a:4300,b:4300"));
+        assertThat(ClientHandleRegistry.hostsKey("b:4300,a:4300,b:4300,"), is("a:4300,b:4300"));
+    }
+
+    @Test
+    public void testHandleIsSharedAcrossSchemasAndHostOrder() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry();
+        ClientHandleRegistry.ClientHandle h1 = registry.getHandle("localhost:4300,localhost:4301/doc");
+        ClientHandleRegistry.ClientHandle h2 = registry.getHandle("localhost:4301,localhost:4300/doc");
+        ClientHandleRegistry.ClientHandle h3 = registry.getHandle("localhost:4300,localhost:4301/other");
+        ClientHandleRegistry.ClientHandle other = registry.getHandle("localhost:4302/doc");
+
+        assertThat(h2, sameInstance(h1));
+        assertThat(h3, sameInstance(h1));
+        assertThat(other, not(sameInstance(h1)));
+        assertThat(registry.urls(), containsInAnyOrder("localhost:4300,localhost:4301", "localhost:4302"));
+
+        h1.connectionClosed();
+        h2.connectionClosed();
+        assertThat(registry.urls(), containsInAnyOrder("localhost:4300,localhost:4301", "localhost:4302"));
+        h3.connectionClosed();
+        other.connectionClosed();
+        assertThat(registry.urls(), empty());
+    }
+
+    @Test
+    public void testReleasedHandleIsNotReused() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry();
+        ClientHandleRegistry.ClientHandle handle = registry.getHandle("/");
+        handle.connectionClosed();
+        assertThat(handle.tryIncRef(), is(false));
+
+        ClientHandleRegistry.ClientHandle newHandle = registry.getHandle("/");
+        assertThat(newHandle, not(sameInstance(handle)));
+        newHandle.connectionClosed();
+        assertThat(registry.urls(), empty());
+    }
+
+    @Test
+    public void testReleaseWithoutReferenceIsIgnored() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry();
+        ClientHandleRegistry.ClientHandle handle = registry.getHandle("localhost:4300");
+        handle.idleTimeout(TimeUnit.MINUTES.toMillis(1));
+        handle.connectionClosed();
+        handle.connectionClosed();
+        assertThat(registry.stats().idle(), is(1));
+
+        // still idle, so it is reused and closed with its last connection
+        assertThat(registry.getHandle("localhost:4300"), sameInstance(handle));
+        handle.idleTimeout(0);
+        handle.connectionClosed();
+        assertThat(registry.urls(), empty());
+        handle.connectionClosed();
+        assertThat(handle.tryIncRef(), is(false));
+    }
+
+    @Test
+    public void testIdleClientIsReused() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry();
+        ClientHandleRegistry.ClientHandle handle = registry.getHandle("localhost:4300/doc");
+        handle.idleTimeout(TimeUnit.MINUTES.toMillis(1));
+        CrateClient client = handle.client();
+        handle.connectionClosed();
+
+        CrateClientStats stats = registry.stats();
+        assertThat(stats.open(), is(1));
+        assertThat(stats.idle(), is(1));
+
+        ClientHandleRegistry.ClientHandle reused = registry.getHandle("localhost:4300/other");
+        assertThat(reused, sameInstance(handle));
+        assertThat(reused.client(), sameInstance(client));
+        stats = registry.stats();
+        assertThat(stats.created(), is(1L));
+        assertThat(stats.reused(), is(1L));
+        assertThat(stats.idle(), is(0));
+
+        reused.idleTimeout(0);
+        reused.connectionClosed();
+        stats = registry.stats();
+        assertThat(stats.closed(), is(1L));
+        assertThat(stats.open(), is(0));
+    }
+
+    @Test
+    public void testIdleClientIsClosedAfterTimeout() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry();
+        ClientHandleRegistry.ClientHandle handle = registry.getHandle("localhost:4300");
+        handle.idleTimeout(20);
+        handle.client();
+        handle.connectionClosed();
+        assertThat(registry.urls(), contains("localhost:4300"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!registry.urls().isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(registry.urls(), empty());
+        assertThat(registry.stats().closed(), is(1L));
+        assertThat(handle.tryIncRef(), is(false));
+    }
+
+    private volatile boolean clusterAlive = true;
+
+    private CrateClient healthCheckedClient(final List<SQLRequest> requests) {
+        CrateClient client = mock(CrateClient.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                requests.add((SQLRequest) invocation.getArguments()[0]);
+                ActionListener<SQLResponse> listener = (ActionListener<SQLResponse>) invocation.getArguments()[1];
+                if (clusterAlive) {
+                    listener.onResponse(new SQLResponse(new String[]{"version['number']"},
+                            new Object[][]{new Object[]{"0.55.0"}}, new DataType[]{DataTypes.STRING}, 1L, 0L, true));
+                } else {
+                    listener.onFailure(new NoNodeAvailableException("no node"));
+                }
+                return null;
+            }
+        }).when(client).sql(any(SQLRequest.class), any(ActionListener.class));
+        return client;
+    }
+
+    @Test
+    public void testHealthCheckIsCachedAndMonitored() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry();
+        ClientHandleRegistry.ClientHandle handle = spy(registry.getHandle("localhost:4300"));
+        List<SQLRequest> requests = Collections.synchronizedList(new ArrayList<SQLRequest>());
+        doReturn(healthCheckedClient(requests)).when(handle).client();
+        handle.healthCheckInterval(20, TimeUnit.MILLISECONDS);
+
+        assertThat(handle.isAlive(1000), is(true));
+        assertThat(handle.serverVersion().toString(), is("0.55.0"));
+        assertThat(requests.size(), is(1));
+        assertThat(requests.get(0).stmt(), is(CrateServerVersion.VERSION_STMT));
+
+        // the monitor notices the failure without another call
+        clusterAlive = false;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (handle.isAlive(1000) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(handle.isAlive(1000), is(false));
+        assertThat(requests.size(), greaterThan(1));
+
+        handle.connectionClosed();
+    }
+
+    @Test
+    public void testVersionRefreshIsRetriedIfTheRequestCannotBeSent() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry();
+        ClientHandleRegistry.ClientHandle handle = spy(registry.getHandle("localhost:4300"));
+        final List<SQLRequest> requests = Collections.synchronizedList(new ArrayList<SQLRequest>());
+        CrateClient client = mock(CrateClient.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                requests.add((SQLRequest) invocation.getArguments()[0]);
+                if (requests.size() == 1) {
+                    throw new NoNodeAvailableException("no node");
+                }
+                return null;
+            }
+        }).when(client).sql(any(SQLRequest.class), any(ActionListener.class));
+        doReturn(client).when(handle).client();
+
+        handle.refreshServerVersion();
+        handle.refreshServerVersion();
+        assertThat(requests.size(), is(2));
+
+        handle.connectionClosed();
+    }
+
+    @Test
+    public void testConcurrentAcquireAndRelease() throws Exception {
+        final ClientHandleRegistry registry = new ClientHandleRegistry();
+        // keeps the handle alive, so all threads must share it
+        ClientHandleRegistry.ClientHandle handle = registry.getHandle("localhost:4300,localhost:4301");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ClientHandleRegistry.ClientHandle>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final String url = i % 2 == 0 ? "localhost:4300,localhost:4301/s" + i : "localhost:4301,localhost:4300";
+            futures.add(executor.submit(new Callable<ClientHandleRegistry.ClientHandle>() {
+                @Override
+                public ClientHandleRegistry.ClientHandle call() throws Exception {
+                    ClientHandleRegistry.ClientHandle h = registry.getHandle(url);
+                    h.connectionClosed();
+                    return h;
+                }
+            }));
+        }
+        for (Future<ClientHandleRegistry.ClientHandle> future : futures) {
+            assertThat(future.get(), sameInstance(handle));
+        }
+        executor.shutdown();
+        assertThat(registry.urls(), contains("localhost:4300,localhost:4301"));
+        handle.connectionClosed();
+        assertThat(registry.urls(), empty());
+    }
+}
@@ -21,12 +21,14 @@
 
 package io.crate.client.jdbc;
 
+import io.crate.action.sql.SQLActionException;
 import io.crate.action.sql.SQLRequest;
 import io.crate.action.sql.SQLResponse;
 import io.crate.client.CrateClient;
 import io.crate.client.jdbc.testing.Stubs;
 import io.crate.shade.com.google.common.collect.ImmutableList;
 import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+import io.crate.shade.org.elasticsearch.rest.RestStatus;
 import io.crate.shade.org.elasticsearch.threadpool.ThreadPool;
 import io.crate.shade.org.elasticsearch.threadpool.ThreadPoolStats;
 import org.junit.Rule;
@@ -42,9 +44,11 @@ import java.util.InvalidPropertiesFormatException;
 import java.util.List;
 import java.util.Properties;
 
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 public class CrateConnectionTest {
@@ -56,11 +60,13 @@ public class CrateConnectionTest {
         PlainActionFuture<SQLResponse> response = new PlainActionFuture<>();
         response.onResponse(Stubs.DUMMY_RESPONSE);
         when(crateClient.sql(any(SQLRequest.class))).thenReturn(response);
+        when(crateClient.sql(anyString())).thenReturn(response);
         return crateClient;
     }
 
     private ClientHandleRegistry.ClientHandle clientHandle() throws Exception {
         ClientHandleRegistry.ClientHandle clientHandle = mock(ClientHandleRegistry.ClientHandle.class);
+        when(clientHandle.metrics()).thenReturn(new CrateMetrics(null));
         CrateClient client = clientMock();
         when(clientHandle.client()).thenReturn(client);
         return clientHandle;
@@ -88,36 +94,115 @@ public class CrateConnectionTest {
         assertTrue(conn.isClosed());
     }
 
+    @Test
+    public void testConnectFailureClosesConnection() throws Exception {
+        ClientHandleRegistry.ClientHandle handle = clientHandle();
+        when(handle.serverVersion()).thenThrow(new SQLActionException("version query failed", 4000, RestStatus.BAD_REQUEST));
+        CrateConnection conn = new CrateConnection(handle);
+        try {
+            conn.connect();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("version query failed"));
+            assertThat(e.getCause(), instanceOf(SQLActionException.class));
+        }
+        assertTrue(conn.isClosed());
+        verify(handle, times(1)).connectionClosed();
+        assertThat(conn.metrics().getOpenConnections(), is(0L));
+    }
+
     @Test
     public void testCloseClient() throws Exception {
+        final CrateClient client = clientMock();
+        ClientHandleRegistry registry = new ClientHandleRegistry(new ClientHandleRegistry.ClientFactory() {
+            @Override
+            public CrateClient create(String[] servers) {
+                return client;
+            }
+        });
+        CrateConnection conn = new CrateConnection(registry.getHandle("/"));
+        conn.connect();
+        conn.close();
+        verify(client, times(1)).close();
+    }
+
+    @Test
+    public void testCloseUnusedHandleDoesNotCreateClient() throws Exception {
+        ClientHandleRegistry registry = new ClientHandleRegistry(new ClientHandleRegistry.ClientFactory() {
+            @Override
+            public CrateClient create(String[] servers) {
+                throw new AssertionError("client must not be created");
+            }
+        });
+        CrateConnection conn = new CrateConnection(registry.getHandle("/"));
+        conn.close();
+        assertThat(registry.stats().created(), is(0L));
+        assertThat(registry.stats().closed(), is(0L));
+    }
+
+    @Test
+    public void testCloseConnectionTwice() throws Exception {
+        final CrateClient client = clientMock();
+        ClientHandleRegistry registry = new ClientHandleRegistry(new ClientHandleRegistry.ClientFactory() {
+            @Override
+            public CrateClient create(String[] servers) {
+                return client;
+            }
+        });
+        CrateConnection conn1 = new CrateConnection(registry.getHandle("/"));
+        conn1.connect();
+        CrateConnection conn2 = new CrateConnection(registry.getHandle("/"));
+        conn2.connect();
+
+        conn1.close();
+        conn1.close();
+        assertFalse(conn2.isClosed());
+        verify(client, never()).close();
+        assertThat(registry.stats().open(), is(1));
+
+        conn2.close();
+        conn2.close();
+        verify(client, times(1)).close();
+        assertThat(registry.stats().open(), is(0));
+        assertThat(registry.stats().closed(), is(1L));
+    }
+
+    @Test
+    public void testServerVersionIsFetchedOncePerHandle() throws Exception {
         ClientHandleRegistry registry = new ClientHandleRegistry();
         ClientHandleRegistry.ClientHandle h = registry.getHandle("/");
         ClientHandleRegistry.ClientHandle handle = spy(h);
         CrateClient client = clientMock();
         when(handle.client()).thenReturn(client);
-        CrateConnection conn = new CrateConnection(handle);
-        conn.connect();
-        conn.close();
-        verify(handle.client(), times(1)).close();
+
+        CrateConnection conn1 = new CrateConnection(handle);
+        conn1.connect();
+        CrateConnection conn2 = new CrateConnection(handle);
+        conn2.connect();
+        conn2.setSchema("foo");
+        conn2.getMetaData().getDatabaseProductVersion();
+
+        verify(client, times(1)).sql(anyString());
+        conn1.close();
+        conn2.close();
         h.client().close();
     }
 
     @Test
     public void testClosedThreadpool() throws Exception {
         ClientHandleRegistry registry = new ClientHandleRegistry();
-        ClientHandleRegistry.ClientHandle h = registry.getHandle("/");
-        ClientHandleRegistry.ClientHandle handle = spy(h);
+        ClientHandleRegistry.ClientHandle handle = registry.getHandle("/");
+        CrateClient client = handle.client();
         CrateConnection conn = new CrateConnection(handle);
         conn.close();
 
         Field threadpoolField = CrateClient.class.getDeclaredField("threadPool");
         threadpoolField.setAccessible(true);
-        ThreadPool threadPool = (ThreadPool) threadpoolField.get(handle.client());
+        ThreadPool threadPool = (ThreadPool) threadpoolField.get(client);
         for (ThreadPoolStats.Stats stats : threadPool.stats()) {
             assertThat(stats.getActive(), is(0));
         }
         assertTrue(threadPool.scheduler().isTerminated());
-        h.client().close();
     }
 
     @Test
@@ -0,0 +1,143 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class CrateMetricsTest {
+
+    @Test
+    public void testRecordExecutions() throws Exception {
+        CrateMetrics parent = new CrateMetrics(null);
+        CrateMetrics metrics = new CrateMetrics(parent);
+
+        metrics.started();
+        assertThat(metrics.getInFlightRequests(), is(1L));
+        assertThat(parent.getInFlightRequests(), is(1L));
+        metrics.completed(1000L, -1, null);
+        complete(metrics, -1, new SQLException("failed"));
+        complete(metrics, -1, new SQLTimeoutException("timed out"));
+        complete(metrics, 10, null);
+        complete(metrics, 20, null);
+
+        for (CrateMetrics m : new CrateMetrics[]{metrics, parent}) {
+            assertThat(m.getInFlightRequests(), is(0L));
+            assertThat(m.getExecutions(), is(3L));
+            assertThat(m.getFailures(), is(1L));
+            assertThat(m.getTimeouts(), is(1L));
+            assertThat(m.getBulkRequests(), is(2L));
+            assertThat(m.getBulkRows(), is(30L));
+            assertThat(m.getMeanRowsPerBulk(), is(15.0));
+        }
+    }
+
+    private static void complete(CrateMetrics metrics, int bulkRows, Throwable failure) {
+        metrics.completed(System.nanoTime() - metrics.started(), bulkRows, failure);
+    }
+
+    @Test
+    public void testRecordPhases() throws Exception {
+        CrateMetrics parent = new CrateMetrics(null);
+        CrateMetrics metrics = new CrateMetrics(parent);
+        metrics.phases(TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MICROSECONDS.toNanos(200),
+                TimeUnit.MICROSECONDS.toNanos(3000));
+        metrics.resultSetCreated(TimeUnit.MICROSECONDS.toNanos(40));
+
+        for (CrateMetrics m : new CrateMetrics[]{metrics, parent}) {
+            assertThat(m.getBuildLatencyMeanMicros(), is(10.0));
+            assertThat(m.getTransportLatencyMeanMicros(), is(200.0));
+            assertThat(m.getServerLatencyMeanMicros(), is(3000.0));
+            assertThat(m.getResultSetLatencyMeanMicros(), is(40.0));
+            assertThat(m.getServerLatencyP99Micros(), allOf(greaterThanOrEqualTo(3000L), lessThanOrEqualTo(3750L)));
+        }
+    }
+
+    @Test
+    public void testOpenConnectionsAndStatements() throws Exception {
+        CrateMetrics parent = new CrateMetrics(null);
+        CrateMetrics metrics = new CrateMetrics(parent);
+        metrics.connectionOpened();
+        metrics.statementOpened();
+        metrics.statementOpened();
+        metrics.statementClosed();
+        assertThat(parent.getOpenConnections(), is(1L));
+        assertThat(parent.getOpenStatements(), is(1L));
+        metrics.connectionClosed();
+        assertThat(metrics.getOpenConnections(), is(0L));
+    }
+
+    @Test
+    public void testLatencyPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.snapshot().percentileMicros(0.99), is(0L));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.count(), is(1000L));
+        assertThat(snapshot.meanMicros(), is(500.5));
+        assertThat(snapshot.maxMicros(), is(1000L));
+        assertThat(snapshot.percentileMicros(0.5), allOf(greaterThanOrEqualTo(500L), lessThanOrEqualTo(625L)));
+        assertThat(snapshot.percentileMicros(0.99), allOf(greaterThanOrEqualTo(990L), lessThanOrEqualTo(1000L)));
+        assertThat(snapshot.percentileMicros(1.0), is(1000L));
+    }
+
+    @Test
+    public void testBuckets() throws Exception {
+        long previousBound = 0L;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            long upperBound = LatencyHistogram.upperBound(bucket);
+            assertThat(upperBound, greaterThan(previousBound));
+            assertThat(LatencyHistogram.bucket(previousBound), is(bucket));
+            assertThat(LatencyHistogram.bucket(upperBound - 1), is(bucket));
+            previousBound = upperBound;
+        }
+        assertThat(LatencyHistogram.bucket(Long.MAX_VALUE), is(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        CrateMetrics metrics = new CrateMetrics(null);
+        metrics.register("type=Client,hosts=" + ObjectName.quote("localhost:44300"));
+        ObjectName name = metrics.objectName();
+        assertThat(name, notNullValue());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            complete(metrics, -1, null);
+            assertThat((Long) server.getAttribute(name, "Executions"), is(1L));
+        } finally {
+            metrics.unregister();
+        }
+        assertThat(server.isRegistered(name), is(false));
+        assertThat(metrics.objectName(), nullValue());
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.client.CrateClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CratePoolingDataSourceTest {
+
+    private volatile boolean alive = true;
+    private final List<CrateConnection> created = new ArrayList<>();
+    private CratePoolingDataSource dataSource;
+
+    @Before
+    public void setUp() throws Exception {
+        final ClientHandleRegistry.ClientHandle handle = mock(ClientHandleRegistry.ClientHandle.class);
+        when(handle.metrics()).thenReturn(new CrateMetrics(null));
+        when(handle.client()).thenReturn(mock(CrateClient.class));
+        when(handle.serverVersion()).thenReturn(CrateServerVersion.parse("0.55.0"));
+        when(handle.isAlive(anyLong())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                return alive;
+            }
+        });
+
+        final CrateConnectionPoolDataSource source = new CrateConnectionPoolDataSource() {
+            @Override
+            public CratePooledConnection getPooledConnection() throws SQLException {
+                Properties properties = new Properties();
+                if (getMaxStatements() > 0) {
+                    properties.setProperty(CrateConnection.STATEMENT_CACHE_SIZE, String.valueOf(getMaxStatements()));
+                }
+                CrateConnection connection = new CrateConnection(handle, properties, "localhost:4300/doc");
+                connection.connect();
+                connection.setSchema("doc");
+                created.add(connection);
+                return new CratePooledConnection(connection);
+            }
+        };
+        dataSource = new CratePoolingDataSource(source);
+        dataSource.setUrl("crate://localhost:4300/doc");
+    }
+
+    @Test
+    public void testConnectionIsReused() throws Exception {
+        Connection conn = dataSource.getConnection();
+        CrateConnection physical = conn.unwrap(CrateConnection.class);
+        assertThat(dataSource.getNumActive(), is(1));
+        conn.close();
+        assertThat(conn.isClosed(), is(true));
+        assertThat(physical.isClosed(), is(false));
+        assertThat(dataSource.getNumIdle(), is(1));
+
+        try {
+            conn.createStatement();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Connection is closed"));
+        }
+
+        Connection conn2 = dataSource.getConnection();
+        assertThat(conn2.unwrap(CrateConnection.class), sameInstance(physical));
+        assertThat(created.size(), is(1));
+        conn2.close();
+    }
+
+    @Test
+    public void testConnectionIsResetWhenReturned() throws Exception {
+        Connection conn = dataSource.getConnection();
+        conn.setSchema("tenant1");
+        conn.setReadOnly(true);
+        conn.close();
+
+        conn = dataSource.getConnection();
+        assertThat(conn.getSchema(), is("doc"));
+        assertThat(conn.isReadOnly(), is(false));
+        conn.close();
+    }
+
+    @Test
+    public void testMinIdle() throws Exception {
+        dataSource.setMinIdle(3);
+        Connection conn = dataSource.getConnection();
+        assertThat(created.size(), is(3));
+        assertThat(dataSource.getNumIdle(), is(2));
+        assertThat(dataSource.getNumActive(), is(1));
+        conn.close();
+        assertThat(dataSource.getNumIdle(), is(3));
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        dataSource.setMaxSize(1);
+        dataSource.setLoginTimeout(1);
+        Connection conn = dataSource.getConnection();
+        try {
+            dataSource.getConnection();
+            fail("SQLTimeoutException not thrown");
+        } catch (SQLTimeoutException e) {
+            assertThat(e.getMessage(), is("No connection available within 1 seconds, all 1 connections are in use"));
+        }
+        conn.close();
+        dataSource.getConnection().close();
+        assertThat(created.size(), is(1));
+    }
+
+    @Test
+    public void testInvalidConnectionsAreDiscarded() throws Exception {
+        Connection conn = dataSource.getConnection();
+        CrateConnection physical = conn.unwrap(CrateConnection.class);
+        conn.close();
+
+        alive = false;
+        try {
+            dataSource.getConnection();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Connection to 'crate://localhost:4300/doc' is not valid"));
+        }
+        assertThat(physical.isClosed(), is(true));
+        assertThat(dataSource.getNumIdle(), is(0));
+        assertThat(dataSource.getNumActive(), is(0));
+
+        alive = true;
+        dataSource.getConnection().close();
+        assertThat(created.size(), is(3));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        Connection conn = dataSource.getConnection();
+        Connection idle = dataSource.getConnection();
+        idle.close();
+        dataSource.close();
+        assertThat(created.get(1).isClosed(), is(true));
+        assertThat(created.get(0).isClosed(), is(false));
+
+        conn.close();
+        assertThat(created.get(0).isClosed(), is(true));
+        try {
+            dataSource.getConnection();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Data source is closed"));
+        }
+    }
+
+    @Test
+    public void testWaitingGetConnectionFailsOnceClosed() throws Exception {
+        dataSource.setMaxSize(1);
+        Connection conn = dataSource.getConnection();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Connection> waiting = executor.submit(new Callable<Connection>() {
+            @Override
+            public Connection call() throws Exception {
+                return dataSource.getConnection();
+            }
+        });
+        executor.shutdown();
+        Thread.sleep(50);
+        dataSource.close();
+        conn.close();
+
+        try {
+            waiting.get(10, TimeUnit.SECONDS);
+            fail("SQLException not thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(SQLException.class));
+            assertThat(e.getCause().getMessage(), is("Data source is closed"));
+        }
+        assertThat(created.size(), is(1));
+        assertThat(dataSource.getNumActive(), is(0));
+    }
+
+    @Test
+    public void testStatementsAreCached() throws Exception {
+        dataSource.setMaxStatements(2);
+        Connection conn = dataSource.getConnection();
+        PreparedStatement stmt = conn.prepareStatement("select * from t where id = ?");
+        CratePreparedStatement cached = stmt.unwrap(CratePreparedStatement.class);
+        stmt.setInt(1, 1);
+        stmt.setMaxRows(10);
+        stmt.close();
+        assertThat(stmt.isClosed(), is(true));
+
+        PreparedStatement reused = conn.prepareStatement("select * from t where id = ?");
+        assertThat(reused.unwrap(CratePreparedStatement.class), sameInstance(cached));
+        assertThat(reused.isClosed(), is(false));
+        assertThat(stmt.isClosed(), is(true));
+        assertThat(reused.getMaxRows(), is(0));
+
+        // the statement is in use, so another one is prepared
+        PreparedStatement other = conn.prepareStatement("select * from t where id = ?");
+        CratePreparedStatement otherCached = other.unwrap(CratePreparedStatement.class);
+        assertThat(otherCached, not(sameInstance(cached)));
+        other.close();
+        reused.close();
+
+        // the cache is keyed by schema too
+        conn.setSchema("tenant1");
+        PreparedStatement tenantStmt = conn.prepareStatement("select * from t where id = ?");
+        assertThat(tenantStmt.unwrap(CratePreparedStatement.class), not(sameInstance(cached)));
+        assertThat(tenantStmt.unwrap(CratePreparedStatement.class), not(sameInstance(otherCached)));
+        conn.close();
+    }
+
+    @Test
+    public void testStatementCacheEvictsLeastRecentlyUsed() throws Exception {
+        dataSource.setMaxStatements(2);
+        Connection conn = dataSource.getConnection();
+        PreparedStatement s1 = conn.prepareStatement("select 1");
+        CratePreparedStatement evicted = s1.unwrap(CratePreparedStatement.class);
+        PreparedStatement s2 = conn.prepareStatement("select 2");
+        CratePreparedStatement cached = s2.unwrap(CratePreparedStatement.class);
+        PreparedStatement s3 = conn.prepareStatement("select 3");
+        CratePreparedStatement recent = s3.unwrap(CratePreparedStatement.class);
+        s1.close();
+        s2.close();
+        s3.close();
+
+        assertThat(conn.prepareStatement("select 1").unwrap(CratePreparedStatement.class), not(sameInstance(evicted)));
+        assertThat(conn.prepareStatement("select 3").unwrap(CratePreparedStatement.class), sameInstance(recent));
+
+        // closing the physical connection closes the cached statements
+        CrateConnection physical = conn.unwrap(CrateConnection.class);
+        conn.close();
+        dataSource.close();
+        assertThat(physical.isClosed(), is(true));
+        try {
+            cached.getConnection();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Statement is closed"));
+        }
+    }
+
+    @Test
+    public void testStatementsReturnTheLogicalConnection() throws Exception {
+        Connection conn = dataSource.getConnection();
+        assertThat(conn.createStatement().getConnection(), sameInstance(conn));
+        assertThat(conn.prepareStatement("select 1").getConnection(), sameInstance(conn));
+
+        dataSource.setMaxStatements(2);
+        Connection cachingConn = dataSource.getConnection();
+        assertThat(cachingConn.prepareStatement("select 1").getConnection(), sameInstance(cachingConn));
+        conn.close();
+        cachingConn.close();
+    }
+
+    @Test
+    public void testOpenStatementsAreClosedWhenReturned() throws Exception {
+        dataSource.setMaxStatements(2);
+        Connection conn = dataSource.getConnection();
+        Statement stmt = conn.createStatement();
+        PreparedStatement preparedStmt = conn.prepareStatement("select 1");
+        CratePreparedStatement cached = preparedStmt.unwrap(CratePreparedStatement.class);
+        PreparedStatement closedStmt = conn.prepareStatement("select 2");
+        closedStmt.close();
+        conn.close();
+
+        assertThat(stmt.isClosed(), is(true));
+        assertThat(preparedStmt.isClosed(), is(true));
+        // the physical connection is still open, so the prepared statements are kept for reuse
+        CrateConnection physical = created.get(0);
+        assertThat(physical.isClosed(), is(false));
+        assertThat(physical.statementCacheStats().size(), is(2));
+
+        conn = dataSource.getConnection();
+        assertThat(conn.prepareStatement("select 1").unwrap(CratePreparedStatement.class), sameInstance(cached));
+        conn.close();
+    }
+
+    @Test
+    public void testMinIdleIsRefilledAfterDiscard() throws Exception {
+        dataSource.setMinIdle(2);
+        dataSource.getConnection().close();
+        assertThat(created.size(), is(2));
+
+        alive = false;
+        try {
+            dataSource.getConnection();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Connection to 'crate://localhost:4300/doc' is not valid"));
+        }
+        assertThat(created.get(0).isClosed(), is(true));
+        assertThat(created.get(1).isClosed(), is(true));
+
+        alive = true;
+        assertThat(dataSource.getNumIdle(), is(2));
+        Connection conn = dataSource.getConnection();
+        assertThat(dataSource.getNumIdle(), is(1));
+        assertThat(dataSource.getNumActive(), is(1));
+        conn.close();
+    }
+}
@@ -24,19 +24,26 @@ package io.crate.client.jdbc;
 import io.crate.action.sql.*;
 import io.crate.shade.org.elasticsearch.action.ActionFuture;
 import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+import io.crate.shade.org.elasticsearch.client.transport.NoNodeAvailableException;
 import io.crate.shade.org.elasticsearch.rest.RestStatus;
 import io.crate.types.DataType;
 import io.crate.types.DataTypes;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.sql.*;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.crate.shade.com.google.common.collect.Maps.newHashMap;
 import static junit.framework.TestCase.fail;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
@@ -354,6 +361,154 @@ public class CratePreparedStatementTest extends AbstractCrateJDBCTest {
         }
     }
 
+    private void addBatchRows(PreparedStatement preparedStatement, String... firstArgs) throws SQLException {
+        for (String firstArg : firstArgs) {
+            preparedStatement.setString(1, firstArg);
+            preparedStatement.setString(2, "bar");
+            preparedStatement.setLong(3, 1L);
+            preparedStatement.addBatch();
+        }
+    }
+
+    @Test
+    public void testExecuteBatchBulkChunked() throws Exception {
+        connection.setClientInfo(CrateConnection.BULK_CHUNK_SIZE, "2");
+        PreparedStatement preparedStatement = connection.prepareStatement("update test where c = ? and a = ? and b = $3");
+        addBatchRows(preparedStatement, "a", "b", "ERROR", "c", "d");
+        try {
+            preparedStatement.executeBatch();
+            fail("BatchUpdateException not thrown");
+        } catch (BatchUpdateException e) {
+            // only the chunk starting with the ERROR row fails, results are in the order of the rows
+            assertArrayEquals(new int[]{4, 4, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, 4}, e.getUpdateCounts());
+        }
+        verify(((CrateConnection) connection).client(), times(3)).bulkSql(any(SQLBulkRequest.class));
+    }
+
+    @Test
+    public void testExecuteBatchBulkChunkedNodeLost() throws Exception {
+        connection.setClientInfo(CrateConnection.BULK_CHUNK_SIZE, "2");
+        doAnswer(new Answer<ActionFuture<SQLBulkResponse>>() {
+            @Override
+            public ActionFuture<SQLBulkResponse> answer(InvocationOnMock invocation) throws Throwable {
+                SQLBulkRequest request = (SQLBulkRequest) invocation.getArguments()[0];
+                if ("NODE_LOST".equals(request.bulkArgs()[0][0])) {
+                    PlainActionFuture<SQLBulkResponse> future = new PlainActionFuture<>();
+                    future.onFailure(new NoNodeAvailableException("node lost"));
+                    return future;
+                }
+                return fakeExecuteBulkSQL(request);
+            }
+        }).when(((CrateConnection) connection).client()).bulkSql(any(SQLBulkRequest.class));
+        PreparedStatement preparedStatement = connection.prepareStatement("update test where c = ? and a = ? and b = $3");
+        addBatchRows(preparedStatement, "a", "b", "NODE_LOST", "c", "d");
+        try {
+            preparedStatement.executeBatch();
+            fail("BatchUpdateException not thrown");
+        } catch (BatchUpdateException e) {
+            // the chunks sent after the failed one are still completed
+            assertArrayEquals(new int[]{4, 4, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, 4}, e.getUpdateCounts());
+            assertThat(e.getCause().getCause(), instanceOf(NoNodeAvailableException.class));
+        }
+    }
+
+    @Test
+    public void testExecuteBatchBulkChunkedBySize() throws Exception {
+        connection.setClientInfo(CrateConnection.BULK_CHUNK_BYTES, "60");
+        PreparedStatement preparedStatement = connection.prepareStatement("update test where c = ? and a = ? and b = $3");
+        addBatchRows(preparedStatement, "a", "b", "c");
+
+        assertArrayEquals(new int[]{4, 4, 4}, preparedStatement.executeBatch());
+        verify(((CrateConnection) connection).client(), times(2)).bulkSql(any(SQLBulkRequest.class));
+    }
+
+    @Test
+    public void testExecuteBatchFlushedOnAddBatch() throws Exception {
+        connection.setClientInfo(CrateConnection.BULK_FLUSH_BYTES, "50");
+        PreparedStatement preparedStatement = connection.prepareStatement("update test where c = ? and a = ? and b = $3");
+        addBatchRows(preparedStatement, "a", "b", "c");
+        verify(((CrateConnection) connection).client(), times(1)).bulkSql(any(SQLBulkRequest.class));
+
+        assertArrayEquals(new int[]{4, 4, 4}, preparedStatement.executeBatch());
+        verify(((CrateConnection) connection).client(), times(2)).bulkSql(any(SQLBulkRequest.class));
+    }
+
+    @Test
+    public void testExecuteQueryAsync() throws Exception {
+        CrateAsyncPreparedStatement preparedStatement = connection.prepareStatement("select * from test where a = ?")
+                .unwrap(CrateAsyncPreparedStatement.class);
+        ((PreparedStatement) preparedStatement).setInt(1, 1);
+        CrateFuture<ResultSet> future = preparedStatement.executeQueryAsync();
+
+        final AtomicInteger executed = new AtomicInteger();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executed.incrementAndGet();
+                command.run();
+            }
+        };
+        final ResultSet[] callbackResult = new ResultSet[1];
+        future.addCallback(new CrateFuture.Callback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                callbackResult[0] = result;
+            }
+
+            @Override
+            public void onFailure(SQLException e) {
+                fail(e.getMessage());
+            }
+        }, executor);
+
+        assertThat(executed.get(), is(1));
+        ResultSet resultSet = future.get();
+        assertSame(resultSet, callbackResult[0]);
+        assertTrue(resultSet.next());
+        assertThat(resultSet.getLong(1), is(0L));
+    }
+
+    @Test
+    public void testExecuteUpdateAsync() throws Exception {
+        PreparedStatement preparedStatement = connection.prepareStatement("update test set a = ?");
+        preparedStatement.setString(1, "foobar");
+        CrateFuture<Integer> future = preparedStatement.unwrap(CrateAsyncPreparedStatement.class).executeUpdateAsync();
+        assertThat(future.get(), is(4));
+    }
+
+    @Test
+    public void testExecuteBatchBulkAsyncFail() throws Exception {
+        PreparedStatement preparedStatement = connection.prepareStatement("update test where c = ? and a = ? and b = $3");
+        addBatchRows(preparedStatement, "ERROR", "a");
+        CrateFuture<int[]> future = preparedStatement.unwrap(CrateAsyncPreparedStatement.class).executeBatchAsync();
+        try {
+            future.get();
+            fail("BatchUpdateException not thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(BatchUpdateException.class));
+            assertArrayEquals(new int[]{Statement.EXECUTE_FAILED}, ((BatchUpdateException) e.getCause()).getUpdateCounts());
+        }
+
+        addBatchRows(preparedStatement, "a", "b");
+        future = preparedStatement.unwrap(CrateAsyncPreparedStatement.class).executeBatchAsync();
+        assertArrayEquals(new int[]{4, 4}, future.get());
+    }
+
+    @Test
+    public void testExecuteBatchSingleAsync() throws Exception {
+        supportBulkArgs = false;
+        PreparedStatement preparedStatement = connection.prepareStatement("update test where c = ? and a = ? and b = $3");
+        addBatchRows(preparedStatement, "a", "ERROR", "b");
+        CrateFuture<int[]> future = preparedStatement.unwrap(CrateAsyncPreparedStatement.class).executeBatchAsync();
+        try {
+            future.get();
+            fail("BatchUpdateException not thrown");
+        } catch (ExecutionException e) {
+            assertArrayEquals(new int[]{4, Statement.EXECUTE_FAILED, 4}, ((BatchUpdateException) e.getCause()).getUpdateCounts());
+        }
+        supportBulkArgs = true;
+    }
+
     @Test
     public void testExecuteBatchSingleFail() throws Exception {
         supportBulkArgs = false;
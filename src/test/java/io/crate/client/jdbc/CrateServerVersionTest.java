@@ -0,0 +1,79 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLResponse;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class CrateServerVersionTest {
+
+    private static SQLResponse nodesResponse(Object[][] rows) {
+        return new SQLResponse(new String[]{"version['number']"}, rows,
+                new DataType[]{DataTypes.STRING}, rows.length, 0L, true);
+    }
+
+    @Test
+    public void testFromNodesUsesLowestVersion() throws Exception {
+        CrateServerVersion version = CrateServerVersion.fromNodes(nodesResponse(new Object[][]{
+                new Object[]{"0.55.4"},
+                new Object[]{null},
+                new Object[]{"0.48.10"},
+                new Object[]{"0.48.9"}
+        }));
+        assertThat(version.number(), is("0.48.9"));
+        assertThat(version.major(), is(0));
+        assertThat(version.minor(), is(48));
+        assertThat(version.revision(), is(9));
+    }
+
+    @Test
+    public void testFromNodesWithoutVersion() throws Exception {
+        CrateServerVersion version = CrateServerVersion.fromNodes(nodesResponse(new Object[0][]));
+        assertThat(version.number(), nullValue());
+        assertThat(version.major(), is(-1));
+        assertThat(version.supportsBulkArgs(), is(false));
+    }
+
+    @Test
+    public void testFeatures() throws Exception {
+        CrateServerVersion version = CrateServerVersion.parse("0.41.3");
+        assertThat(version.supportsBulkArgs(), is(false));
+
+        version = CrateServerVersion.parse("0.46.0");
+        assertThat(version.supportsBulkArgs(), is(true));
+        assertThat(version.supportsSchemata(), is(true));
+        assertThat(version.supportsDefaultSchema(), is(false));
+
+        version = CrateServerVersion.parse("0.48.1");
+        assertThat(version.supportsDefaultSchema(), is(true));
+
+        version = CrateServerVersion.parse("1.0.0-SNAPSHOT");
+        assertThat(version.supportsDefaultSchema(), is(true));
+        assertThat(version.revision(), is(-1));
+    }
+}
@@ -31,11 +31,14 @@ import io.crate.types.*;
 import org.junit.Test;
 
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
@@ -44,6 +47,8 @@ import static org.mockito.Mockito.*;
 
 public class CrateStatementTest extends AbstractCrateJDBCTest {
 
+    private final List<SQLBulkRequest> bulkRequests = new ArrayList<>();
+
     @Override
     protected SQLResponse getResponse(SQLRequest request) {
         SQLResponse response;
@@ -90,7 +95,15 @@ public class CrateStatementTest extends AbstractCrateJDBCTest {
 
     @Override
     protected SQLBulkResponse getBulkResponse(SQLBulkRequest request) {
-        return null; // never used here
+        bulkRequests.add(request);
+        SQLBulkResponse.Result[] results = new SQLBulkResponse.Result[request.bulkArgs().length];
+        for (int i = 0; i < results.length; i++) {
+            if ("ERROR".equals(request.bulkArgs()[i][0])) {
+                throw new SQLActionException("bla", 4000, RestStatus.BAD_REQUEST);
+            }
+            results[i] = new SQLBulkResponse.Result(null, "FAIL".equals(request.bulkArgs()[i][0]) ? -2 : 1);
+        }
+        return new SQLBulkResponse(new String[0], results, System.currentTimeMillis(), new DataType[0], true);
     }
 
     @Override
@@ -201,6 +214,46 @@ public class CrateStatementTest extends AbstractCrateJDBCTest {
         statement.executeUpdate("select * from test");
     }
 
+    @Test
+    public void testExecuteAsync() throws Exception {
+        CrateAsyncStatement statement = connection.createStatement().unwrap(CrateAsyncStatement.class);
+        CrateFuture<ResultSet> resultSetFuture = statement.executeQueryAsync("select * from test");
+        CrateFuture<Integer> updateCountFuture = statement.executeUpdateAsync("insert into test (id) values (4547)");
+
+        ResultSet resultSet = resultSetFuture.get();
+        assertTrue(resultSet.next());
+        assertTrue(resultSet.getBoolean("boo"));
+        assertThat(updateCountFuture.get(), is(4));
+    }
+
+    @Test
+    public void testExecuteUpdateAsyncFail() throws Exception {
+        CrateAsyncStatement statement = connection.createStatement().unwrap(CrateAsyncStatement.class);
+        try {
+            statement.executeUpdateAsync("error").get();
+            fail("ExecutionException not thrown");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SQLException);
+            assertThat(e.getCause().getMessage(), is("bla"));
+        }
+    }
+
+    @Test
+    public void testExecuteBatchAsync() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.addBatch("insert into test (id) values (1)");
+        statement.addBatch("error");
+        statement.addBatch("insert into test (id) values (2)");
+        try {
+            statement.unwrap(CrateAsyncStatement.class).executeBatchAsync().get();
+            fail("BatchUpdateException not thrown");
+        } catch (ExecutionException e) {
+            assertArrayEquals(new int[]{4, Statement.EXECUTE_FAILED, 4},
+                    ((BatchUpdateException) e.getCause()).getUpdateCounts());
+        }
+        assertArrayEquals(new int[0], statement.unwrap(CrateAsyncStatement.class).executeBatchAsync().get());
+    }
+
     @Test
     public void testCloseStatementExecute() throws Exception {
         Statement statement = connection.createStatement();
@@ -309,6 +362,211 @@ public class CrateStatementTest extends AbstractCrateJDBCTest {
 
     }
 
+    @Test
+    public void testExecuteBatchConcurrently() throws Exception {
+        connection.setClientInfo(CrateConnection.BATCH_PARALLELISM, "2");
+        Statement statement = connection.createStatement();
+        statement.addBatch("update test set a = 1");
+        statement.addBatch("error yeah!");
+        statement.addBatch("select * from test");
+        statement.addBatch("insert into test (a=2)");
+        statement.addBatch("insert into test (a=3)");
+
+        try {
+            statement.executeBatch();
+            fail("no SQLException raised");
+        } catch (BatchUpdateException e) {
+            assertArrayEquals(new int[]{4, Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED, 4, 4}, e.getUpdateCounts());
+        }
+
+        statement.addBatch("update test set a = 1");
+        statement.addBatch("insert into test (a=2)");
+        statement.addBatch("insert into test (a=3)");
+        assertArrayEquals(new int[]{4, 4, 4}, statement.executeBatch());
+    }
+
+    @Test
+    public void testExecuteBatchOfInsertsAsBulkRequests() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.addBatch("insert into test (id, name) values (1, 'a')");
+        statement.addBatch("insert into test (id, name) values (2, 'it''s')");
+        statement.addBatch("update test set a = 1");
+        statement.addBatch("insert into test (id, name) values (-3, null)");
+        statement.addBatch("insert into test (id, name) values ('FAIL', true)");
+        statement.addBatch("insert into test (id) values (5)");
+
+        try {
+            statement.executeBatch();
+            fail("no SQLException raised");
+        } catch (BatchUpdateException e) {
+            assertArrayEquals(new int[]{1, 1, 4, 1, Statement.EXECUTE_FAILED, 4}, e.getUpdateCounts());
+        }
+        assertThat(bulkRequests.size(), is(2));
+        assertThat(bulkRequests.get(0).stmt(), is("insert into test (id, name) values (?, ?)"));
+        assertArrayEquals(new Object[][]{{1L, "a"}, {2L, "it's"}}, bulkRequests.get(0).bulkArgs());
+        assertArrayEquals(new Object[][]{{-3L, null}, {"FAIL", true}}, bulkRequests.get(1).bulkArgs());
+    }
+
+    @Test
+    public void testExecuteBatchOfInsertsFallsBackToSingleStatements() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.addBatch("insert into test (id) values ('ERROR')");
+        statement.addBatch("insert into test (id) values (2)");
+
+        assertArrayEquals(new int[]{4, 4}, statement.executeBatch());
+        assertThat(bulkRequests.size(), is(1));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        CrateMetricsMXBean metrics = ((CrateConnection) connection).metrics();
+        Statement statement = connection.createStatement();
+        assertThat(metrics.getOpenStatements(), is(1L));
+        statement.executeUpdate("update test set a = 1");
+        try {
+            statement.execute("error");
+            fail("no SQLException raised");
+        } catch (SQLException e) {
+            // counted as failure
+        }
+        statement.addBatch("insert into test (id) values (1)");
+        statement.addBatch("insert into test (id) values (2)");
+        statement.executeBatch();
+        statement.close();
+
+        assertThat(metrics.getExecutions(), is(2L));
+        assertThat(metrics.getFailures(), is(1L));
+        assertThat(metrics.getBulkRequests(), is(1L));
+        assertThat(metrics.getBulkRows(), is(2L));
+        assertThat(metrics.getInFlightRequests(), is(0L));
+        assertThat(metrics.getOpenStatements(), is(0L));
+        assertThat(metrics.getOpenConnections(), is(1L));
+    }
+
+    @Test
+    public void testLatencyBreakdown() throws Exception {
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        assertThat(statement.latencyBreakdown(), nullValue());
+        statement.execute("select * from test");
+        CrateLatencyBreakdown breakdown = statement.latencyBreakdown();
+        assertThat(breakdown.bulkSize(), is(-1));
+        assertThat(breakdown.buildNanos(), greaterThan(0L));
+        assertThat(breakdown.resultSetNanos(), greaterThan(0L));
+        assertThat(breakdown.totalNanos(), is(breakdown.buildNanos() + breakdown.transportNanos()
+                + breakdown.serverNanos() + breakdown.resultSetNanos()));
+
+        PreparedStatement preparedStatement = connection.prepareStatement("insert into test (id) values (?)");
+        preparedStatement.setInt(1, 1);
+        preparedStatement.addBatch();
+        preparedStatement.setInt(1, 2);
+        preparedStatement.addBatch();
+        preparedStatement.executeBatch();
+        breakdown = preparedStatement.unwrap(CratePreparedStatement.class).latencyBreakdown();
+        assertThat(breakdown.bulkSize(), is(2));
+        assertThat(breakdown.resultSetNanos(), is(0L));
+    }
+
+    public static class RecordingInterceptor implements CrateStatementInterceptor {
+
+        static final List<String> calls = new ArrayList<>();
+
+        @Override
+        public SQLRequest before(Statement statement, SQLRequest request) throws SQLException {
+            if (request.stmt().startsWith("reject")) {
+                throw new SQLException("rejected");
+            }
+            if (request.stmt().startsWith("rewrite ")) {
+                SQLRequest rewritten = new SQLRequest(request.stmt().substring(8), request.args());
+                rewritten.includeTypesOnResponse(true);
+                return rewritten;
+            }
+            return request;
+        }
+
+        @Override
+        public SQLBulkRequest before(Statement statement, SQLBulkRequest request) throws SQLException {
+            return request;
+        }
+
+        @Override
+        public void after(Statement statement, SQLBaseRequest request, SQLBaseResponse response,
+                          Throwable failure, long startedNanos, long completedNanos) {
+            assertThat(completedNanos >= startedNanos, is(true));
+            String call = request.stmt();
+            if (request instanceof SQLBulkRequest) {
+                call += " bulk " + ((SQLBulkRequest) request).bulkArgs().length;
+            }
+            calls.add(call + (failure == null ? " ok" : " failed"));
+        }
+    }
+
+    @Test
+    public void testInterceptors() throws Exception {
+        RecordingInterceptor.calls.clear();
+        connection.setClientInfo(CrateConnection.STATEMENT_INTERCEPTORS, RecordingInterceptor.class.getName());
+        ((CrateConnection) connection).connect();
+
+        Statement statement = connection.createStatement();
+        assertThat(statement.execute("rewrite select * from test"), is(true));
+        try {
+            statement.execute("error");
+            fail("no SQLException raised");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("bla"));
+        }
+        try {
+            statement.execute("reject update test set a = 1");
+            fail("no SQLException raised");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("rejected"));
+        }
+        PreparedStatement preparedStatement = connection.prepareStatement("insert into test (id) values (?)");
+        preparedStatement.setInt(1, 1);
+        preparedStatement.addBatch();
+        preparedStatement.setInt(1, 2);
+        preparedStatement.addBatch();
+        preparedStatement.executeBatch();
+
+        assertThat(RecordingInterceptor.calls, contains(
+                "select * from test ok",
+                "error failed",
+                "insert into test (id) values (?) bulk 2 ok"));
+    }
+
+    @Test
+    public void testAsyncExecutionsAreInterceptedAndRecorded() throws Exception {
+        RecordingInterceptor.calls.clear();
+        connection.setClientInfo(CrateConnection.STATEMENT_INTERCEPTORS, RecordingInterceptor.class.getName());
+        ((CrateConnection) connection).connect();
+        CrateMetricsMXBean metrics = ((CrateConnection) connection).metrics();
+
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        assertTrue(statement.executeQueryAsync("select * from test").get().next());
+        statement.addBatch("insert into test (id) values (1)");
+        statement.addBatch("reject insert into test (id) values (2)");
+        try {
+            statement.executeBatchAsync().get();
+            fail("BatchUpdateException not thrown");
+        } catch (ExecutionException e) {
+            assertArrayEquals(new int[]{4, Statement.EXECUTE_FAILED},
+                    ((BatchUpdateException) e.getCause()).getUpdateCounts());
+        }
+
+        assertThat(RecordingInterceptor.calls, contains(
+                "select * from test ok",
+                "insert into test (id) values (1) ok"));
+        assertThat(metrics.getExecutions(), is(2L));
+        assertThat(metrics.getInFlightRequests(), is(0L));
+    }
+
+    @Test
+    public void testInterceptorClassNotFound() throws Exception {
+        connection.setClientInfo(CrateConnection.STATEMENT_INTERCEPTORS, "io.crate.client.jdbc.NoSuchInterceptor");
+        expectedException.expect(SQLException.class);
+        expectedException.expectMessage("Cannot create statement interceptor 'io.crate.client.jdbc.NoSuchInterceptor'");
+        ((CrateConnection) connection).connect();
+    }
+
     @Test
     public void testQueryTimeout() throws Exception {
         ActionFuture<SQLResponse> future = mock(PlainActionFuture.class);
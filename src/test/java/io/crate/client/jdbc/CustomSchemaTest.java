@@ -28,8 +28,6 @@ import io.crate.client.jdbc.testing.Stubs;
 import io.crate.shade.com.google.common.base.MoreObjects;
 import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
 import io.crate.shade.org.elasticsearch.common.Nullable;
-import io.crate.types.DataType;
-import io.crate.types.DataTypes;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -63,18 +61,12 @@ public class CustomSchemaTest {
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
         clientHandle = mock(ClientHandleRegistry.ClientHandle.class);
+        when(clientHandle.metrics()).thenReturn(new CrateMetrics(null));
         when(clientHandle.client()).thenReturn(crateClient);
     }
 
     private void setUpConnection(String version) throws SQLException {
-        mockDummyResponse(new SQLResponse(
-                new String[]{"version['number']"},
-                new Object[][]{new Object[]{version}},
-                new DataType[]{DataTypes.STRING},
-                1L,
-                0,
-                false
-        ));
+        when(clientHandle.serverVersion()).thenReturn(CrateServerVersion.parse(version));
         conn = new CrateConnection(clientHandle);
         conn.connect();
         conn.setSchema("foo");
@@ -0,0 +1,287 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLBaseRequest;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.ActionListener;
+import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+import io.crate.shade.org.elasticsearch.rest.RestStatus;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * An in-process stand-in for a {@link CrateClient} connected to a cluster, which answers every request
+ * asynchronously after a latency drawn from a {@link Latency} distribution, with canned responses
+ * of a configurable shape, and fails a configurable share of them.
+ * <p>
+ * Like the clients of {@link AbstractCrateJDBCTest} it is a Mockito mock, but a stub-only one, so it does
+ * not record its invocations and can be used by many threads for a long time.
+ * Responses are completed on the threads of the fake transport, like the network threads of a real client.
+ * Run the whole driver against it with {@link #factory()}, see {@link LoadGenerator}.
+ */
+public class FakeCrateClient {
+
+    /**
+     * the latency of a request, from sending it until its response is completed
+     */
+    public interface Latency {
+        long nanos(Random random);
+    }
+
+    public static Latency fixed(final long latency, final TimeUnit unit) {
+        return new Latency() {
+            @Override
+            public long nanos(Random random) {
+                return unit.toNanos(latency);
+            }
+        };
+    }
+
+    public static Latency uniform(final long min, final long max, final TimeUnit unit) {
+        return new Latency() {
+            @Override
+            public long nanos(Random random) {
+                return unit.toNanos(min) + (long) (random.nextDouble() * unit.toNanos(max - min));
+            }
+        };
+    }
+
+    public static Latency exponential(final long mean, final TimeUnit unit) {
+        return new Latency() {
+            @Override
+            public long nanos(Random random) {
+                return (long) (-Math.log(1.0 - random.nextDouble()) * unit.toNanos(mean));
+            }
+        };
+    }
+
+    /**
+     * @return the latency, replaced by the tail latency with the given probability, e.g. for garbage collections
+     */
+    public static Latency withTail(final Latency latency, final double probability, final Latency tail) {
+        return new Latency() {
+            @Override
+            public long nanos(Random random) {
+                return random.nextDouble() < probability ? tail.nanos(random) : latency.nanos(random);
+            }
+        };
+    }
+
+    private final CrateClient client;
+    private final ScheduledThreadPoolExecutor transport;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bulkRequests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile Latency latency = fixed(0L, TimeUnit.NANOSECONDS);
+    private volatile double errorRate = 0.0;
+    private volatile String serverVersion = "0.55.0";
+    private volatile String[] columns;
+    private volatile DataType[] types;
+    private volatile Object[][] rows;
+
+    public FakeCrateClient() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param transportThreads the number of threads completing the responses
+     */
+    public FakeCrateClient(int transportThreads) {
+        transport = new ScheduledThreadPoolExecutor(transportThreads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "fake-crate-transport-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        client = mock(CrateClient.class, withSettings().stubOnly().defaultAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return invoke(invocation);
+            }
+        }));
+        rows(1, 2);
+    }
+
+    public FakeCrateClient latency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * @param errorRate the share of the requests which fail with an {@link SQLActionException}, between 0 and 1
+     */
+    public FakeCrateClient errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * the shape of the response of every <code>SELECT</code> statement, with alternating long and string columns
+     */
+    public FakeCrateClient rows(int numRows, int numColumns) {
+        String[] columns = new String[numColumns];
+        DataType[] types = new DataType[numColumns];
+        for (int c = 0; c < numColumns; c++) {
+            columns[c] = "col" + c;
+            types[c] = c % 2 == 0 ? DataTypes.LONG : DataTypes.STRING;
+        }
+        Object[][] rows = new Object[numRows][numColumns];
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < numColumns; c++) {
+                rows[r][c] = c % 2 == 0 ? (Object) (long) r : "value " + r;
+            }
+        }
+        this.columns = columns;
+        this.types = types;
+        this.rows = rows;
+        return this;
+    }
+
+    public FakeCrateClient serverVersion(String serverVersion) {
+        this.serverVersion = serverVersion;
+        return this;
+    }
+
+    public CrateClient client() {
+        return client;
+    }
+
+    /**
+     * @return a factory returning this client for every client handle
+     */
+    ClientHandleRegistry.ClientFactory factory() {
+        return new ClientHandleRegistry.ClientFactory() {
+            @Override
+            public CrateClient create(String[] servers) {
+                return client;
+            }
+        };
+    }
+
+    /**
+     * @return the number of requests received, including bulk requests
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    public long bulkRequests() {
+        return bulkRequests.get();
+    }
+
+    /**
+     * @return the number of failures injected
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    public void close() {
+        transport.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object invoke(InvocationOnMock invocation) {
+        String method = invocation.getMethod().getName();
+        if (!method.equals("sql") && !method.equals("bulkSql")) {
+            // close() is a no-op, the transport is closed by close() of the fake
+            return null;
+        }
+        Object[] args = invocation.getArguments();
+        SQLBaseRequest request = args[0] instanceof String ? new SQLRequest((String) args[0]) : (SQLBaseRequest) args[0];
+        if (args.length == 2) {
+            send(request, (ActionListener<Object>) args[1]);
+            return null;
+        }
+        PlainActionFuture<Object> future = PlainActionFuture.newFuture();
+        send(request, future);
+        return future;
+    }
+
+    private void send(final SQLBaseRequest request, final ActionListener<Object> listener) {
+        requests.incrementAndGet();
+        if (request instanceof SQLBulkRequest) {
+            bulkRequests.incrementAndGet();
+        }
+        final long receivedAt = System.currentTimeMillis();
+        final Random random = ThreadLocalRandom.current();
+        final boolean versionRequest = CrateServerVersion.VERSION_STMT.equals(request.stmt());
+        // the client is not broken by the failures, only the statements
+        final boolean fail = !versionRequest && errorRate > 0.0 && random.nextDouble() < errorRate;
+        transport.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (fail) {
+                    failures.incrementAndGet();
+                    listener.onFailure(new SQLActionException("injected failure", 5000, RestStatus.INTERNAL_SERVER_ERROR));
+                } else if (versionRequest) {
+                    listener.onResponse(new SQLResponse(new String[]{"version['number']"},
+                            new Object[][]{{serverVersion}}, new DataType[]{DataTypes.STRING}, 1L, receivedAt, true));
+                } else if (request instanceof SQLBulkRequest) {
+                    listener.onResponse(bulkResponse((SQLBulkRequest) request, receivedAt));
+                } else {
+                    listener.onResponse(response(request, receivedAt));
+                }
+            }
+        }, latency.nanos(random), TimeUnit.NANOSECONDS);
+    }
+
+    private SQLResponse response(SQLBaseRequest request, long receivedAt) {
+        if (request.stmt().regionMatches(true, 0, "select", 0, 6)) {
+            Object[][] rows = this.rows;
+            return new SQLResponse(columns, rows, types, rows.length, receivedAt, true);
+        }
+        return new SQLResponse(new String[0], new Object[0][], new DataType[0], 1L, receivedAt, true);
+    }
+
+    private SQLBulkResponse bulkResponse(SQLBulkRequest request, long receivedAt) {
+        SQLBulkResponse.Result[] results = new SQLBulkResponse.Result[request.bulkArgs().length];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = new SQLBulkResponse.Result(null, 1L);
+        }
+        return new SQLBulkResponse(new String[0], results, receivedAt, new DataType[0], true);
+    }
+}
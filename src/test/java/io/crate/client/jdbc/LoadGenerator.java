@@ -0,0 +1,261 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a number of threads through {@link CrateDriver} and {@link CrateConnection} against a
+ * {@link FakeCrateClient}, and measures the throughput and latency of the driver, without a server.
+ * <p>
+ * The driver has its own {@link ClientHandleRegistry}, so all connections share one client handle like they
+ * do with the registered driver. Run {@link #main(String[])} to see how the driver scales with the number of
+ * threads: <code>./gradlew loadTest</code>.
+ */
+public class LoadGenerator {
+
+    /**
+     * one operation of a thread, its latency is measured including all statements it executes
+     */
+    public interface Workload {
+        void execute(Connection connection, long iteration) throws SQLException;
+    }
+
+    public static final Workload SELECT = new Workload() {
+        @Override
+        public void execute(Connection connection, long iteration) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("select col0, col1 from doc.t where col0 = " + iteration)) {
+                while (resultSet.next()) {
+                    resultSet.getLong(1);
+                }
+            }
+        }
+    };
+
+    public static final Workload PREPARED_SELECT = new Workload() {
+        @Override
+        public void execute(Connection connection, long iteration) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement("select col0, col1 from doc.t where col0 = ?")) {
+                statement.setLong(1, iteration);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        resultSet.getLong(1);
+                    }
+                }
+            }
+        }
+    };
+
+    /**
+     * inserts 100 rows as a bulk request
+     */
+    public static final Workload BATCH_INSERT = new Workload() {
+        @Override
+        public void execute(Connection connection, long iteration) throws SQLException {
+            try (PreparedStatement statement = connection.prepareStatement("insert into doc.t (col0, col1) values (?, ?)")) {
+                for (int i = 0; i < 100; i++) {
+                    statement.setLong(1, iteration);
+                    statement.setString(2, "value");
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+    };
+
+    /**
+     * the outcome of {@link #run(int, Workload, long, boolean)}
+     */
+    public static class Result {
+
+        private final int threads;
+        private final long operations;
+        private final long errors;
+        private final long elapsedNanos;
+        private final LatencyHistogram.Snapshot latency;
+
+        Result(int threads, long operations, long errors, long elapsedNanos, LatencyHistogram.Snapshot latency) {
+            this.threads = threads;
+            this.operations = operations;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+        }
+
+        public long operations() {
+            return operations;
+        }
+
+        /**
+         * @return the number of operations which failed with an {@link SQLException}
+         */
+        public long errors() {
+            return errors;
+        }
+
+        public double operationsPerSecond() {
+            return operations / (elapsedNanos / 1e9);
+        }
+
+        public long percentileMicros(double quantile) {
+            return latency.percentileMicros(quantile);
+        }
+
+        public long maxMicros() {
+            return latency.maxMicros();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH,
+                    "threads=%3d ops/s=%10.0f errors=%6d p50=%6d us p99=%6d us p99.9=%6d us max=%7d us",
+                    threads, operationsPerSecond(), errors, percentileMicros(0.5), percentileMicros(0.99),
+                    percentileMicros(0.999), maxMicros());
+        }
+    }
+
+    private final CrateDriver driver;
+    private final String url;
+    private final Properties properties;
+
+    /**
+     * @param url the URL of the connections, e.g. <code>crate://localhost:4300</code>, never connected to
+     */
+    public LoadGenerator(FakeCrateClient fakeClient, String url, Properties properties) {
+        this.driver = new CrateDriver(new ClientHandleRegistry(fakeClient.factory()));
+        this.url = url;
+        this.properties = properties;
+    }
+
+    CrateDriver driver() {
+        return driver;
+    }
+
+    /**
+     * Runs the workload <code>operationsPerThread</code> times on each of the threads, which start at the same time.
+     *
+     * @param connectPerOperation true to open a new connection for every operation, otherwise every thread
+     *                            uses a single connection
+     */
+    public Result run(int threads, final Workload workload, final long operationsPerThread,
+                      final boolean connectPerOperation) throws Exception {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Connection connection = connectPerOperation ? null : connect();
+                        ready.countDown();
+                        start.await();
+                        try {
+                            for (long i = 0; i < operationsPerThread; i++) {
+                                long startedNanos = System.nanoTime();
+                                try {
+                                    if (connectPerOperation) {
+                                        try (Connection perOperation = connect()) {
+                                            workload.execute(perOperation, i);
+                                        }
+                                    } else {
+                                        workload.execute(connection, i);
+                                    }
+                                } catch (SQLException e) {
+                                    errors.incrementAndGet();
+                                }
+                                latency.record(System.nanoTime() - startedNanos);
+                            }
+                        } finally {
+                            if (connection != null) {
+                                connection.close();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            ready.await();
+            long startedNanos = System.nanoTime();
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            long elapsedNanos = System.nanoTime() - startedNanos;
+            return new Result(threads, threads * operationsPerThread, errors.get(), elapsedNanos, latency.snapshot());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return driver.connect(url, (Properties) properties.clone());
+    }
+
+    /**
+     * Runs the workloads with 1, 2, 4 ... up to twice the number of processors threads and prints the results.
+     * The optional arguments are the mean latency of the fake client in microseconds (default 200)
+     * and the number of operations per thread (default 20000).
+     */
+    public static void main(String[] args) throws Exception {
+        long meanLatencyMicros = args.length > 0 ? Long.parseLong(args[0]) : 200L;
+        long operations = args.length > 1 ? Long.parseLong(args[1]) : 20000L;
+        FakeCrateClient fakeClient = new FakeCrateClient()
+                .latency(FakeCrateClient.exponential(meanLatencyMicros, TimeUnit.MICROSECONDS))
+                .rows(10, 4);
+        LoadGenerator generator = new LoadGenerator(fakeClient, "crate://localhost:4300", new Properties());
+        int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        String[] names = {"select", "prepared select", "batch insert"};
+        Workload[] workloads = {SELECT, PREPARED_SELECT, BATCH_INSERT};
+        try {
+            for (int w = 0; w < workloads.length; w++) {
+                System.out.println(names[w]);
+                // warm up
+                generator.run(maxThreads, workloads[w], operations / 10, false);
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    System.out.println(generator.run(threads, workloads[w], operations, false));
+                }
+            }
+        } finally {
+            fakeClient.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class LoadGeneratorTest {
+
+    private final FakeCrateClient fakeClient = new FakeCrateClient(2);
+
+    @After
+    public void closeFakeClient() throws Exception {
+        fakeClient.close();
+    }
+
+    @Test
+    public void testFakeClient() throws Exception {
+        fakeClient.latency(FakeCrateClient.fixed(1, TimeUnit.MILLISECONDS)).rows(3, 4).serverVersion("0.54.0");
+        LoadGenerator generator = new LoadGenerator(fakeClient, "crate://localhost:4300", new Properties());
+        try (Connection connection = generator.driver().connect("crate://localhost:4300", new Properties())) {
+            assertThat(connection.getMetaData().getDatabaseProductVersion(), is("0.54.0"));
+            Statement statement = connection.createStatement();
+            long startedNanos = System.nanoTime();
+            ResultSet resultSet = statement.executeQuery("select * from t");
+            assertThat(System.nanoTime() - startedNanos, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1)));
+            assertThat(resultSet.getMetaData().getColumnCount(), is(4));
+            int rows = 0;
+            while (resultSet.next()) {
+                assertThat(resultSet.getLong("col0"), is((long) rows));
+                assertThat(resultSet.getString("col1"), is("value " + rows));
+                rows++;
+            }
+            assertThat(rows, is(3));
+            assertThat(statement.executeUpdate("update t set a = 1"), is(1));
+
+            PreparedStatement preparedStatement = connection.prepareStatement("insert into t (a) values (?)");
+            preparedStatement.setInt(1, 1);
+            preparedStatement.addBatch();
+            preparedStatement.setInt(1, 2);
+            preparedStatement.addBatch();
+            assertArrayEquals(new int[]{1, 1}, preparedStatement.executeBatch());
+            assertThat(fakeClient.bulkRequests(), is(1L));
+
+            fakeClient.errorRate(1.0);
+            try {
+                statement.execute("select * from t");
+                fail("no SQLException raised");
+            } catch (SQLException e) {
+                assertThat(e.getMessage(), is("injected failure"));
+            }
+            assertThat(fakeClient.failures(), is(1L));
+        }
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        fakeClient.latency(FakeCrateClient.withTail(
+                FakeCrateClient.uniform(0, 200, TimeUnit.MICROSECONDS), 0.01,
+                FakeCrateClient.exponential(2, TimeUnit.MILLISECONDS))).errorRate(0.1);
+        LoadGenerator generator = new LoadGenerator(fakeClient, "crate://localhost:4300", new Properties());
+
+        LoadGenerator.Result result = generator.run(4, LoadGenerator.PREPARED_SELECT, 50, false);
+        assertThat(result.operations(), is(200L));
+        assertThat(result.errors(), is(fakeClient.failures()));
+        assertThat(result.operationsPerSecond(), greaterThan(0.0));
+        assertThat(result.percentileMicros(0.99), lessThanOrEqualTo(result.maxMicros()));
+
+        CrateMetricsMXBean metrics = generator.driver().metrics();
+        assertThat(metrics.getExecutions(), is(200L));
+        assertThat(metrics.getFailures(), is(result.errors()));
+        assertThat(metrics.getOpenConnections(), is(0L));
+        assertThat(metrics.getOpenStatements(), is(0L));
+
+        result = generator.run(4, LoadGenerator.BATCH_INSERT, 10, true);
+        assertThat(result.operations(), is(40L));
+        assertThat(metrics.getBulkRequests(), is(40L));
+        assertThat(metrics.getBulkRows(), is(4000L));
+    }
+}
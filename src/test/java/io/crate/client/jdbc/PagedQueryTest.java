@@ -0,0 +1,85 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class PagedQueryTest {
+
+    @Test
+    public void testParseSimpleSelect() throws Exception {
+        PagedQuery query = PagedQuery.parse("select id, name from test where id > 10 order by id;");
+        assertThat(query, notNullValue());
+        assertThat(query.keysetCompatible(), is(false));
+        assertThat(query.ordered(), is(true));
+        assertThat(query.offsetPage(100, 200),
+                is("select id, name from test where id > 10 order by id limit 100 offset 200"));
+    }
+
+    @Test
+    public void testParseNotPageable() throws Exception {
+        assertThat(PagedQuery.parse("insert into test (id) values (1)"), nullValue());
+        assertThat(PagedQuery.parse("select 1"), nullValue());
+        assertThat(PagedQuery.parse("select id from test limit 10"), nullValue());
+        assertThat(PagedQuery.parse("select id from test offset 10"), nullValue());
+        assertThat(PagedQuery.parse("select id from a union all select id from b"), nullValue());
+        assertThat(PagedQuery.parse("select id from test; select id from test"), nullValue());
+        assertThat(PagedQuery.parse("select id from test -- comment"), nullValue());
+        assertThat(PagedQuery.parse("select id from test /* comment */"), nullValue());
+        assertThat(PagedQuery.parse("select id from test where name = 'unterminated"), nullValue());
+    }
+
+    @Test
+    public void testKeywordsInLiteralsAndSubQueries() throws Exception {
+        assertThat(PagedQuery.parse("select 'limit' from test where name = 'it''s; -- not a comment'"), notNullValue());
+        assertThat(PagedQuery.parse("select \"limit\", limited from test"), notNullValue());
+        assertThat(PagedQuery.parse("select id from test where id in (select id from other limit 10)"), notNullValue());
+    }
+
+    @Test
+    public void testOnlyTopLevelOrderBy() throws Exception {
+        assertThat(PagedQuery.parse("select id from test where id in (select id from other order by id)").ordered(), is(false));
+        assertThat(PagedQuery.parse("select \"order\" from test where name = 'order by'").ordered(), is(false));
+        assertThat(PagedQuery.parse("select id from test group by id order by 1").ordered(), is(true));
+    }
+
+    @Test
+    public void testKeysetPage() throws Exception {
+        PagedQuery query = PagedQuery.parse("select id, name from test");
+        assertThat(query.keysetCompatible(), is(true));
+        assertThat(query.ordered(), is(false));
+        assertThat(query.keysetPage("id", false, 10), is("select id, name from test order by id limit 10"));
+        assertThat(query.keysetPage("id", true, 10), is("select id, name from test where id > ? order by id limit 10"));
+    }
+
+    @Test
+    public void testKeysetPageWithWhereClause() throws Exception {
+        PagedQuery query = PagedQuery.parse("SELECT id, name FROM test WHERE name = 'a' or name = 'b'");
+        assertThat(query.keysetPage("id", true, 10),
+                is("SELECT id, name FROM test where ( name = 'a' or name = 'b') and id > ? order by id limit 10"));
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBaseRequest;
+import io.crate.action.sql.SQLBaseResponse;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.jdbc.testing.Stubs;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PagedResultSetTest extends AbstractCrateJDBCTest {
+
+    private static final int NUM_ROWS = 25;
+    private static final SQLResponse ALL_ROWS = Stubs.rowsResponse(NUM_ROWS);
+    private static final Pattern LIMIT = Pattern.compile("limit (\\d+)(?: offset (\\d+))?$");
+
+    private final List<SQLRequest> requests = new ArrayList<>();
+    // the row served with a null id, -1 for none
+    private int nullIdRow = -1;
+
+    /**
+     * serves the rows of {@link #ALL_ROWS} ordered by id, applying limit, offset and "id > ?"
+     */
+    @Override
+    protected SQLResponse getResponse(SQLRequest request) {
+        requests.add(request);
+        Matcher matcher = LIMIT.matcher(request.stmt());
+        if (!matcher.find()) {
+            return ALL_ROWS;
+        }
+        int limit = Integer.parseInt(matcher.group(1));
+        long from = matcher.group(2) == null ? 0 : Long.parseLong(matcher.group(2));
+        if (request.stmt().contains("id > ?")) {
+            from = (Long) request.args()[0] + 1;
+        }
+        int start = (int) Math.min(from, NUM_ROWS);
+        int end = Math.min(start + limit, NUM_ROWS);
+        Object[][] rows = Arrays.copyOfRange(ALL_ROWS.rows(), start, end);
+        if (nullIdRow >= start && nullIdRow < end) {
+            rows[nullIdRow - start] = new Object[]{null, rows[nullIdRow - start][1]};
+        }
+        return new SQLResponse(ALL_ROWS.cols(), rows, ALL_ROWS.columnTypes(), rows.length, 0L, true);
+    }
+
+    @Override
+    protected SQLBulkResponse getBulkResponse(SQLBulkRequest request) {
+        return null; // never used here
+    }
+
+    @Override
+    protected String getServerVersion() {
+        return "0.55.4";
+    }
+
+    private void assertAllRows(ResultSet resultSet) throws SQLException {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            assertTrue(resultSet.next());
+            assertThat(resultSet.getRow(), is(i + 1));
+            assertThat(resultSet.getLong("id"), is((long) i));
+            assertThat(resultSet.getString("name"), is("name" + i));
+        }
+        assertTrue(resultSet.isLast());
+        assertFalse(resultSet.next());
+    }
+
+    @Test
+    public void testPagedByOffset() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        ResultSet resultSet = statement.executeQuery("select id, name from test order by id");
+        assertThat(resultSet.getFetchSize(), is(10));
+        assertAllRows(resultSet);
+
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(2).stmt(), is("select id, name from test order by id limit 10 offset 20"));
+    }
+
+    @Test
+    public void testPagedByKey() throws Exception {
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        statement.setFetchSize(5);
+        statement.setPagingKey("id");
+        assertAllRows(statement.executeQuery("select id, name from test"));
+
+        // the last page is full, so an empty page is fetched to know the result is exhausted
+        assertThat(requests.size(), is(6));
+        assertThat(requests.get(1).stmt(), is("select id, name from test where id > ? order by id limit 5"));
+        assertThat(requests.get(1).args(), is(new Object[]{4L}));
+    }
+
+    @Test
+    public void testPrefetchByOffset() throws Exception {
+        connection.setClientInfo(CrateConnection.PREFETCH_PAGES, "2");
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(5);
+        ResultSet resultSet = statement.executeQuery("select id, name from test order by id");
+        // the first page and the two following ones
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(2).stmt(), is("select id, name from test order by id limit 5 offset 10"));
+
+        for (int i = 0; i < 6; i++) {
+            resultSet.next();
+        }
+        // reading the second page requests the fourth one
+        assertThat(requests.size(), is(4));
+        assertAllRemainingRows(resultSet, 6);
+        assertThat(requests.size(), is(6));
+    }
+
+    @Test
+    public void testPrefetchByKey() throws Exception {
+        connection.setClientInfo(CrateConnection.PREFETCH_PAGES, "2");
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        statement.setFetchSize(5);
+        statement.setPagingKey("id");
+        ResultSet resultSet = statement.executeQuery("select id, name from test");
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(2).args(), is(new Object[]{9L}));
+        assertAllRemainingRows(resultSet, 0);
+    }
+
+    @Test
+    public void testPrefetchDisabled() throws Exception {
+        connection.setClientInfo(CrateConnection.PREFETCH_PAGES, "0");
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(5);
+        ResultSet resultSet = statement.executeQuery("select id, name from test order by id");
+        assertThat(requests.size(), is(1));
+        assertAllRemainingRows(resultSet, 0);
+        assertThat(requests.size(), is(6));
+    }
+
+    private void assertRows(ResultSet resultSet, int from, int to) throws SQLException {
+        for (int i = from; i < to; i++) {
+            assertTrue(resultSet.next());
+            assertThat(resultSet.getLong("id"), is((long) i));
+        }
+        assertTrue(resultSet.isLast());
+        assertFalse(resultSet.next());
+    }
+
+    @Test
+    public void testMaxRowsPushedAsLimit() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.setMaxRows(7);
+        assertRows(statement.executeQuery("select id, name from test"), 0, 7);
+        assertThat(requests.get(0).stmt(), is("select id, name from test limit 7"));
+    }
+
+    @Test
+    public void testMaxRowsEnforcedByResultSet() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.setMaxRows(3);
+        assertRows(statement.executeQuery("select id, name from test limit 20"), 0, 3);
+        assertThat(requests.get(0).stmt(), is("select id, name from test limit 20"));
+    }
+
+    @Test
+    public void testMaxRowsWithPaging() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(5);
+        statement.setMaxRows(12);
+        assertRows(statement.executeQuery("select id, name from test order by id"), 0, 12);
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(2).stmt(), is("select id, name from test order by id limit 2 offset 10"));
+    }
+
+    @Test
+    public void testMaxRowsPreparedStatement() throws Exception {
+        PreparedStatement statement = connection.prepareStatement("select id, name from test where id > ?");
+        statement.setMaxRows(4);
+        statement.setLong(1, 2L);
+        assertRows(statement.executeQuery(), 3, 7);
+        assertThat(requests.get(0).stmt(), is("select id, name from test where id > ? limit 4"));
+    }
+
+    private void assertAllRemainingRows(ResultSet resultSet, int from) throws SQLException {
+        for (int i = from; i < NUM_ROWS; i++) {
+            assertTrue(resultSet.next());
+            assertThat(resultSet.getLong("id"), is((long) i));
+        }
+        assertFalse(resultSet.next());
+    }
+
+    @Test
+    public void testPagingKeyNotSelected() throws Exception {
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        statement.setFetchSize(5);
+        statement.setPagingKey("other");
+
+        expectedException.expect(SQLException.class);
+        expectedException.expectMessage("cannot page by key 'other', it must be one of the selected columns");
+        statement.executeQuery("select id, name from test");
+    }
+
+    @Test
+    public void testPagingKeyNull() throws Exception {
+        nullIdRow = 4;
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        statement.setFetchSize(5);
+        statement.setPagingKey("id");
+        ResultSet resultSet = statement.executeQuery("select id, name from test");
+        for (int i = 0; i < 5; i++) {
+            assertTrue(resultSet.next());
+        }
+        assertThat(requests.size(), is(1));
+
+        expectedException.expect(SQLException.class);
+        expectedException.expectMessage("cannot page by key 'id', it must be unique and not null");
+        resultSet.next();
+    }
+
+    @Test
+    public void testNotPageableStatementIsFetchedAtOnce() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        ResultSet resultSet = statement.executeQuery("select id, name from test limit 100");
+        assertThat(resultSet.getFetchSize(), is(0));
+        assertAllRows(resultSet);
+        assertThat(requests.size(), is(1));
+    }
+
+    @Test
+    public void testUnorderedStatementIsFetchedAtOnce() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        ResultSet resultSet = statement.executeQuery("select id, name from test where id in (select id from other order by id)");
+        assertThat(resultSet.getFetchSize(), is(0));
+        assertAllRows(resultSet);
+        assertThat(requests.size(), is(1));
+        assertThat(requests.get(0).stmt(), is("select id, name from test where id in (select id from other order by id)"));
+    }
+
+    @Test
+    public void testFirstNotPossibleAfterFirstPage() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        ResultSet resultSet = statement.executeQuery("select id, name from test order by id");
+        assertTrue(resultSet.absolute(15));
+        assertThat(resultSet.getLong("id"), is(14L));
+
+        expectedException.expect(SQLException.class);
+        expectedException.expectMessage("Cannot move to the first row, the result is fetched in pages");
+        resultSet.first();
+    }
+
+    public static class PageInterceptor implements CrateStatementInterceptor {
+
+        static final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public SQLRequest before(Statement statement, SQLRequest request) throws SQLException {
+            if (request.stmt().endsWith("offset 20")) {
+                throw new SQLException("rejected");
+            }
+            return request;
+        }
+
+        @Override
+        public SQLBulkRequest before(Statement statement, SQLBulkRequest request) throws SQLException {
+            return request;
+        }
+
+        @Override
+        public void after(Statement statement, SQLBaseRequest request, SQLBaseResponse response,
+                          Throwable failure, long startedNanos, long completedNanos) {
+            calls.add(request.stmt() + (failure == null ? " ok" : " failed"));
+        }
+    }
+
+    @Test
+    public void testPageRequestsAreIntercepted() throws Exception {
+        PageInterceptor.calls.clear();
+        connection.setClientInfo(CrateConnection.STATEMENT_INTERCEPTORS, PageInterceptor.class.getName());
+        ((CrateConnection) connection).connect();
+
+        Statement statement = connection.createStatement();
+        statement.setFetchSize(10);
+        ResultSet resultSet = statement.executeQuery("select id, name from test order by id");
+        for (int i = 0; i < 20; i++) {
+            assertTrue(resultSet.next());
+        }
+        try {
+            resultSet.next();
+            fail("no SQLException raised");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("rejected"));
+        }
+        assertThat(PageInterceptor.calls, contains(
+                "select id, name from test order by id limit 10 offset 0 ok",
+                "select id, name from test order by id limit 10 offset 10 ok"));
+        assertThat(requests.size(), is(2));
+        assertThat(((CrateConnection) connection).metrics().getExecutions(), is(2L));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterizedInsertTest {
+
+    @Test
+    public void testExtractLiterals() throws Exception {
+        ParameterizedInsert insert = ParameterizedInsert.parse(
+                "INSERT INTO \"t1\" (a, \"b\"\"1\", c, d, e) VALUES ('it''s', -1.5, 2e3, TRUE, null), (3, -4, 'x', false, .5)");
+        assertThat(insert.stmt(), is("INSERT INTO \"t1\" (a, \"b\"\"1\", c, d, e) VALUES (?, ?, ?, ?, ?), (?, ?, ?, ?, ?)"));
+        assertArrayEquals(new Object[]{"it's", -1.5d, 2000d, true, null, 3L, -4L, "x", false, 0.5d}, insert.args());
+    }
+
+    @Test
+    public void testExpressions() throws Exception {
+        ParameterizedInsert insert = ParameterizedInsert.parse(
+                "insert into t (id, v) values (1 - 2, now()) on duplicate key update v = v + 1");
+        assertThat(insert.stmt(), is("insert into t (id, v) values (? - ?, now()) on duplicate key update v = v + ?"));
+        assertArrayEquals(new Object[]{1L, 2L, 1L}, insert.args());
+    }
+
+    @Test
+    public void testSameShape() throws Exception {
+        ParameterizedInsert insert = ParameterizedInsert.parse("insert into t (a) values (1)");
+        assertTrue(insert.sameShape(ParameterizedInsert.parse("insert into t (a) values ('one')")));
+        assertFalse(insert.sameShape(ParameterizedInsert.parse("insert into t (b) values (1)")));
+        assertFalse(insert.sameShape(null));
+    }
+
+    @Test
+    public void testNotParameterized() throws Exception {
+        assertThat(ParameterizedInsert.parse("update t set a = 1"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values (?)"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values ($1)"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) (select 1 from u)"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values ([1, 2])"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values ({b=1})"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values (1) -- comment"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values ('unterminated)"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values (99999999999999999999)"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values (now())"), nullValue());
+        assertThat(ParameterizedInsert.parse("insert into t (a) values (1); insert into t (a) values (2)"), nullValue());
+    }
+}
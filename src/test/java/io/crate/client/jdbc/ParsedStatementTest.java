@@ -0,0 +1,115 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ParsedStatementTest {
+
+    @Test
+    public void testParameterPositions() throws Exception {
+        ParsedStatement parsed = ParsedStatement.parse("select ? from t where a = $3 and b = ?");
+        assertThat(parsed.parameterSlots().toString(), is("{0, 1, 2}"));
+        assertThat(parsed.parameterPositions(), is(new int[]{7, 26, 37}));
+    }
+
+    @Test
+    public void testParametersInLiteralsIdentifiersAndComments() throws Exception {
+        ParsedStatement parsed = ParsedStatement.parse(
+                "select 'it''s ?', \"a\"\"?\" -- where x = ?\n" +
+                "from t /* $1 ? */ where a = ? -- trailing ?");
+        assertThat(parsed.parameterSlots().toString(), is("{0}"));
+        assertThat(parsed.parameterPositions().length, is(1));
+    }
+
+    @Test
+    public void testInvalidNumericParameters() throws Exception {
+        assertThat(ParsedStatement.parse("select $0, $a, $ from t").parameterSlots().isEmpty(), is(true));
+        assertThat(ParsedStatement.parse("select $99999999999 from t").parameterSlots().isEmpty(), is(true));
+        assertThat(ParsedStatement.parse("select $12 from t").parameterSlots().toString(), is("{11}"));
+    }
+
+    @Test
+    public void testStripComments() throws Exception {
+        String sql = "select a from t where a = 1";
+        assertThat(ParsedStatement.parse(sql).strippedSql(), sameInstance(sql));
+        assertThat(ParsedStatement.parse(sql).hasComments(), is(false));
+
+        ParsedStatement parsed = ParsedStatement.parse(
+                "/* leading */select a -- first\nfrom t where b = '-- no comment' /* unterminated");
+        assertThat(parsed.hasComments(), is(true));
+        assertThat(parsed.strippedSql(), is(" select a  from t where b = '-- no comment'  "));
+    }
+
+    @Test
+    public void testStrippedStatementIsPageable() throws Exception {
+        String sql = "select a from t -- fetch all";
+        assertThat(PagedQuery.parse(ParsedStatement.parse(sql).strippedSql()), notNullValue());
+    }
+
+    @Test
+    public void testKind() throws Exception {
+        assertThat(ParsedStatement.parse("SELECT 1").kind(), is(ParsedStatement.Kind.SELECT));
+        assertThat(ParsedStatement.parse("-- insert\n/* delete */ (select 1)").kind(), is(ParsedStatement.Kind.SELECT));
+        assertThat(ParsedStatement.parse("  insert into t (a) values (?)").kind(), is(ParsedStatement.Kind.INSERT));
+        assertThat(ParsedStatement.parse("update t set a = 1").kind(), is(ParsedStatement.Kind.UPDATE));
+        assertThat(ParsedStatement.parse("delete from t").kind(), is(ParsedStatement.Kind.DELETE));
+        assertThat(ParsedStatement.parse("selected").kind(), is(ParsedStatement.Kind.OTHER));
+        assertThat(ParsedStatement.parse("create table t (a int)").kind(), is(ParsedStatement.Kind.OTHER));
+        assertThat(ParsedStatement.parse("").kind(), is(ParsedStatement.Kind.OTHER));
+    }
+
+    @Test
+    public void testOfIsCached() throws Exception {
+        String sql = "select a from t where b = ?";
+        ParsedStatement parsed = ParsedStatement.of(sql);
+        assertThat(ParsedStatement.of(new String(sql)), sameInstance(parsed));
+        assertThat(parsed.sql(), is(sql));
+    }
+
+    @Test
+    public void testCachedParameterSlotsCannotBeModified() throws Exception {
+        ParsedStatement parsed = ParsedStatement.of("select a from t where b = ? and c = ?");
+        parsed.parameterSlots().clear();
+        parsed.parameterPositions()[0] = -1;
+        assertThat(parsed.parameterSlots().toString(), is("{0, 1}"));
+        assertThat(parsed.parameterPositions()[0], is(26));
+    }
+
+    @Test
+    public void testFingerprint() throws Exception {
+        assertThat(ParsedStatement.fingerprint("SELECT  a, \"B\" FROM t1\nWHERE id = 10 and name = 'it''s' -- comment\n"),
+                is("select a, \"B\" from t1 where id = ? and name = ?"));
+        assertThat(ParsedStatement.fingerprint("select a from t where id = ? and b = $2 and c=-1.5e3"),
+                is("select a from t where id = ? and b = ? and c=?"));
+        assertThat(ParsedStatement.fingerprint("select a - 1 from t /* x */ where id in (1,2, 3)"),
+                is("select a - ? from t where id in (?, ...)"));
+        assertThat(ParsedStatement.fingerprint("insert into t (a, b) values ('x', 2)"),
+                is(ParsedStatement.fingerprint("insert into t (a, b) values (?, ?)")));
+        assertThat(ParsedStatement.fingerprint("select $ from t_1"), is("select $ from t_1"));
+    }
+}
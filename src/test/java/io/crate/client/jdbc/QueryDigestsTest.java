@@ -0,0 +1,100 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLActionException;
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.shade.org.elasticsearch.rest.RestStatus;
+import io.crate.types.DataType;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class QueryDigestsTest {
+
+    private static SQLResponse response(long rowCount) {
+        return new SQLResponse(new String[0], new Object[0][], new DataType[0], rowCount, System.currentTimeMillis(), true);
+    }
+
+    @Test
+    public void testRecord() throws Exception {
+        QueryDigests digests = new QueryDigests(10);
+        digests.record(new SQLRequest("update t set a = 1 where id = 1"), 100L, response(2L), null);
+        digests.record(new SQLRequest("update t set a = 2 where id = 5"), 300L, response(1L), null);
+        digests.record(new SQLRequest("update t set a = ? where id = ?"), 50L, null,
+                new SQLActionException("failed", 4000, RestStatus.BAD_REQUEST));
+        digests.record(new SQLBulkRequest("insert into t (id) values (?)", new Object[][]{{1}, {2}}), 1000L,
+                new SQLBulkResponse(new String[0], new SQLBulkResponse.Result[]{
+                        new SQLBulkResponse.Result(null, 1), new SQLBulkResponse.Result("failed", -2)},
+                        System.currentTimeMillis(), new DataType[0], true), null);
+
+        List<CrateQueryDigest> top = digests.top();
+        assertThat(top.size(), is(2));
+        assertThat(top.get(0).fingerprint(), is("insert into t (id) values (?)"));
+        assertThat(top.get(0).rows(), is(1L));
+
+        CrateQueryDigest update = top.get(1);
+        assertThat(update.fingerprint(), is("update t set a = ? where id = ?"));
+        assertThat(update.count(), is(3L));
+        assertThat(update.total(TimeUnit.NANOSECONDS), is(450L));
+        assertThat(update.mean(TimeUnit.NANOSECONDS), is(150L));
+        assertThat(update.max(TimeUnit.NANOSECONDS), is(300L));
+        assertThat(update.rows(), is(3L));
+        assertThat(update.errors(), is(1L));
+        assertThat(update.overestimated(TimeUnit.NANOSECONDS), is(0L));
+    }
+
+    @Test
+    public void testReplaceLowestTotal() throws Exception {
+        QueryDigests digests = new QueryDigests(2);
+        digests.record(new SQLRequest("select a from t"), 500L, response(1L), null);
+        digests.record(new SQLRequest("select b from t"), 100L, response(1L), null);
+        digests.record(new SQLRequest("select c from t"), 50L, response(1L), null);
+
+        List<CrateQueryDigest> top = digests.top();
+        assertThat(top.size(), is(2));
+        assertThat(top.get(0).fingerprint(), is("select a from t"));
+        // took over the total of "select b from t"
+        assertThat(top.get(1).fingerprint(), is("select c from t"));
+        assertThat(top.get(1).total(TimeUnit.NANOSECONDS), is(150L));
+        assertThat(top.get(1).overestimated(TimeUnit.NANOSECONDS), is(100L));
+        assertThat(top.get(1).count(), is(1L));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        CrateMetrics metrics = new CrateMetrics(null);
+        assertThat(metrics.getQueryDigests().length, is(0));
+        QueryDigests digests = metrics.queryDigests(10);
+        assertThat(metrics.queryDigests(20), sameInstance(digests));
+        assertThat(digests.capacity(), is(10));
+        digests.record(new SQLRequest("select 1"), 100L, response(1L), null);
+        assertThat(metrics.getQueryDigests(), arrayContaining(startsWith("CrateQueryDigest{fingerprint=select ?, count=1")));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.jdbc.testing.Stubs;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.ResultSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assume.assumeTrue;
+
+public class ResultSetAllocationTest extends AbstractCrateJDBCTest {
+
+    private static final int NUM_ROWS = 100_000;
+    private static final SQLResponse ROWS_RESPONSE = Stubs.rowsResponse(NUM_ROWS);
+
+    @Override
+    protected SQLResponse getResponse(SQLRequest request) {
+        return ROWS_RESPONSE;
+    }
+
+    @Override
+    protected SQLBulkResponse getBulkResponse(SQLBulkRequest request) {
+        return null; // never used here
+    }
+
+    @Override
+    protected String getServerVersion() {
+        return "0.55.4";
+    }
+
+    private long iterate(ResultSet resultSet) throws Exception {
+        long sum = 0;
+        while (resultSet.next()) {
+            sum += resultSet.getLong(1);
+            sum += resultSet.getString(2).length();
+        }
+        return sum;
+    }
+
+    @Test
+    public void testNextDoesNotAllocatePerRow() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled());
+
+        // warm up, so class loading and compilation don't show up in the measurement
+        iterate(connection.createStatement().executeQuery("select id, name from test"));
+
+        ResultSet resultSet = connection.createStatement().executeQuery("select id, name from test");
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        long sum = iterate(resultSet);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(sum > 0, is(true));
+        // copying each row used to cost an ArrayList and its backing array per row
+        assertThat(allocated, lessThan((long) NUM_ROWS));
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.client.CrateClient;
+import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+import io.crate.types.DataType;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SlowStatementLogTest {
+
+    @Test
+    public void testKeepsMostRecentStatements() throws Exception {
+        SlowStatementLog log = new SlowStatementLog(10, TimeUnit.MILLISECONDS, 3);
+        assertThat(log.thresholdNanos(), is(TimeUnit.MILLISECONDS.toNanos(10)));
+        for (int i = 0; i < 6; i++) {
+            log.add(new SQLRequest("select " + i), 100L, null, null);
+        }
+        List<String> stmts = new ArrayList<>();
+        for (CrateSlowStatement statement : log.entries()) {
+            stmts.add(statement.stmt());
+        }
+        // the size is rounded up to 4
+        assertThat(stmts, contains("select 2", "select 3", "select 4", "select 5"));
+    }
+
+    @Test
+    public void testBulkRequest() throws Exception {
+        SlowStatementLog log = new SlowStatementLog(10, TimeUnit.MILLISECONDS, 8);
+        SQLBulkRequest request = new SQLBulkRequest("insert into t (a) values (?)", new Object[][]{{1}, {2}});
+        request.setDefaultSchema("custom");
+        log.add(request, TimeUnit.MILLISECONDS.toNanos(20), null, new IllegalStateException("failed"));
+
+        CrateSlowStatement statement = log.entries().get(0);
+        assertThat(statement.args(), is("[1]"));
+        assertThat(statement.schema(), is("custom"));
+        assertThat(statement.bulkSize(), is(2));
+        assertThat(statement.latency(TimeUnit.MILLISECONDS), is(20L));
+        assertThat(statement.serverDuration(), is(-1.0f));
+        assertThat(statement.failure(), is("failed"));
+    }
+
+    @Test
+    public void testTruncateArgs() throws Exception {
+        Object[] args = new Object[12];
+        args[0] = new String(new char[100]).replace('\0', 'a');
+        assertThat(SlowStatementLog.truncate(args),
+                is("[" + args[0].toString().substring(0, 64) + "..., null, null, null, null, null, null, null, null, null, ... 2 more]"));
+        assertThat(SlowStatementLog.truncate(new Object[]{1, "b"}), is("[1, b]"));
+    }
+
+    @Test
+    public void testLogNewStatements() throws Exception {
+        final List<String> messages = new ArrayList<>();
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() throws SecurityException {
+            }
+        });
+
+        SlowStatementLog log = new SlowStatementLog(10, TimeUnit.MILLISECONDS, 2);
+        for (int i = 0; i < 3; i++) {
+            log.add(new SQLRequest("select " + i), 100L, null, null);
+        }
+        assertThat(log.log(logger), is(2));
+        assertThat(messages.size(), is(3));
+        assertThat(messages.get(0), is("1 slow statements were dropped before they were logged"));
+        assertThat(messages.get(1), startsWith("CrateSlowStatement{stmt=select 1, args=[], schema=null, bulkSize=-1"));
+        assertThat(log.log(logger), is(0));
+
+        log.add(new SQLRequest("select 3"), 100L, null, null);
+        assertThat(log.log(logger), is(1));
+        assertThat(messages.get(3), startsWith("CrateSlowStatement{stmt=select 3"));
+    }
+
+    @Test
+    public void testSlowStatementsOfConnection() throws Exception {
+        CrateClient client = mock(CrateClient.class);
+        when(client.sql(any(SQLRequest.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                final String stmt = ((SQLRequest) invocation.getArguments()[0]).stmt();
+                return new PlainActionFuture<SQLResponse>() {
+                    @Override
+                    public SQLResponse get() throws InterruptedException, ExecutionException {
+                        if (stmt.contains("slow")) {
+                            Thread.sleep(20);
+                        }
+                        return new SQLResponse(new String[0], new Object[0][], new DataType[0], 1L,
+                                System.currentTimeMillis(), true);
+                    }
+                };
+            }
+        });
+        ClientHandleRegistry.ClientHandle handle = mock(ClientHandleRegistry.ClientHandle.class);
+        when(handle.metrics()).thenReturn(new CrateMetrics(null));
+        when(handle.client()).thenReturn(client);
+        when(handle.serverVersion()).thenReturn(CrateServerVersion.parse("0.55.0"));
+        Properties properties = new Properties();
+        properties.setProperty(CrateConnection.SLOW_STATEMENT_THRESHOLD, "10");
+        CrateConnection connection = new CrateConnection(handle, properties);
+        connection.connect();
+
+        Statement statement = connection.createStatement();
+        statement.executeUpdate("update t set slow = true");
+        statement.executeUpdate("update t set fast = true");
+
+        List<CrateSlowStatement> statements = connection.slowStatements();
+        assertThat(statements.size(), is(1));
+        assertThat(statements.get(0).stmt(), is("update t set slow = true"));
+        assertThat(statements.get(0).latency(TimeUnit.MILLISECONDS), greaterThanOrEqualTo(10L));
+        connection.close();
+    }
+}
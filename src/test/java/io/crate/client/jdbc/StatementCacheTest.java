@@ -0,0 +1,162 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.client.CrateClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StatementCacheTest {
+
+    private CrateConnection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        ClientHandleRegistry.ClientHandle handle = mock(ClientHandleRegistry.ClientHandle.class);
+        when(handle.metrics()).thenReturn(new CrateMetrics(null));
+        when(handle.client()).thenReturn(mock(CrateClient.class));
+        when(handle.serverVersion()).thenReturn(CrateServerVersion.parse("0.55.0"));
+        Properties properties = new Properties();
+        properties.setProperty(CrateConnection.STATEMENT_CACHE_SIZE, "2");
+        connection = new CrateConnection(handle, properties);
+        connection.connect();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        PreparedStatement stmt = connection.prepareStatement("select * from t where id = ?");
+        CratePreparedStatement cached = stmt.unwrap(CratePreparedStatement.class);
+        stmt.close();
+        PreparedStatement reused = connection.prepareStatement("select * from t where id = ?");
+        assertThat(reused, not(sameInstance(stmt)));
+        assertThat(reused.unwrap(CratePreparedStatement.class), sameInstance(cached));
+
+        CrateStatementCacheStats stats = connection.statementCacheStats();
+        assertThat(stats.hits(), is(1L));
+        assertThat(stats.misses(), is(1L));
+        assertThat(stats.size(), is(0));
+        assertThat(stats.maxSize(), is(2));
+    }
+
+    @Test
+    public void testEvictions() throws Exception {
+        PreparedStatement s1 = connection.prepareStatement("select 1");
+        CratePreparedStatement evicted = s1.unwrap(CratePreparedStatement.class);
+        PreparedStatement s2 = connection.prepareStatement("select 2");
+        PreparedStatement s3 = connection.prepareStatement("select 3");
+        s1.close();
+        s2.close();
+        s3.close();
+
+        CrateStatementCacheStats stats = connection.statementCacheStats();
+        assertThat(stats.evictions(), is(1L));
+        assertThat(stats.size(), is(2));
+        assertThat(connection.prepareStatement("select 1").unwrap(CratePreparedStatement.class),
+                not(sameInstance(evicted)));
+    }
+
+    @Test
+    public void testStatementIsResetWhenCached() throws Exception {
+        PreparedStatement stmt = connection.prepareStatement("select * from t where id = ?");
+        CratePreparedStatement cached = stmt.unwrap(CratePreparedStatement.class);
+        stmt.setInt(1, 1);
+        stmt.setFetchSize(100);
+        stmt.setQueryTimeout(5);
+        stmt.addBatch();
+        stmt.close();
+
+        PreparedStatement reused = connection.prepareStatement("select * from t where id = ?");
+        assertThat(reused.unwrap(CratePreparedStatement.class), sameInstance(cached));
+        assertThat(reused.getFetchSize(), is(0));
+        assertThat(reused.getQueryTimeout(), is(0));
+        try {
+            reused.addBatch();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Not all parameters have been provided a value"));
+        }
+    }
+
+    @Test
+    public void testClosedHandleDoesNotReachReusedStatement() throws Exception {
+        PreparedStatement stale = connection.prepareStatement("select * from t where id = ?");
+        stale.close();
+        PreparedStatement reused = connection.prepareStatement("select * from t where id = ?");
+        reused.setInt(1, 1);
+
+        assertThat(stale.isClosed(), is(true));
+        assertThat(reused.isClosed(), is(false));
+        try {
+            stale.clearParameters();
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Statement is closed"));
+        }
+        // closing the stale handle again does not return the statement in use to the cache
+        stale.close();
+        assertThat(reused.isClosed(), is(false));
+        assertThat(connection.statementCacheStats().size(), is(0));
+        assertThat(reused.getConnection(), sameInstance((Connection) connection));
+    }
+
+    @Test
+    public void testNotPoolableStatementIsNotCached() throws Exception {
+        PreparedStatement stmt = connection.prepareStatement("select 1");
+        assertThat(stmt.isPoolable(), is(true));
+        stmt.setPoolable(false);
+        CratePreparedStatement closed = stmt.unwrap(CratePreparedStatement.class);
+        stmt.close();
+        assertThat(connection.statementCacheStats().size(), is(0));
+        assertThat(closed.isClosed(), is(true));
+        assertThat(connection.prepareStatement("select 1").unwrap(CratePreparedStatement.class),
+                not(sameInstance(closed)));
+
+        Statement plain = connection.createStatement();
+        assertThat(plain.isPoolable(), is(false));
+    }
+
+    @Test
+    public void testCacheIsDisabledByDefault() throws Exception {
+        ClientHandleRegistry.ClientHandle handle = mock(ClientHandleRegistry.ClientHandle.class);
+        when(handle.metrics()).thenReturn(new CrateMetrics(null));
+        when(handle.serverVersion()).thenReturn(CrateServerVersion.parse("0.55.0"));
+        CrateConnection conn = new CrateConnection(handle);
+        conn.connect();
+        assertThat(conn.statementCacheStats(), nullValue());
+        PreparedStatement stmt = conn.prepareStatement("select 1");
+        stmt.close();
+        assertThat(stmt.isClosed(), is(true));
+        assertThat(conn.prepareStatement("select 1"), not(sameInstance(stmt)));
+    }
+}
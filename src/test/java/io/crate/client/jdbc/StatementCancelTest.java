@@ -0,0 +1,265 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import io.crate.action.sql.SQLBulkRequest;
+import io.crate.action.sql.SQLBulkResponse;
+import io.crate.action.sql.SQLRequest;
+import io.crate.action.sql.SQLResponse;
+import io.crate.shade.org.elasticsearch.action.support.PlainActionFuture;
+import io.crate.types.DataType;
+import io.crate.types.DataTypes;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class StatementCancelTest extends AbstractCrateJDBCTest {
+
+    private String serverVersion = "0.55.0";
+    private final List<SQLRequest> requests = Collections.synchronizedList(new ArrayList<SQLRequest>());
+    private int runningJobs = 1;
+
+    @Override
+    protected SQLResponse getResponse(SQLRequest request) {
+        requests.add(request);
+        if (request.stmt().equals(JobKiller.JOBS_STMT)) {
+            Object[][] rows = new Object[runningJobs][];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new Object[]{"job-" + (i + 1)};
+            }
+            return new SQLResponse(new String[]{"id"}, rows, new DataType[]{DataTypes.STRING}, rows.length, 0L, true);
+        }
+        return new SQLResponse(new String[0], new Object[0][], new DataType[0], 1L, 0L, true);
+    }
+
+    @Override
+    protected SQLBulkResponse getBulkResponse(SQLBulkRequest request) {
+        return null; // never used here
+    }
+
+    @Override
+    protected String getServerVersion() {
+        return serverVersion;
+    }
+
+    /**
+     * executes the statement in another thread, the response never arrives
+     */
+    private Future<Boolean> executeBlocking(final Statement statement, final String stmt) {
+        nextSQLResponse = new PlainActionFuture<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return statement.execute(stmt);
+            }
+        });
+        executor.shutdown();
+        return result;
+    }
+
+    private CrateCancelResult cancel(CrateStatement statement) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            CrateCancelResult result = statement.cancelAsync().get(10, TimeUnit.SECONDS);
+            if (result.cancelledRequests() > 0) {
+                return result;
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("statement was not executing");
+    }
+
+    private void assertCancelled(Future<Boolean> execution) throws Exception {
+        try {
+            execution.get(10, TimeUnit.SECONDS);
+            fail("SQLException not thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(SQLException.class));
+            assertThat(e.getCause().getMessage(), is("Statement was cancelled"));
+        }
+    }
+
+    @Test
+    public void testCancelReleasesThreadAndKillsJob() throws Exception {
+        connection.setClientInfo(CrateConnection.KILL_JOBS, "true");
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        Future<Boolean> execution = executeBlocking(statement, "select * from sys.nodes, sys.shards");
+
+        CrateCancelResult result = cancel(statement);
+        assertCancelled(execution);
+        assertThat(result.cancelledRequests(), is(1));
+        assertThat(result.killedJobs(), is(1));
+        assertThat(result.latency(TimeUnit.NANOSECONDS), greaterThan(0L));
+
+        // the first request is the cancelled statement itself
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(1).stmt(), is(JobKiller.JOBS_STMT));
+        assertThat(requests.get(1).args(), is(new Object[]{"select * from sys.nodes, sys.shards"}));
+        assertThat(requests.get(2).stmt(), is("kill 'job-1'"));
+    }
+
+    @Test
+    public void testCancelDoesNotKillSeveralJobsOfTheSameStatement() throws Exception {
+        runningJobs = 2;
+        connection.setClientInfo(CrateConnection.KILL_JOBS, "true");
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        Future<Boolean> execution = executeBlocking(statement, "select * from sys.nodes, sys.shards");
+
+        try {
+            cancel(statement);
+            fail("ExecutionException not thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(SQLException.class));
+            assertThat(e.getCause().getMessage(),
+                    is("2 jobs are running the cancelled statement, none of them was killed"));
+        }
+        assertCancelled(execution);
+        assertThat(requests.size(), is(2));
+        assertThat(requests.get(1).stmt(), is(JobKiller.JOBS_STMT));
+    }
+
+    @Test
+    public void testCancelDoesNotKillJobsByDefault() throws Exception {
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        Future<Boolean> execution = executeBlocking(statement, "select * from sys.nodes, sys.shards");
+
+        CrateCancelResult result = cancel(statement);
+        assertCancelled(execution);
+        assertThat(result.cancelledRequests(), is(1));
+        assertThat(result.killedJobs(), is(0));
+        assertThat(requests.size(), is(1));
+    }
+
+    @Test
+    public void testCancelWithoutKillSupport() throws Exception {
+        serverVersion = "0.54.9";
+        connection.setClientInfo(CrateConnection.KILL_JOBS, "true");
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        Future<Boolean> execution = executeBlocking(statement, "select * from sys.nodes, sys.shards");
+
+        CrateCancelResult result = cancel(statement);
+        assertCancelled(execution);
+        assertThat(result.killedJobs(), is(0));
+        assertThat(requests.size(), is(1));
+    }
+
+    @Test
+    public void testQueryTimeoutReleasesThreadAndKillsJob() throws Exception {
+        connection.setClientInfo(CrateConnection.KILL_JOBS, "true");
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        statement.setQueryTimeout(50, TimeUnit.MILLISECONDS);
+        assertThat(statement.getQueryTimeout(), is(1));
+        Future<Boolean> execution = executeBlocking(statement, "select * from sys.nodes, sys.shards");
+        try {
+            execution.get(10, TimeUnit.SECONDS);
+            fail("SQLTimeoutException not thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(SQLTimeoutException.class));
+            assertThat(e.getCause().getMessage(), is("Query timeout of 50 ms expired"));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (requests.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(requests.size(), is(3));
+        assertThat(requests.get(1).stmt(), is(JobKiller.JOBS_STMT));
+        assertThat(requests.get(2).stmt(), is("kill 'job-1'"));
+
+        // nothing is left to cancel
+        assertThat(statement.cancelAsync().get().cancelledRequests(), is(0));
+    }
+
+    @Test
+    public void testQueryTimeoutDoesNotKillJobsByDefault() throws Exception {
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        statement.setQueryTimeout(50, TimeUnit.MILLISECONDS);
+        Future<Boolean> execution = executeBlocking(statement, "select * from sys.nodes, sys.shards");
+        try {
+            execution.get(10, TimeUnit.SECONDS);
+            fail("SQLTimeoutException not thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(SQLTimeoutException.class));
+        }
+        assertThat(requests.size(), is(1));
+    }
+
+    @Test
+    public void testCloseCancelsQueryTimeouts() throws Exception {
+        connection.setClientInfo(CrateConnection.KILL_JOBS, "true");
+        CrateStatement statement = connection.createStatement().unwrap(CrateStatement.class);
+        statement.setQueryTimeout(200, TimeUnit.MILLISECONDS);
+        Future<Boolean> execution = executeBlocking(statement, "select * from sys.nodes, sys.shards");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (requests.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(20);
+        statement.close();
+
+        try {
+            execution.get(10, TimeUnit.SECONDS);
+            fail("SQLTimeoutException not thrown");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(SQLTimeoutException.class));
+        }
+        // the expired timeout of the closed statement does not kill the job
+        Thread.sleep(100);
+        assertThat(requests.size(), is(1));
+    }
+
+    @Test
+    public void testNegativeQueryTimeout() throws Exception {
+        Statement statement = connection.createStatement();
+        try {
+            statement.setQueryTimeout(-1);
+            fail("SQLException not thrown");
+        } catch (SQLException e) {
+            assertThat(e.getMessage(), is("Query timeout must be greater than or equal to 0"));
+        }
+    }
+
+    @Test
+    public void testCancelIdleStatement() throws Exception {
+        Statement statement = connection.createStatement();
+        statement.cancel();
+        CrateCancelResult result = statement.unwrap(CrateStatement.class).cancelAsync().get();
+        assertThat(result.cancelledRequests(), is(0));
+        assertThat(requests.size(), is(0));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to CRATE Technology GmbH ("Crate") under one or more contributor
+ * license agreements.  See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.  Crate licenses
+ * this file to you under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.  You may
+ * obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ *
+ * However, if you have executed another commercial license agreement
+ * with Crate these terms will supersede the license and you may use the
+ * software solely pursuant to the terms of the relevant commercial agreement.
+ */
+
+package io.crate.client.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TimeoutWheelTest {
+
+    private TimeoutWheel wheel;
+
+    @Before
+    public void setUp() throws Exception {
+        // a small wheel, so timeouts need several rounds
+        wheel = new TimeoutWheel("test-timeout", 1, TimeUnit.MILLISECONDS, 8);
+    }
+
+    private void awaitNoPending() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (wheel.pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(wheel.pending(), is(0));
+    }
+
+    @Test
+    public void testTimeoutRunsAfterDelay() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long started = System.nanoTime();
+        TimeoutWheel.Timeout timeout = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 30, TimeUnit.MILLISECONDS);
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(System.nanoTime() - started, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(30)));
+        assertThat(timeout.isExpired(), is(true));
+        assertThat(timeout.cancel(), is(false));
+        awaitNoPending();
+    }
+
+    @Test
+    public void testTimeoutsRunInOrderOfTheirDelay() throws Exception {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(3);
+        for (final int delay : new int[]{40, 5, 20}) {
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(delay);
+                    latch.countDown();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(order, contains(5, 20, 40));
+    }
+
+    @Test
+    public void testCancelledTimeoutDoesNotRun() throws Exception {
+        final CountDownLatch cancelledRun = new CountDownLatch(1);
+        TimeoutWheel.Timeout timeout = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancelledRun.countDown();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        assertThat(timeout.cancel(), is(true));
+        assertThat(timeout.cancel(), is(false));
+        assertThat(timeout.isCancelled(), is(true));
+
+        final CountDownLatch later = new CountDownLatch(1);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                later.countDown();
+            }
+        }, 40, TimeUnit.MILLISECONDS);
+        assertThat(later.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(cancelledRun.getCount(), is(1L));
+        awaitNoPending();
+    }
+
+    @Test
+    public void testFailingTimeoutDoesNotStopTheWheel() throws Exception {
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("failed");
+            }
+        }, 1, TimeUnit.MILLISECONDS);
+        final CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+        assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+    }
+}
@@ -31,4 +31,18 @@ public class Stubs {
             new String[]{"dummy"},
             new Object[][]{new Object[]{"foo"}},
             new DataType[]{DataTypes.STRING}, 1L, 0, false);
+
+    /**
+     * a response with <code>numRows</code> rows of a long column "id" and a string column "name"
+     */
+    public static SQLResponse rowsResponse(int numRows) {
+        Object[][] rows = new Object[numRows][];
+        for (int i = 0; i < numRows; i++) {
+            rows[i] = new Object[]{(long) i, "name" + i};
+        }
+        return new SQLResponse(
+                new String[]{"id", "name"},
+                rows,
+                new DataType[]{DataTypes.LONG, DataTypes.STRING}, numRows, 0, true);
+    }
 }